@@ -35,3 +35,11 @@ application {
     // Define the main class for the application.
     mainClass.set("compiler.Compiler")
 }
+
+// Runs one of the benchmark harnesses under test/Benchmark, e.g.
+// gradle benchmark -Pbench=LexerBenchmark
+tasks.register<JavaExec>("benchmark") {
+    classpath = sourceSets.test.get().runtimeClasspath
+    mainClass.set("Benchmark." + (project.findProperty("bench") ?: "LexerBenchmark"))
+    jvmArgs("-Xmx4g")
+}
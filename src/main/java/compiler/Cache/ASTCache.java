@@ -0,0 +1,100 @@
+package compiler.Cache;
+
+import compiler.Parser.AST.FlatAST;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps trees on disk in FlatAST's binary form, one file per source, named by
+ * the SHA-256 of the source bytes. Compiler only stores a tree once semantic
+ * analysis has passed on it, so a hit stands for the lexed, parsed and checked
+ * program.
+ *
+ * An entry that cannot be used (written by another format version, truncated,
+ * failing its checksum) is a miss, and the next store replaces it. Stores
+ * write a temporary file and move it into place, so a reader never sees half
+ * an entry.
+ */
+public class ASTCache {
+    private static final int MAGIC = 0x41535443; // "ASTC"
+    // Bump when NodeKind, the binary form or what the analyzer accepts changes
+    private static final int VERSION = 2;
+    // Magic, version, payload length, CRC32 of the payload
+    private static final int HEADER_SIZE = 16;
+
+    private final Path directory;
+
+    public ASTCache(Path directory) {
+        this.directory = directory;
+    }
+
+    public static String key(byte[] source) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(source));
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // The cached tree, or null on a miss
+    public FlatAST load(String key) {
+        byte[] data;
+        try {
+            data = Files.readAllBytes(file(key));
+        } catch (IOException e) {
+            return null;
+        }
+        if (data.length < HEADER_SIZE) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.wrap(data, 0, HEADER_SIZE);
+        int length = data.length - HEADER_SIZE;
+        if (header.getInt() != MAGIC || header.getInt() != VERSION || header.getInt() != length) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, HEADER_SIZE, length);
+        if (header.getInt() != (int) crc.getValue()) {
+            return null;
+        }
+        try {
+            return FlatAST.fromBytes(data, HEADER_SIZE, length);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    public void store(String key, FlatAST ast) throws IOException {
+        byte[] payload = ast.toBytes();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC).putInt(VERSION).putInt(payload.length).putInt((int) crc.getValue());
+
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, key, ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                out.write(header.array());
+                out.write(payload);
+            }
+            Files.move(temp, file(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Path file(String key) {
+        return directory.resolve(key + ".ast");
+    }
+}
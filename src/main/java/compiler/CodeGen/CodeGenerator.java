@@ -1,6 +1,12 @@
 package compiler.CodeGen;
 
+import compiler.Diagnostics.DiagnosticCollector;
 import compiler.Parser.AST.*;
+import compiler.Semantic.ArrayType;
+import compiler.Semantic.CollectionType;
+import compiler.Semantic.SemanticAnalyzer;
+import compiler.Semantic.Type;
+import compiler.Semantic.Types;
 
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Label;
@@ -15,34 +21,92 @@ import static org.objectweb.asm.Opcodes.*;
 
 public class CodeGenerator {
     private final Map<String, Integer> localSlots = new HashMap<>();
-    private final Map<String, String> localTypes = new HashMap<>();
-    private final Map<String, String> functionTypes = new HashMap<>();
-    private final Map<String, List<String>> functionParams = new HashMap<>();
-    private final Map<String, List<String[]>> collectionFields = new LinkedHashMap<>();
-    private final Map<String, String> globalFieldDescriptors = new LinkedHashMap<>();
-    private final Map<String, String> globalFieldTypes = new LinkedHashMap<>();
-
+    private final Map<String, Type> localTypes = new HashMap<>();
+    private final Map<String, Type> functionTypes = new HashMap<>();
+    private final Map<String, List<Type>> functionParams = new HashMap<>();
+    // Built once per function, not once per call site
+    private final Map<String, String> functionDescriptors = new HashMap<>();
+    private final Map<String, Type> globalFieldTypes = new LinkedHashMap<>();
+
+    // Types from an analysis done beforehand, if any
+    private final Types analyzed;
+    // The canonical types of the program being generated
+    private Types types;
+
+    // Node dispatch goes through ASTNode.accept into these two
+    private final StatementGenerator statements = new StatementGenerator();
+    private final ExpressionGenerator expressions = new ExpressionGenerator();
+    // Counts nested statements and expressions; past its threshold expressions are
+    // generated iteratively and statements on a larger stack, so depth is not limited by -Xss
+    private final StackGuard stack = new StackGuard();
 
     private int nextSlot = 0;
     private String currentClassName;
-    private String currentReturnType = "VOID";
+    private Type currentReturnType = Type.VOID;
+
+    // Analyzes each tree itself, unless it was stored with its types (see FlatAST.of)
+    public CodeGenerator() {
+        this(null);
+    }
+
+    // For trees whose nodes a SemanticAnalyzer analyzed; analyzed is its getTypes()
+    public CodeGenerator(Types analyzed) {
+        this.analyzed = analyzed;
+    }
 
     public void generate(ASTNode root, String outputFile) throws IOException {
         if (!(root instanceof BlockNode block)) {
             throw new RuntimeException("CodeGenerationError: root must be BlockNode.");
         }
+        generateDeclarations(block.getStatements(), analyzed != null ? analyzed : analyze(root), outputFile);
+    }
+
+    // The flat tree's nodes are made here: they get the types it was stored with, or are analyzed now
+    public void generate(FlatAST ast, String outputFile) throws IOException {
+        if (analyzed != null) {
+            throw new RuntimeException("CodeGenerationError: a FlatAST is materialized by the generator, "
+                    + "so it cannot use types analyzed on other nodes; generate it with new CodeGenerator().");
+        }
+        if (!ast.hasTypes()) {
+            BlockNode root = (BlockNode) ast.toNode(ast.root());
+            generateDeclarations(root.getStatements(), analyze(root), outputFile);
+            return;
+        }
+
+        Types stored = new Types();
+        BlockNode root = (BlockNode) ast.toNode(ast.root(), stored);
+        for (ASTNode node : root.getStatements()) {
+            ASTNode declaration = node instanceof FinalNode fin ? fin.getAssignment() : node;
+            if (declaration instanceof CollectionNode collection) {
+                stored.declareCollection(collection);
+            }
+        }
+        generateDeclarations(root.getStatements(), stored, outputFile);
+    }
+
+    private static Types analyze(ASTNode root) {
+        SemanticAnalyzer analyzer = new SemanticAnalyzer();
+        DiagnosticCollector diagnostics = analyzer.analyze(root);
+        // Only a tree that checks can be generated
+        if (diagnostics.hasErrors()) {
+            throw new RuntimeException(diagnostics.getDiagnostics().getFirst().getMessage());
+        }
+        return analyzer.getTypes();
+    }
 
+    private void generateDeclarations(List<ASTNode> declarations, Types types, String outputFile)
+            throws IOException {
+        this.types = types;
         String className = classNameFromFile(outputFile);
         this.currentClassName = className;
         String outputDir = outputDirectoryFromFile(outputFile);
 
         functionTypes.clear();
         functionParams.clear();
+        functionDescriptors.clear();
 
-        for (ASTNode node : block.getStatements()) {
-            if (node instanceof CollectionNode coll) {
-                registerCollection(coll);
-            } else if (node instanceof FunctionNode fn) {
+        for (ASTNode node : declarations) {
+            if (node instanceof FunctionNode fn) {
                 registerFunction(fn);
             } else if (node instanceof FinalNode fin && fin.getAssignment() instanceof AssignmentNode a) {
                 registerGlobal(a);
@@ -56,9 +120,9 @@ public class CodeGenerator {
             throw new RuntimeException("CodeGenerationError: main function not found.");
         }
 
-        for (Map.Entry<String, List<String[]>> entry : collectionFields.entrySet()) {
-            byte[] collBytes = generateCollectionClass(entry.getKey(), entry.getValue());
-            String collPath  = outputDir + entry.getKey() + ".class";
+        for (CollectionType collection : types.getCollections()) {
+            byte[] collBytes = generateCollectionClass(collection);
+            String collPath  = outputDir + collection.getName() + ".class";
             writeFile(collPath, collBytes);
         }
 
@@ -66,15 +130,15 @@ public class CodeGenerator {
 
         emitStaticFields(writer);
 
-        emitStaticInitializer(writer, block);
+        emitStaticInitializer(writer, declarations);
 
-        for (ASTNode node : block.getStatements()) {
+        for (ASTNode node : declarations) {
             if (node instanceof FunctionNode fn && !"main".equals(fn.getName())) {
                 addFunction(writer, fn);
             }
         }
 
-        for (ASTNode node : block.getStatements()) {
+        for (ASTNode node : declarations) {
             if (node instanceof FunctionNode fn && "main".equals(fn.getName())) {
                 addMainFromBlock(writer, fn.getBody());
             }
@@ -84,64 +148,49 @@ public class CodeGenerator {
         writeFile(outputFile, writer.toByteArray());
     }
 
-    private void registerCollection(CollectionNode coll) {
-        List<String[]> fields = new ArrayList<>();
-        for (ASTNode member : coll.getBody().getStatements()) {
-            if (member instanceof AssignmentNode a) {
-                fields.add(new String[]{a.getIdentifier(), a.getType()});
-            }
-        }
-
-        collectionFields.put(coll.getName(), fields);
-    }
-
     private void registerFunction(FunctionNode fn) {
-        String returnType = fn.getReturnType() == null ? "VOID" : fn.getReturnType();
+        Type returnType = fn.getReturnType() == null ? Type.VOID : types.named(fn.getReturnType());
         functionTypes.put(fn.getName(), returnType);
 
-        List<String> params = new ArrayList<>();
+        List<Type> params = new ArrayList<>();
         for (ASTNode arg : fn.getArgs()) {
             if (arg instanceof AssignmentNode a) {
-                params.add(a.getType());
+                params.add(types.named(a.getType()));
             }
         }
 
         functionParams.put(fn.getName(), params);
+        functionDescriptors.put(fn.getName(), methodDescriptor(params, returnType));
     }
 
     private void registerGlobal(AssignmentNode a) {
-        String type = a.getType();
+        Type type = types.named(a.getType());
         if (type == null) return;
         globalFieldTypes.put(a.getIdentifier(), type);
-        globalFieldDescriptors.put(a.getIdentifier(), descriptorFor(type));
     }
 
-    private byte[] generateCollectionClass(String name, List<String[]> fields) {
+    private byte[] generateCollectionClass(CollectionType collection) {
+        String name = collection.getName();
+        List<CollectionType.Field> fields = collection.getFields();
         ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
         cw.visit(V1_8, ACC_PUBLIC, name, null, "java/lang/Object", null);
 
-        for (String[] field : fields) {
-            cw.visitField(ACC_PUBLIC, field[0], descriptorFor(field[1]), null, null).visitEnd();
+        for (CollectionType.Field field : fields) {
+            cw.visitField(ACC_PUBLIC, field.name(), field.type().getDescriptor(), null, null).visitEnd();
         }
 
-        StringBuilder ctorDesc = new StringBuilder("(");
-
-        for (String[] field : fields) ctorDesc.append(descriptorFor(field[1]));
-
-        ctorDesc.append(")V");
-
-        MethodVisitor init = cw.visitMethod(ACC_PUBLIC, "<init>", ctorDesc.toString(), null, null);
+        MethodVisitor init = cw.visitMethod(ACC_PUBLIC, "<init>", collection.getConstructorDescriptor(), null, null);
         init.visitCode();
         init.visitVarInsn(ALOAD, 0);
         init.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
 
         int slot = 1;
 
-        for (String[] field : fields) {
+        for (CollectionType.Field field : fields) {
             init.visitVarInsn(ALOAD, 0);
-            init.visitVarInsn(loadOpcode(field[1]), slot);
-            init.visitFieldInsn(PUTFIELD, name, field[0], descriptorFor(field[1]));
-            slot += slotSize(field[1]);
+            init.visitVarInsn(loadOpcode(field.type()), slot);
+            init.visitFieldInsn(PUTFIELD, name, field.name(), field.type().getDescriptor());
+            slot += slotSize(field.type());
         }
 
         init.visitInsn(RETURN);
@@ -172,12 +221,12 @@ public class CodeGenerator {
     private void emitStaticFields(ClassWriter writer) {
         writer.visitField(ACC_PRIVATE | ACC_STATIC, "__scanner__", "Ljava/util/Scanner;", null, null).visitEnd();
 
-        for (Map.Entry<String, String> entry : globalFieldDescriptors.entrySet()) {
-            writer.visitField(ACC_PUBLIC | ACC_STATIC, entry.getKey(), entry.getValue(), null, null).visitEnd();
+        for (Map.Entry<String, Type> entry : globalFieldTypes.entrySet()) {
+            writer.visitField(ACC_PUBLIC | ACC_STATIC, entry.getKey(), entry.getValue().getDescriptor(), null, null).visitEnd();
         }
     }
 
-    private void emitStaticInitializer(ClassWriter writer, BlockNode block) {
+    private void emitStaticInitializer(ClassWriter writer, List<ASTNode> declarations) {
         MethodVisitor clinit = writer.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
         clinit.visitCode();
 
@@ -189,7 +238,7 @@ public class CodeGenerator {
 
         boolean anyInit = false;
 
-        for (ASTNode node : block.getStatements()) {
+        for (ASTNode node : declarations) {
             if (node instanceof FinalNode fin && fin.getAssignment() instanceof AssignmentNode a
                     && a.getExpression() != null) {
                 anyInit = true; break;
@@ -200,7 +249,7 @@ public class CodeGenerator {
             }
         }
 
-        if (!anyInit && globalFieldDescriptors.isEmpty()) {
+        if (!anyInit && globalFieldTypes.isEmpty()) {
             clinit.visitInsn(RETURN);
             clinit.visitMaxs(0, 0);
             clinit.visitEnd();
@@ -211,12 +260,12 @@ public class CodeGenerator {
         localTypes.clear();
         nextSlot = 0;
 
-        for (Map.Entry<String, String> e : globalFieldTypes.entrySet()) {
+        for (Map.Entry<String, Type> e : globalFieldTypes.entrySet()) {
             localSlots.put(e.getKey(), -1);
             localTypes.put(e.getKey(), e.getValue());
         }
 
-        for (ASTNode node : block.getStatements()) {
+        for (ASTNode node : declarations) {
             AssignmentNode a = null;
 
             if (node instanceof FinalNode fin && fin.getAssignment() instanceof AssignmentNode fa) {
@@ -231,14 +280,9 @@ public class CodeGenerator {
                 continue;
             }
 
-            String valueType = generateExpression(a.getExpression(), clinit);
-
-            if ("FLOAT".equals(a.getType()) && "INT".equals(valueType)) {
-                clinit.visitInsn(I2F);
-            }
-
-            clinit.visitFieldInsn(PUTSTATIC, currentClassName, a.getIdentifier(),
-                    descriptorFor(a.getType()));
+            Type type = types.named(a.getType());
+            generateExpression(a.getExpression(), type, clinit);
+            clinit.visitFieldInsn(PUTSTATIC, currentClassName, a.getIdentifier(), type.getDescriptor());
         }
 
         clinit.visitInsn(RETURN);
@@ -260,13 +304,13 @@ public class CodeGenerator {
         localTypes.clear();
         nextSlot = 1;
 
-        for (Map.Entry<String, String> e : globalFieldTypes.entrySet()) {
+        for (Map.Entry<String, Type> e : globalFieldTypes.entrySet()) {
             localSlots.put(e.getKey(), -1);
             localTypes.put(e.getKey(), e.getValue());
         }
 
-        String oldReturnType = currentReturnType;
-        currentReturnType = "VOID";
+        Type oldReturnType = currentReturnType;
+        currentReturnType = Type.VOID;
         generateBlock(body, method);
         method.visitInsn(RETURN);
         currentReturnType = oldReturnType;
@@ -275,12 +319,11 @@ public class CodeGenerator {
     }
 
     private void addFunction(ClassWriter writer, FunctionNode function) {
-        String returnType = function.getReturnType() == null ? "VOID" : function.getReturnType();
-        List<String> paramTypes = functionParams.get(function.getName());
+        Type returnType = functionTypes.get(function.getName());
         MethodVisitor method = writer.visitMethod(
                 ACC_PUBLIC | ACC_STATIC,
                 function.getName(),
-                methodDescriptor(paramTypes, returnType),
+                functionDescriptors.get(function.getName()),
                 null,
                 null);
         method.visitCode();
@@ -292,23 +335,24 @@ public class CodeGenerator {
         for (ASTNode arg : function.getArgs()) {
             if (arg instanceof AssignmentNode assignment) {
                 localSlots.put(assignment.getIdentifier(), nextSlot);
-                localTypes.put(assignment.getIdentifier(), assignment.getType());
-                nextSlot += slotSize(assignment.getType());
+                Type type = types.named(assignment.getType());
+                localTypes.put(assignment.getIdentifier(), type);
+                nextSlot += slotSize(type);
             }
         }
 
-        for (Map.Entry<String, String> e : globalFieldTypes.entrySet()) {
+        for (Map.Entry<String, Type> e : globalFieldTypes.entrySet()) {
             if (!localSlots.containsKey(e.getKey())) {
                 localSlots.put(e.getKey(), -1);
                 localTypes.put(e.getKey(), e.getValue());
             }
         }
 
-        String oldReturnType = currentReturnType;
+        Type oldReturnType = currentReturnType;
         currentReturnType = returnType;
         generateBlock(function.getBody(), method);
 
-        if ("VOID".equals(returnType) && !endsWithReturn(function.getBody())) {
+        if (returnType == Type.VOID && !endsWithReturn(function.getBody())) {
             method.visitInsn(RETURN);
         }
 
@@ -326,7 +370,7 @@ public class CodeGenerator {
 
     private void generateBlock(BlockNode block, MethodVisitor method) {
         Map<String, Integer> savedSlots = new HashMap<>(localSlots);
-        Map<String, String> savedTypes = new HashMap<>(localTypes);
+        Map<String, Type> savedTypes = new HashMap<>(localTypes);
         int savedNextSlot = nextSlot;
 
         for (ASTNode statement : block.getStatements()) {
@@ -341,44 +385,86 @@ public class CodeGenerator {
     }
 
     private void generateStatement(ASTNode statement, MethodVisitor method) {
-        switch (statement) {
-            case FunctionCallNode call -> generateFunctionCallStatement(call, method);
-            case AssignmentNode assignment -> generateAssignment(assignment, method);
-            case ArrayStoreNode arrayStore -> generateArrayStore(arrayStore, method);
-            case FieldStoreNode fieldStore -> generateFieldStore(fieldStore, method);
-            case IfNode ifNode -> generateIf(ifNode, method);
-            case WhileNode whileNode -> generateWhile(whileNode, method);
-            case ForNode forNode -> generateFor(forNode, method);
-            case ReturnNode returnNode -> generateReturn(returnNode, method);
-            default -> throw new RuntimeException(
+        if (!stack.enter()) {
+            stack.deeper(() -> {
+                generateStatement(statement, method);
+                return null;
+            });
+            return;
+        }
+        try {
+            statement.accept(statements, method);
+        } finally {
+            stack.exit();
+        }
+    }
+
+    private class StatementGenerator implements ASTVisitor<Void, MethodVisitor> {
+        @Override
+        public Void visitDefault(ASTNode node, MethodVisitor method) {
+            throw new RuntimeException(
                     "CodeGenerationError: unsupported statement: "
-                            + statement.getClass().getSimpleName());
+                            + node.getClass().getSimpleName());
+        }
+
+        @Override
+        public Void visitFunctionCall(FunctionCallNode node, MethodVisitor method) {
+            generateFunctionCallStatement(node, method);
+            return null;
+        }
+
+        @Override
+        public Void visitAssignment(AssignmentNode node, MethodVisitor method) {
+            generateAssignment(node, method);
+            return null;
+        }
+
+        @Override
+        public Void visitArrayStore(ArrayStoreNode node, MethodVisitor method) {
+            generateArrayStore(node, method);
+            return null;
+        }
+
+        @Override
+        public Void visitFieldStore(FieldStoreNode node, MethodVisitor method) {
+            generateFieldStore(node, method);
+            return null;
+        }
+
+        @Override
+        public Void visitIf(IfNode node, MethodVisitor method) {
+            generateIf(node, method);
+            return null;
+        }
+
+        @Override
+        public Void visitWhile(WhileNode node, MethodVisitor method) {
+            generateWhile(node, method);
+            return null;
+        }
+
+        @Override
+        public Void visitFor(ForNode node, MethodVisitor method) {
+            generateFor(node, method);
+            return null;
+        }
+
+        @Override
+        public Void visitReturn(ReturnNode node, MethodVisitor method) {
+            generateReturn(node, method);
+            return null;
         }
     }
 
     private void generateAssignment(AssignmentNode assignment, MethodVisitor method) {
         String name = assignment.getIdentifier();
-        String type = assignment.getType();
+        Type type = types.named(assignment.getType());
 
         if (type != null) {
             if (assignment.getExpression() == null) {
                 pushDefault(type, method);
-                int slot = allocateSlot(name, type);
-                storeToSlot(type, slot, name, method);
-                return;
-            }
-
-            String valueType = generateExpression(assignment.getExpression(), method);
-
-            if ("FLOAT".equals(type) && "INT".equals(valueType)) {
-                method.visitInsn(I2F);
-                valueType = "FLOAT";
-            }
-
-            if (!type.equals(valueType)) {
-                throw new RuntimeException(
-                        "CodeGenerationError: variable type mismatch for " + name
-                                + ": expected " + type + " got " + valueType);
+            } else {
+                generateExpression(assignment.getExpression(), type, method);
             }
 
             int slot = allocateSlot(name, type);
@@ -390,24 +476,12 @@ public class CodeGenerator {
             throw new RuntimeException("CodeGenerationError: unknown variable: " + name);
         }
 
-        String oldType    = localTypes.get(name);
-        String valueType  = generateExpression(assignment.getExpression(), method);
-
-        if ("FLOAT".equals(oldType) && "INT".equals(valueType)) {
-            method.visitInsn(I2F);
-            valueType = "FLOAT";
-        }
-
-        if (!oldType.equals(valueType)) {
-            throw new RuntimeException(
-                    "CodeGenerationError: variable type mismatch for " + name);
-        }
-
-        int slot = localSlots.get(name);
-        storeToSlot(oldType, slot, name, method);
+        Type variableType = localTypes.get(name);
+        generateExpression(assignment.getExpression(), variableType, method);
+        storeToSlot(variableType, localSlots.get(name), name, method);
     }
 
-    private int allocateSlot(String name, String type) {
+    private int allocateSlot(String name, Type type) {
         int slot = nextSlot;
         nextSlot += slotSize(type);
         localSlots.put(name, slot);
@@ -415,30 +489,25 @@ public class CodeGenerator {
         return slot;
     }
 
-    private void storeToSlot(String type, int slot, String name, MethodVisitor method) {
+    private void storeToSlot(Type type, int slot, String name, MethodVisitor method) {
         if (slot == -1) {
-            method.visitFieldInsn(PUTSTATIC, currentClassName, name, descriptorFor(type));
+            method.visitFieldInsn(PUTSTATIC, currentClassName, name, type.getDescriptor());
         } else {
             method.visitVarInsn(storeOpcode(type), slot);
         }
     }
-    private void pushDefault(String type, MethodVisitor method) {
-        switch (type) {
-            case "INT", "BOOL" -> method.visitInsn(ICONST_0);
-            case "FLOAT" -> method.visitInsn(FCONST_0);
-            case "STRING" -> method.visitInsn(ACONST_NULL);
-            default -> {
-                method.visitInsn(ACONST_NULL);
-            }
+    private void pushDefault(Type type, MethodVisitor method) {
+        if (type == Type.INT || type == Type.BOOL) {
+            method.visitInsn(ICONST_0);
+        } else if (type == Type.FLOAT) {
+            method.visitInsn(FCONST_0);
+        } else {
+            method.visitInsn(ACONST_NULL);
         }
     }
 
     private void generateIf(IfNode ifNode, MethodVisitor method) {
-        String conditionType = generateExpression(ifNode.getCondition(), method);
-
-        if (!"BOOL".equals(conditionType)) {
-            throw new RuntimeException("CodeGenerationError: if condition must be BOOL.");
-        }
+        generateExpression(ifNode.getCondition(), method);
 
         Label elseLabel = new Label();
         Label endLabel = new Label();
@@ -460,11 +529,7 @@ public class CodeGenerator {
         Label endLabel = new Label();
 
         method.visitLabel(startLabel);
-        String conditionType = generateExpression(whileNode.getCondition(), method);
-
-        if (!"BOOL".equals(conditionType)) {
-            throw new RuntimeException("CodeGenerationError: while condition must be BOOL.");
-        }
+        generateExpression(whileNode.getCondition(), method);
 
         method.visitJumpInsn(IFEQ, endLabel);
         generateBlock(whileNode.getBody(), method);
@@ -474,86 +539,40 @@ public class CodeGenerator {
 
     private void generateFor(ForNode forNode, MethodVisitor method) {
         Map<String, Integer> savedSlots = new HashMap<>(localSlots);
-        Map<String, String> savedTypes = new HashMap<>(localTypes);
+        Map<String, Type> savedTypes = new HashMap<>(localTypes);
         int savedNextSlot = nextSlot;
 
-        ASTNode initNode = forNode.getInit();
-
-        String varName;
-        String varType = "INT";
-
-        switch (initNode) {
-            case AssignmentNode init when init.getType() != null -> {
-                varName = init.getIdentifier();
-                varType = init.getType();
-
-                if (!"INT".equals(varType)) {
-                    throw new RuntimeException("CodeGenerationError: for-loop variable must be INT.");
-                }
-
-                allocateSlot(varName, varType);
-            }
-            case IdentifierNode ident -> {
-                varName = ident.getName();
-
-                if (!localSlots.containsKey(varName)) {
-                    throw new RuntimeException(
-                            "CodeGenerationError: for-loop variable '" + varName + "' is not declared.");
-                }
-
-                varType = localTypes.get(varName);
-
-                if (!"INT".equals(varType)) {
-                    throw new RuntimeException("CodeGenerationError: for-loop variable must be INT.");
-                }
-            }
-            case AssignmentNode init when init.getType() == null -> {
-                varName = init.getIdentifier();
-
-                if (!localSlots.containsKey(varName)) {
-                    throw new RuntimeException(
-                            "CodeGenerationError: for-loop variable '" + varName + "' is not declared.");
-                }
-
-                varType = localTypes.get(varName);
-
-                if (!"INT".equals(varType)) {
-                    throw new RuntimeException("CodeGenerationError: for-loop variable must be INT.");
-                }
-            }
+        // The analyzer checked that the loop variable, its range and its update are INT
+        String varName = switch (forNode.getInit()) {
+            case AssignmentNode init -> init.getIdentifier();
+            case IdentifierNode ident -> ident.getName();
             case null, default -> throw new RuntimeException("CodeGenerationError: invalid for-loop initializer.");
-        }
-
-        int slot = localSlots.get(varName);
-        String startType = generateExpression(forNode.getRangeStart(), method);
+        };
 
-        if (!"INT".equals(startType)) {
-            throw new RuntimeException("CodeGenerationError: for-loop start must be INT.");
+        if (forNode.getInit() instanceof AssignmentNode init && init.getType() != null) {
+            allocateSlot(varName, Type.INT);
+        } else if (!localSlots.containsKey(varName)) {
+            throw new RuntimeException(
+                    "CodeGenerationError: for-loop variable '" + varName + "' is not declared.");
         }
 
-        storeToSlot(varType, slot, varName, method);
+        int slot = localSlots.get(varName);
+        generateExpression(forNode.getRangeStart(), method);
+        storeToSlot(Type.INT, slot, varName, method);
 
         Label startLabel = new Label();
         Label endLabel   = new Label();
 
         method.visitLabel(startLabel);
-        loadFromSlot(varType, slot, varName, method);
-        String endType = generateExpression(forNode.getRangeEnd(), method);
-
-        if (!"INT".equals(endType)) {
-            throw new RuntimeException("CodeGenerationError: for-loop end must be INT.");
-        }
+        loadFromSlot(Type.INT, slot, varName, method);
+        generateExpression(forNode.getRangeEnd(), method);
 
         method.visitJumpInsn(IF_ICMPGE, endLabel);
         generateBlock(forNode.getBody(), method);
 
-        String updateType = generateExpression(forNode.getUpdate(), method);
+        generateExpression(forNode.getUpdate(), method);
 
-        if (!"INT".equals(updateType)) {
-            throw new RuntimeException("CodeGenerationError: for-loop update must be INT.");
-        }
-
-        storeToSlot(varType, slot, varName, method);
+        storeToSlot(Type.INT, slot, varName, method);
         method.visitJumpInsn(GOTO, startLabel);
         method.visitLabel(endLabel);
 
@@ -565,387 +584,497 @@ public class CodeGenerator {
     }
 
     private void generateReturn(ReturnNode returnNode, MethodVisitor method) {
-        if ("VOID".equals(currentReturnType)) {
-            if (returnNode.getExpression() != null) {
-                throw new RuntimeException("CodeGenerationError: void function cannot return a value.");
-            }
-
+        if (returnNode.getExpression() == null) {
             method.visitInsn(RETURN);
             return;
         }
 
-        if (returnNode.getExpression() == null) {
-            throw new RuntimeException("CodeGenerationError: non-void function must return a value.");
-        }
+        generateExpression(returnNode.getExpression(), currentReturnType, method);
+        method.visitInsn(returnOpcode(currentReturnType));
+    }
 
-        String valueType = generateExpression(returnNode.getExpression(), method);
+    private void generateFunctionCallStatement(FunctionCallNode call, MethodVisitor method) {
+        generateExpression(call, method);
 
-        if ("FLOAT".equals(currentReturnType) && "INT".equals(valueType)) {
-            method.visitInsn(I2F);
-            valueType = "FLOAT";
+        if (typeOf(call) != Type.VOID) {
+            method.visitInsn(POP);
         }
+    }
 
-        if (!currentReturnType.equals(valueType)) {
-            throw new RuntimeException("CodeGenerationError: wrong return type. Expected " + currentReturnType + " got " + valueType);
+    private void generateFunctionCallExpression(FunctionCallNode call, MethodVisitor method) {
+        beginCall(call, method);
+        List<ASTNode> args = call.getArguments();
+        for (int i = 0, operands = callOperands(call); i < operands; i++) {
+            generateExpression(args.get(i), argumentType(call, i), method);
+            afterArgument(call, method);
         }
-
-        method.visitInsn(returnOpcode(currentReturnType));
+        finishCall(call, method);
     }
 
-    private void generateFunctionCallStatement(FunctionCallNode call, MethodVisitor method) {
+    // What a call emits before its arguments
+    private void beginCall(FunctionCallNode call, MethodVisitor method) {
         String name = call.getFunctionName();
-
         switch (name) {
-            case "println"     -> { generatePrintln(call, method); return; }
-            case "print", "write" -> { generatePrint(call, method, false); return; }
-            case "print_INT"   -> { generatePrintTyped(call, "INT",   method); return; }
-            case "print_FLOAT" -> { generatePrintTyped(call, "FLOAT", method); return; }
+            case "println", "print_INT", "print_FLOAT" ->
+                    method.visitFieldInsn(GETSTATIC, "java/lang/System", "out", "Ljava/io/PrintStream;");
+            case "print", "write" -> {
+                if (!call.getArguments().isEmpty()) {
+                    method.visitFieldInsn(GETSTATIC, "java/lang/System", "out", "Ljava/io/PrintStream;");
+                }
+            }
+            case "read_INT", "read_FLOAT", "read_STRING", "floor", "ceil", "str", "length",
+                 "not", "min", "max", "abs", "pow", "sort" -> {
+            }
+            default -> {
+                if (!functionTypes.containsKey(name)) {
+                    throw new RuntimeException("CodeGenerationError: unknown function: " + name);
+                }
+            }
         }
+    }
 
-        String returnType = generateFunctionCallExpression(call, method);
+    // How many of a call's arguments are emitted, in order
+    private static int callOperands(FunctionCallNode call) {
+        List<ASTNode> args = call.getArguments();
+        return switch (call.getFunctionName()) {
+            case "read_INT", "read_FLOAT", "read_STRING" -> 0;
+            case "min", "max", "pow" -> 2;
+            case "floor", "ceil", "str", "length", "println", "print", "write",
+                 "print_INT", "print_FLOAT", "not", "abs", "sort" -> args.isEmpty() ? 0 : 1;
+            default -> args.size();
+        };
+    }
 
-        if (!"VOID".equals(returnType)) {
-            method.visitInsn(POP);
+    // The type argument i is emitted as, or null to leave it as it is
+    private Type argumentType(FunctionCallNode call, int i) {
+        String name = call.getFunctionName();
+        return switch (name) {
+            case "floor", "ceil", "pow" -> Type.FLOAT;
+            // FLOAT if either operand is
+            case "min", "max" -> typeOf(call);
+            case "print_INT" -> Type.INT;
+            case "print_FLOAT" -> Type.FLOAT;
+            case "read_INT", "read_FLOAT", "read_STRING", "str", "length", "println", "print", "write",
+                 "not", "abs", "sort" -> null;
+            default -> functionParams.get(name).get(i);
+        };
+    }
+
+    private static void afterArgument(FunctionCallNode call, MethodVisitor method) {
+        switch (call.getFunctionName()) {
+            case "floor", "ceil", "pow" -> method.visitInsn(F2D);
+            default -> {
+            }
         }
     }
 
-    private String generateFunctionCallExpression(FunctionCallNode call, MethodVisitor method) {
+    // What a call emits once its arguments are on the stack
+    private void finishCall(FunctionCallNode call, MethodVisitor method) {
         String name = call.getFunctionName();
+        List<ASTNode> args = call.getArguments();
 
         switch (name) {
-            case "read_INT" -> {
-                emitReadScanner("nextInt", "I", method);
-                return "INT";
-            }
-            case "read_FLOAT" -> {
-                emitReadScanner("nextFloat", "F", method);
-                return "FLOAT";
-            }
-            case "read_STRING" -> {
-                emitReadScanner("next", "Ljava/lang/String;", method);
-                return "STRING";
-            }
-            case "floor" -> {
-                generateExpression(call.getArguments().getFirst(), method);
-                method.visitInsn(F2D);
-                method.visitMethodInsn(INVOKESTATIC, "java/lang/Math", "floor", "(D)D", false);
+            case "read_INT" -> emitReadScanner("nextInt", "I", method);
+            case "read_FLOAT" -> emitReadScanner("nextFloat", "F", method);
+            case "read_STRING" -> emitReadScanner("next", "Ljava/lang/String;", method);
+            case "floor", "ceil" -> {
+                method.visitMethodInsn(INVOKESTATIC, "java/lang/Math", name, "(D)D", false);
                 method.visitInsn(D2I);
-                return "INT";
-            }
-            case "ceil" -> {
-                generateExpression(call.getArguments().getFirst(), method);
-                method.visitInsn(F2D);
-                method.visitMethodInsn(INVOKESTATIC, "java/lang/Math", "ceil", "(D)D", false);
-                method.visitInsn(D2I);
-                return "INT";
             }
             case "str" -> {
-                generateExpression(call.getArguments().getFirst(), method);
                 method.visitInsn(I2C);
                 method.visitMethodInsn(INVOKESTATIC, "java/lang/String", "valueOf",
                         "(C)Ljava/lang/String;", false);
-                return "STRING";
             }
             case "length" -> {
-                ASTNode arg = call.getArguments().getFirst();
-                String argType = generateExpression(arg, method);
-                if ("STRING".equals(argType)) {
+                if (typeOf(args.getFirst()) == Type.STRING) {
                     method.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "length", "()I", false);
                 } else {
                     // Array type
                     method.visitInsn(ARRAYLENGTH);
                 }
-                return "INT";
             }
             case "println" -> {
-                generatePrintln(call, method);
-                return "VOID";
+                String descriptor = args.isEmpty() ? "()V" : printDescriptorFor(typeOf(args.getFirst()));
+                method.visitMethodInsn(INVOKEVIRTUAL, "java/io/PrintStream", "println", descriptor, false);
             }
             case "print", "write" -> {
-                generatePrint(call, method, false);
-                return "VOID";
-            }
-            case "print_INT" -> {
-                generatePrintTyped(call, "INT", method);
-                return "VOID";
-            }
-            case "print_FLOAT" -> {
-                generatePrintTyped(call, "FLOAT", method);
-                return "VOID";
+                if (!args.isEmpty()) {
+                    method.visitMethodInsn(INVOKEVIRTUAL, "java/io/PrintStream", "print",
+                            printDescriptorFor(typeOf(args.getFirst())), false);
+                }
             }
+            case "print_INT" -> method.visitMethodInsn(INVOKEVIRTUAL, "java/io/PrintStream", "println",
+                    printDescriptorFor(Type.INT), false);
+            case "print_FLOAT" -> method.visitMethodInsn(INVOKEVIRTUAL, "java/io/PrintStream", "println",
+                    printDescriptorFor(Type.FLOAT), false);
             case "not" -> {
-                generateExpression(call.getArguments().getFirst(), method);
                 method.visitInsn(ICONST_1);
                 method.visitInsn(IXOR);
-                return "BOOL";
-            }
-            case "min", "max" -> {
-                String leftType = generateExpression(call.getArguments().get(0), method);
-                String rightType = generateExpression(call.getArguments().get(1), method);
-
-                if ("FLOAT".equals(leftType) && "INT".equals(rightType)) {
-                    method.visitInsn(I2F);
-                    rightType = "FLOAT";
-                } else if ("INT".equals(leftType) && "FLOAT".equals(rightType)) {
-                    int tmpSlot = nextSlot++;
-                    method.visitVarInsn(FSTORE, tmpSlot);
-                    method.visitInsn(I2F);
-                    method.visitVarInsn(FLOAD, tmpSlot);
-                    nextSlot--;
-                    leftType = "FLOAT";
-                }
-
-                if ("INT".equals(leftType)) {
-                    method.visitMethodInsn(INVOKESTATIC, "java/lang/Math", name, "(II)I", false);
-                    return "INT";
-                } else {
-                    method.visitMethodInsn(INVOKESTATIC, "java/lang/Math", name, "(FF)F", false);
-                    return "FLOAT";
-                }
-            }
-            case "abs" -> {
-                String argType = generateExpression(call.getArguments().getFirst(), method);
-                if ("INT".equals(argType)) {
-                    method.visitMethodInsn(INVOKESTATIC, "java/lang/Math", "abs", "(I)I", false);
-                    return "INT";
-                } else {
-                    method.visitMethodInsn(INVOKESTATIC, "java/lang/Math", "abs", "(F)F", false);
-                    return "FLOAT";
-                }
             }
+            case "min", "max" -> method.visitMethodInsn(INVOKESTATIC, "java/lang/Math", name,
+                    typeOf(call) == Type.INT ? "(II)I" : "(FF)F", false);
+            case "abs" -> method.visitMethodInsn(INVOKESTATIC, "java/lang/Math", "abs",
+                    typeOf(call) == Type.INT ? "(I)I" : "(F)F", false);
             case "pow" -> {
-                String baseType = generateExpression(call.getArguments().getFirst(), method);
-                if ("INT".equals(baseType)) method.visitInsn(I2F);
-                method.visitInsn(F2D);
-                String expType = generateExpression(call.getArguments().get(1), method);
-                if ("INT".equals(expType)) method.visitInsn(I2F);
-                method.visitInsn(F2D);
                 method.visitMethodInsn(INVOKESTATIC, "java/lang/Math", "pow", "(DD)D", false);
                 method.visitInsn(D2F);
-                return "FLOAT";
             }
-            case "sort" -> {
-                generateExpression(call.getArguments().getFirst(), method);
-                method.visitMethodInsn(INVOKESTATIC, "java/util/Arrays", "sort", "([I)V", false);
-                return "VOID";
-            }
-        }
-
-        if (!functionTypes.containsKey(name)) {
-            throw new RuntimeException("CodeGenerationError: unknown function: " + name);
+            case "sort" -> method.visitMethodInsn(INVOKESTATIC, "java/util/Arrays", "sort", "([I)V", false);
+            default -> method.visitMethodInsn(
+                    INVOKESTATIC,
+                    currentClassName,
+                    name,
+                    functionDescriptors.get(name),
+                    false);
         }
+    }
 
-        String returnType = functionTypes.get(name);
-        List<String> paramTypes = functionParams.get(name);
+    private void emitReadScanner(String scannerMethod, String returnDesc, MethodVisitor method) {
+        method.visitFieldInsn(GETSTATIC, currentClassName, "__scanner__", "Ljava/util/Scanner;");
+        method.visitMethodInsn(INVOKEVIRTUAL, "java/util/Scanner", scannerMethod,
+                "()" + returnDesc, false);
+    }
 
-        generateCallArguments(call, paramTypes, method);
+    // The PrintStream overload taking type
+    private String printDescriptorFor(Type type) {
+        if (type == Type.INT) return "(I)V";
+        if (type == Type.FLOAT) return "(F)V";
+        if (type == Type.BOOL) return "(Z)V";
+        if (type == Type.STRING) return "(Ljava/lang/String;)V";
+        return "(Ljava/lang/Object;)V";
+    }
 
-        method.visitMethodInsn(
-                INVOKESTATIC,
-                currentClassName,
-                name,
-                methodDescriptor(paramTypes, returnType),
-                false);
+    private void generateExpression(ASTNode expression, MethodVisitor method) {
+        if (!stack.enter()) {
+            generateIteratively(expression, method);
+            return;
+        }
+        try {
+            expression.accept(expressions, method);
+        } finally {
+            stack.exit();
+        }
+    }
 
-        return returnType;
+    // Emits expression as a value of type target, which may need an INT widened to FLOAT
+    private void generateExpression(ASTNode expression, Type target, MethodVisitor method) {
+        generateExpression(expression, method);
+        widen(expression, target, method);
     }
 
-    private void generateCallArguments(FunctionCallNode call, List<String> paramTypes, MethodVisitor method) {
-        if (call.getArguments().size() != paramTypes.size()) {
-            throw new RuntimeException("CodeGenerationError: wrong number of arguments for " + call.getFunctionName());
+    private static void widen(ASTNode expression, Type target, MethodVisitor method) {
+        if (target == Type.FLOAT && typeOf(expression) == Type.INT) {
+            method.visitInsn(I2F);
         }
+    }
 
-        for (int i = 0; i < call.getArguments().size(); i++) {
-            String actualType = generateExpression(call.getArguments().get(i), method);
-            String expectedType = paramTypes.get(i);
+    // An expression whose operands generateIteratively is still emitting
+    private static final class Emission {
+        final ASTNode node;
+        final int operands;
+        int next;
+        // Where a short-circuit operator jumps once its result is decided
+        Label decided;
+        // The type a binary operator's operands are emitted as
+        Type operandType;
 
-            if ("FLOAT".equals(expectedType) && "INT".equals(actualType)) {
-                method.visitInsn(I2F);
-            } else if (!expectedType.equals(actualType)) {
-                throw new RuntimeException("CodeGenerationError: wrong argument type for "
-                        + call.getFunctionName() + ": expected " + expectedType + " got " + actualType);
+        Emission(ASTNode node, int operands) {
+            this.node = node;
+            this.operands = operands;
+        }
+    }
+
+    /**
+     * generateExpression with an explicit stack, for expressions nested past
+     * the guard's threshold. Each node emits what ExpressionGenerator would
+     * around its operands (begin, then afterOperand following each operand,
+     * then finish), so the bytecode is the same.
+     */
+    private void generateIteratively(ASTNode root, MethodVisitor method) {
+        ArrayDeque<Emission> pending = new ArrayDeque<>();
+        ASTNode node = root;
+        while (true) {
+            Emission emission = new Emission(node, operandCount(node));
+            begin(emission, method);
+            if (emission.operands > 0) {
+                pending.push(emission);
+                node = operand(node, 0);
+                continue;
+            }
+            finish(emission, method);
+
+            // Finishes each expression whose last operand is now on the stack
+            while (!pending.isEmpty()) {
+                Emission top = pending.peek();
+                afterOperand(top, method);
+                if (++top.next < top.operands) {
+                    node = operand(top.node, top.next);
+                    break;
+                }
+                pending.pop();
+                finish(top, method);
+            }
+            if (pending.isEmpty()) {
+                return;
             }
         }
     }
 
-    private void emitReadScanner(String scannerMethod, String returnDesc, MethodVisitor method) {
-        method.visitFieldInsn(GETSTATIC, currentClassName, "__scanner__", "Ljava/util/Scanner;");
-        method.visitMethodInsn(INVOKEVIRTUAL, "java/util/Scanner", scannerMethod,
-                "()" + returnDesc, false);
+    private static int operandCount(ASTNode node) {
+        return switch (node) {
+            case UnaryNode unary -> 1;
+            case BinaryExpressionNode binary -> 2;
+            case ArrayInitNode init -> 1;
+            case IndexAccessNode access -> 2;
+            case MemberAccessNode access -> 1;
+            case FunctionCallNode call -> callOperands(call);
+            case ConstructorCallNode ctor -> ctor.getArguments().size();
+            default -> 0;
+        };
     }
 
-    private void generatePrintln(FunctionCallNode call, MethodVisitor method) {
-        method.visitFieldInsn(GETSTATIC, "java/lang/System", "out", "Ljava/io/PrintStream;");
+    private static ASTNode operand(ASTNode node, int i) {
+        return switch (node) {
+            case UnaryNode unary -> unary.getOperand();
+            case BinaryExpressionNode binary -> i == 0 ? binary.getLeft() : binary.getRight();
+            case ArrayInitNode init -> init.getSize();
+            case IndexAccessNode access -> i == 0 ? access.getArray() : access.getIndex();
+            case MemberAccessNode access -> access.getCollection();
+            case FunctionCallNode call -> call.getArguments().get(i);
+            case ConstructorCallNode ctor -> ctor.getArguments().get(i);
+            default -> throw new IllegalStateException(node.getClass().getSimpleName() + " has no operands");
+        };
+    }
 
-        if (call.getArguments().isEmpty()) {
-            method.visitMethodInsn(INVOKEVIRTUAL, "java/io/PrintStream", "println", "()V", false);
-            return;
+    private void begin(Emission emission, MethodVisitor method) {
+        switch (emission.node) {
+            case BinaryExpressionNode binary -> {
+                if (isShortCircuit(binary)) {
+                    emission.decided = new Label();
+                } else {
+                    emission.operandType = binaryOperandType(binary);
+                }
+            }
+            case FunctionCallNode call -> beginCall(call, method);
+            case ConstructorCallNode ctor -> beginConstructorCall(ctor, method);
+            default -> {
+            }
         }
+    }
 
-        String type = generateExpression(call.getArguments().get(0), method);
-        String desc = printDescriptorFor(type);
-        method.visitMethodInsn(INVOKEVIRTUAL, "java/io/PrintStream", "println", "(" + desc + ")V", false);
+    // Follows operand emission.next, which is on the stack
+    private void afterOperand(Emission emission, MethodVisitor method) {
+        int i = emission.next;
+        switch (emission.node) {
+            case BinaryExpressionNode binary -> {
+                if (emission.decided != null) {
+                    shortCircuitJump(binary, emission.decided, method);
+                } else {
+                    widen(operand(binary, i), emission.operandType, method);
+                }
+            }
+            case FunctionCallNode call -> {
+                widen(call.getArguments().get(i), argumentType(call, i), method);
+                afterArgument(call, method);
+            }
+            case ConstructorCallNode ctor -> widen(ctor.getArguments().get(i), fieldType(ctor, i), method);
+            default -> {
+            }
+        }
     }
 
-    private void generatePrint(FunctionCallNode call, MethodVisitor method, boolean withNewline) {
-        if (call.getArguments().isEmpty()) return;
+    private void finish(Emission emission, MethodVisitor method) {
+        switch (emission.node) {
+            case UnaryNode unary -> finishUnary(unary, method);
+            case BinaryExpressionNode binary -> {
+                if (emission.decided != null) {
+                    finishShortCircuit(binary, emission.decided, method);
+                } else {
+                    finishBinary(binary, emission.operandType, method);
+                }
+            }
+            case ArrayInitNode init -> finishArrayInit(init, method);
+            case IndexAccessNode access -> finishIndexAccess(access, method);
+            case MemberAccessNode access -> finishMemberAccess(access, method);
+            case FunctionCallNode call -> finishCall(call, method);
+            case ConstructorCallNode ctor -> finishConstructorCall(ctor, method);
+            default -> emission.node.accept(expressions, method);
+        }
+    }
 
-        method.visitFieldInsn(GETSTATIC, "java/lang/System", "out", "Ljava/io/PrintStream;");
-        String type = generateExpression(call.getArguments().get(0), method);
-        String desc = printDescriptorFor(type);
-        String printMethod = withNewline ? "println" : "print";
-        method.visitMethodInsn(INVOKEVIRTUAL, "java/io/PrintStream", printMethod,
-                "(" + desc + ")V", false);
+    // The type the analyzer stored on expression
+    private static Type typeOf(ASTNode expression) {
+        Type type = expression instanceof ExpressionNode node ? node.getResolvedType() : null;
+        if (type == null) {
+            throw new RuntimeException("CodeGenerationError: "
+                    + expression.getClass().getSimpleName() + " was not analyzed.");
+        }
+        return type;
     }
 
-    private void generatePrintTyped(FunctionCallNode call, String expectedType, MethodVisitor method) {
-        method.visitFieldInsn(GETSTATIC, "java/lang/System", "out", "Ljava/io/PrintStream;");
-        String type = generateExpression(call.getArguments().get(0), method);
+    // Emits an expression, leaving a value of its analyzed type on the stack
+    private class ExpressionGenerator implements ASTVisitor<Void, MethodVisitor> {
+        @Override
+        public Void visitDefault(ASTNode node, MethodVisitor method) {
+            throw new RuntimeException("CodeGenerationError: unsupported expression: "
+                    + node.getClass().getSimpleName());
+        }
 
-        if ("FLOAT".equals(expectedType) && "INT".equals(type)) {
-            method.visitInsn(I2F);
-            type = "FLOAT";
+        @Override
+        public Void visitLiteral(LiteralNode node, MethodVisitor method) {
+            generateLiteral(node, method);
+            return null;
         }
 
-        String desc = printDescriptorFor(type);
-        method.visitMethodInsn(INVOKEVIRTUAL, "java/io/PrintStream", "println",
-                "(" + desc + ")V", false);
-    }
+        @Override
+        public Void visitIdentifier(IdentifierNode node, MethodVisitor method) {
+            generateIdentifier(node, method);
+            return null;
+        }
 
-    private String printDescriptorFor(String type) {
-        return switch (type) {
-            case "INT"    -> "I";
-            case "FLOAT"  -> "F";
-            case "BOOL"   -> "Z";
-            case "STRING" -> "Ljava/lang/String;";
-            default       -> "Ljava/lang/Object;";
-        };
+        @Override
+        public Void visitBinaryExpression(BinaryExpressionNode node, MethodVisitor method) {
+            generateBinaryExpression(node, method);
+            return null;
+        }
+
+        @Override
+        public Void visitUnary(UnaryNode node, MethodVisitor method) {
+            generateUnary(node, method);
+            return null;
+        }
+
+        @Override
+        public Void visitFunctionCall(FunctionCallNode node, MethodVisitor method) {
+            generateFunctionCallExpression(node, method);
+            return null;
+        }
+
+        @Override
+        public Void visitConstructorCall(ConstructorCallNode node, MethodVisitor method) {
+            generateConstructorCall(node, method);
+            return null;
+        }
+
+        @Override
+        public Void visitArrayInit(ArrayInitNode node, MethodVisitor method) {
+            generateArrayInit(node, method);
+            return null;
+        }
+
+        @Override
+        public Void visitIndexAccess(IndexAccessNode node, MethodVisitor method) {
+            generateIndexAccess(node, method);
+            return null;
+        }
+
+        @Override
+        public Void visitMemberAccess(MemberAccessNode node, MethodVisitor method) {
+            generateMemberAccess(node, method);
+            return null;
+        }
     }
 
-    private String generateExpression(ASTNode expression, MethodVisitor method) {
-        return switch (expression) {
-            case LiteralNode literal -> generateLiteral(literal, method);
-            case IdentifierNode identifier -> generateIdentifier(identifier, method);
-            case BinaryExpressionNode binary -> generateBinaryExpression(binary, method);
-            case UnaryNode unary -> generateUnary(unary, method);
-            case FunctionCallNode call -> generateFunctionCallExpression(call, method);
-            case ConstructorCallNode ctor -> generateConstructorCall(ctor, method);
-            case ArrayInitNode arrayInit -> generateArrayInit(arrayInit, method);
-            case IndexAccessNode idx -> generateIndexAccess(idx, method);
-            case MemberAccessNode member -> generateMemberAccess(member, method);
-            case null, default -> {
-                assert expression != null;
-                throw new RuntimeException("CodeGenerationError: unsupported expression: "
-                        + expression.getClass().getSimpleName());
-            }
-        };
+    private void generateUnary(UnaryNode unary, MethodVisitor method) {
+        generateExpression(unary.getOperand(), method);
+        finishUnary(unary, method);
     }
 
-    private String generateUnary(UnaryNode unary, MethodVisitor method) {
+    private static void finishUnary(UnaryNode unary, MethodVisitor method) {
         String op = unary.getOperator();
-        String operandType = generateExpression(unary.getOperand(), method);
 
         switch (op) {
             case "-":
-                if ("INT".equals(operandType)) {
-                    method.visitInsn(INEG);
-                    return "INT";
-                } else if ("FLOAT".equals(operandType)) {
-                    method.visitInsn(FNEG);
-                    return "FLOAT";
-                }
-
-                throw new RuntimeException(
-                        "CodeGenerationError: unary '-' requires INT or FLOAT, got " + operandType);
+                method.visitInsn(typeOf(unary) == Type.INT ? INEG : FNEG);
+                break;
             case "not":
-                if (!"BOOL".equals(operandType)) {
-                    throw new RuntimeException(
-                            "CodeGenerationError: 'not' requires BOOL, got " + operandType);
-                }
-
                 method.visitInsn(ICONST_1);
                 method.visitInsn(IXOR);
-                return "BOOL";
+                break;
             default:
                 throw new RuntimeException(
                         "CodeGenerationError: unsupported unary operator: " + op);
         }
     }
 
-    private String generateBinaryExpression(BinaryExpressionNode binary, MethodVisitor method) {
-        String op       = binary.getOperator();
-        String exprKind = binary.getType();
-
-        if ("&&".equals(op)) {
-            String leftType = generateExpression(binary.getLeft(), method);
-            Label falseLabel = new Label(), endLabel = new Label();
-            method.visitJumpInsn(IFEQ, falseLabel);
-            generateExpression(binary.getRight(), method);
-            method.visitJumpInsn(IFEQ, falseLabel);
-            method.visitInsn(ICONST_1);
-            method.visitJumpInsn(GOTO, endLabel);
-            method.visitLabel(falseLabel);
-            method.visitInsn(ICONST_0);
-            method.visitLabel(endLabel);
-            return "BOOL";
-        }
-
-        if ("||".equals(op)) {
+    private void generateBinaryExpression(BinaryExpressionNode binary, MethodVisitor method) {
+        if (isShortCircuit(binary)) {
+            Label decided = new Label();
             generateExpression(binary.getLeft(), method);
-            Label trueLabel = new Label(), endLabel = new Label();
-            method.visitJumpInsn(IFNE, trueLabel);
+            shortCircuitJump(binary, decided, method);
             generateExpression(binary.getRight(), method);
-            method.visitJumpInsn(IFNE, trueLabel);
-            method.visitInsn(ICONST_0);
-            method.visitJumpInsn(GOTO, endLabel);
-            method.visitLabel(trueLabel);
-            method.visitInsn(ICONST_1);
-            method.visitLabel(endLabel);
-            return "BOOL";
+            shortCircuitJump(binary, decided, method);
+            finishShortCircuit(binary, decided, method);
+            return;
         }
 
-        String leftType  = generateExpression(binary.getLeft(),  method);
-        String rightType = generateExpression(binary.getRight(), method);
+        Type operandType = binaryOperandType(binary);
+        generateExpression(binary.getLeft(), operandType, method);
+        generateExpression(binary.getRight(), operandType, method);
+        finishBinary(binary, operandType, method);
+    }
 
-        if ("FLOAT".equals(leftType) && "INT".equals(rightType)) {
-            method.visitInsn(I2F);
-            rightType = "FLOAT";
-        } else if ("INT".equals(leftType) && "FLOAT".equals(rightType)) {
-            int tmpSlot = nextSlot++;
-            method.visitVarInsn(FSTORE, tmpSlot);
-            method.visitInsn(I2F);
-            method.visitVarInsn(FLOAD, tmpSlot);
-            nextSlot--;
-            leftType = "FLOAT";
-        }
+    private static boolean isShortCircuit(BinaryExpressionNode binary) {
+        String op = binary.getOperator();
+        return "&&".equals(op) || "||".equals(op);
+    }
 
-        if ("INT".equals(leftType) && "INT".equals(rightType)) {
-            return generateIntBinary(op, exprKind, method);
-        }
+    // Follows each operand of && and ||: jumps to decided once the result is known
+    private static void shortCircuitJump(BinaryExpressionNode binary, Label decided, MethodVisitor method) {
+        method.visitJumpInsn("&&".equals(binary.getOperator()) ? IFEQ : IFNE, decided);
+    }
 
-        if ("FLOAT".equals(leftType) && "FLOAT".equals(rightType)) {
-            return generateFloatBinary(op, exprKind, method);
-        }
+    // Neither operand decided the result: it is true for && and false for ||
+    private static void finishShortCircuit(BinaryExpressionNode binary, Label decided, MethodVisitor method) {
+        boolean and = "&&".equals(binary.getOperator());
+        Label endLabel = new Label();
+        method.visitInsn(and ? ICONST_1 : ICONST_0);
+        method.visitJumpInsn(GOTO, endLabel);
+        method.visitLabel(decided);
+        method.visitInsn(and ? ICONST_0 : ICONST_1);
+        method.visitLabel(endLabel);
+    }
 
-        if ("BOOL".equals(leftType) && "BOOL".equals(rightType)) {
-            return generateBoolBinary(op, method);
-        }
+    // The type both operands are emitted as
+    private static Type binaryOperandType(BinaryExpressionNode binary) {
+        Type leftType = typeOf(binary.getLeft());
+        Type rightType = typeOf(binary.getRight());
+        // An INT beside a FLOAT is widened, each as it is pushed
+        Type operandType = leftType == Type.FLOAT || rightType == Type.FLOAT ? Type.FLOAT : leftType;
 
-        if ("STRING".equals(leftType) && "STRING".equals(rightType)) {
-            return generateStringBinary(op, method);
+        if (operandType != rightType && operandType != Type.FLOAT) {
+            throw new RuntimeException("CodeGenerationError: unsupported binary operation for "
+                    + leftType + " and " + rightType);
         }
+        return operandType;
+    }
+
+    private void finishBinary(BinaryExpressionNode binary, Type operandType, MethodVisitor method) {
+        String op       = binary.getOperator();
+        String exprKind = binary.getType();
 
-        throw new RuntimeException("CodeGenerationError: unsupported binary operation for "
-                + leftType + " and " + rightType);
+        if (operandType == Type.INT) {
+            generateIntBinary(op, exprKind, method);
+        } else if (operandType == Type.FLOAT) {
+            generateFloatBinary(op, exprKind, method);
+        } else if (operandType == Type.BOOL) {
+            generateBoolBinary(op, method);
+        } else if (operandType == Type.STRING) {
+            generateStringBinary(op, method);
+        } else {
+            throw new RuntimeException("CodeGenerationError: unsupported binary operation for "
+                    + typeOf(binary.getLeft()) + " and " + typeOf(binary.getRight()));
+        }
     }
 
-    private String generateIntBinary(String op, String exprKind, MethodVisitor method) {
-        return switch (op) {
-            case "+" -> { method.visitInsn(IADD); yield "INT"; }
-            case "-" -> { method.visitInsn(ISUB); yield "INT"; }
-            case "*" -> { method.visitInsn(IMUL); yield "INT"; }
-            case "/" -> { method.visitInsn(IDIV); yield "INT"; }
-            case "%" -> { method.visitInsn(IREM); yield "INT"; }
+    private void generateIntBinary(String op, String exprKind, MethodVisitor method) {
+        switch (op) {
+            case "+" -> method.visitInsn(IADD);
+            case "-" -> method.visitInsn(ISUB);
+            case "*" -> method.visitInsn(IMUL);
+            case "/" -> method.visitInsn(IDIV);
+            case "%" -> method.visitInsn(IREM);
             case "==" -> generateIntComparison(IF_ICMPEQ, method);
             case "=/=", "!=" -> generateIntComparison(IF_ICMPNE, method);
             case "<"  -> generateIntComparison(IF_ICMPLT, method);
@@ -954,54 +1083,54 @@ public class CodeGenerator {
             case ">=" -> generateIntComparison(IF_ICMPGE, method);
             default -> throw new RuntimeException(
                     "CodeGenerationError: unsupported INT operator: " + op);
-        };
+        }
     }
 
-    private String generateFloatBinary(String op, String exprKind, MethodVisitor method) {
-        return switch (op) {
-            case "+" -> { method.visitInsn(FADD); yield "FLOAT"; }
-            case "-" -> { method.visitInsn(FSUB); yield "FLOAT"; }
-            case "*" -> { method.visitInsn(FMUL); yield "FLOAT"; }
-            case "/" -> { method.visitInsn(FDIV); yield "FLOAT"; }
+    private void generateFloatBinary(String op, String exprKind, MethodVisitor method) {
+        switch (op) {
+            case "+" -> method.visitInsn(FADD);
+            case "-" -> method.visitInsn(FSUB);
+            case "*" -> method.visitInsn(FMUL);
+            case "/" -> method.visitInsn(FDIV);
             case "==" -> {
                 method.visitInsn(FCMPL);
-                yield generateZeroComparison(IFEQ, method);
+                generateZeroComparison(IFEQ, method);
             }
             case "=/=", "!=" -> {
                 method.visitInsn(FCMPL);
-                yield generateZeroComparison(IFNE, method);
+                generateZeroComparison(IFNE, method);
             }
             case "<" -> {
                 method.visitInsn(FCMPL);
-                yield generateZeroComparison(IFLT, method);
+                generateZeroComparison(IFLT, method);
             }
             case ">" -> {
                 method.visitInsn(FCMPG);
-                yield generateZeroComparison(IFGT, method);
+                generateZeroComparison(IFGT, method);
             }
             case "<=" -> {
                 method.visitInsn(FCMPL);
-                yield generateZeroComparison(IFLE, method);
+                generateZeroComparison(IFLE, method);
             }
             case ">=" -> {
                 method.visitInsn(FCMPG);
-                yield generateZeroComparison(IFGE, method);
+                generateZeroComparison(IFGE, method);
             }
             default -> throw new RuntimeException(
                     "CodeGenerationError: unsupported FLOAT operator: " + op);
-        };
+        }
     }
 
-    private String generateBoolBinary(String op, MethodVisitor method) {
-        return switch (op) {
+    private void generateBoolBinary(String op, MethodVisitor method) {
+        switch (op) {
             case "==" -> generateIntComparison(IF_ICMPEQ, method);
             case "=/=", "!=" -> generateIntComparison(IF_ICMPNE, method);
             default -> throw new RuntimeException(
                     "CodeGenerationError: unsupported BOOL operator: " + op);
-        };
+        }
     }
 
-    private String generateZeroComparison(int jumpOpcode, MethodVisitor method) {
+    private void generateZeroComparison(int jumpOpcode, MethodVisitor method) {
         Label trueLabel = new Label();
         Label endLabel  = new Label();
         method.visitJumpInsn(jumpOpcode, trueLabel);
@@ -1010,31 +1139,30 @@ public class CodeGenerator {
         method.visitLabel(trueLabel);
         method.visitInsn(ICONST_1);
         method.visitLabel(endLabel);
-        return "BOOL";
     }
 
-    private String generateStringBinary(String op, MethodVisitor method) {
+    private void generateStringBinary(String op, MethodVisitor method) {
         if ("+".equals(op)) {
             method.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "concat",
                     "(Ljava/lang/String;)Ljava/lang/String;", false);
-            return "STRING";
+            return;
         }
         if ("==".equals(op)) {
             method.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "equals",
                     "(Ljava/lang/Object;)Z", false);
-            return "BOOL";
+            return;
         }
         if ("=/=".equals(op) || "!=".equals(op)) {
             method.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "equals",
                     "(Ljava/lang/Object;)Z", false);
             method.visitInsn(ICONST_1);
             method.visitInsn(IXOR);
-            return "BOOL";
+            return;
         }
         throw new RuntimeException("CodeGenerationError: unsupported STRING operator: " + op);
     }
 
-    private String generateIntComparison(int jumpOpcode, MethodVisitor method) {
+    private void generateIntComparison(int jumpOpcode, MethodVisitor method) {
         Label trueLabel = new Label();
         Label endLabel = new Label();
         method.visitJumpInsn(jumpOpcode, trueLabel);
@@ -1043,281 +1171,175 @@ public class CodeGenerator {
         method.visitLabel(trueLabel);
         method.visitInsn(ICONST_1);
         method.visitLabel(endLabel);
-        return "BOOL";
     }
 
-    private String generateIdentifier(IdentifierNode identifier, MethodVisitor method) {
+    private void generateIdentifier(IdentifierNode identifier, MethodVisitor method) {
         String name = identifier.getName();
 
         if (!localSlots.containsKey(name)) {
             throw new RuntimeException("CodeGenerationError: unknown variable: " + name);
         }
 
-        String type = localTypes.get(name);
-        int    slot = localSlots.get(name);
-        loadFromSlot(type, slot, name, method);
-        return type;
+        loadFromSlot(typeOf(identifier), localSlots.get(name), name, method);
     }
 
-    private void loadFromSlot(String type, int slot, String name, MethodVisitor method) {
+    private void loadFromSlot(Type type, int slot, String name, MethodVisitor method) {
         if (slot == -1) {
-            method.visitFieldInsn(GETSTATIC, currentClassName, name, descriptorFor(type));
+            method.visitFieldInsn(GETSTATIC, currentClassName, name, type.getDescriptor());
         } else {
             method.visitVarInsn(loadOpcode(type), slot);
         }
     }
 
-    private String generateLiteral(LiteralNode literal, MethodVisitor method) {
+    private void generateLiteral(LiteralNode literal, MethodVisitor method) {
         String value = literal.getValue();
 
-        return switch (literal.getType()) {
-            case INT -> {
-                method.visitLdcInsn(Integer.parseInt(value));
-                yield "INT";
-            }
-            case FLOAT -> {
-                method.visitLdcInsn(Float.parseFloat(value));
-                yield "FLOAT";
-            }
-            case STRING -> {
-                method.visitLdcInsn(value);
-                yield "STRING";
-            }
-            case BOOL -> {
-                method.visitInsn(Boolean.parseBoolean(value) ? ICONST_1 : ICONST_0);
-                yield "BOOL";
-            }
+        switch (literal.getType()) {
+            case INT -> method.visitLdcInsn(Integer.parseInt(value));
+            case FLOAT -> method.visitLdcInsn(Float.parseFloat(value));
+            case STRING -> method.visitLdcInsn(value);
+            case BOOL -> method.visitInsn(Boolean.parseBoolean(value) ? ICONST_1 : ICONST_0);
             default -> throw new RuntimeException("CodeGenerationError: unsupported literal.");
-        };
-    }
-
-    private String generateConstructorCall(ConstructorCallNode ctor, MethodVisitor method) {
-        String collName = ctor.getCollectionName();
-
-        if (!collectionFields.containsKey(collName)) {
-            throw new RuntimeException(
-                    "CodeGenerationError: unknown collection: " + collName);
         }
+    }
 
-        List<String[]> fields = collectionFields.get(collName);
-
-        method.visitTypeInsn(NEW, collName);
-        method.visitInsn(DUP);
+    private void generateConstructorCall(ConstructorCallNode ctor, MethodVisitor method) {
+        beginConstructorCall(ctor, method);
 
         for (int i = 0; i < ctor.getArguments().size(); i++) {
-            String actualType   = generateExpression(ctor.getArguments().get(i), method);
-            String expectedType = fields.get(i)[1];
-
-            if ("FLOAT".equals(expectedType) && "INT".equals(actualType)) {
-                method.visitInsn(I2F);
-            }
+            generateExpression(ctor.getArguments().get(i), fieldType(ctor, i), method);
         }
 
-        StringBuilder ctorDesc = new StringBuilder("(");
+        finishConstructorCall(ctor, method);
+    }
 
-        for (String[] field : fields) ctorDesc.append(descriptorFor(field[1]));
+    private static void beginConstructorCall(ConstructorCallNode ctor, MethodVisitor method) {
+        method.visitTypeInsn(NEW, ctor.getCollectionName());
+        method.visitInsn(DUP);
+    }
 
-        ctorDesc.append(")V");
+    // The type of the field argument i initializes
+    private static Type fieldType(ConstructorCallNode ctor, int i) {
+        return ((CollectionType) typeOf(ctor)).getFields().get(i).type();
+    }
 
-        method.visitMethodInsn(INVOKESPECIAL, collName, "<init>", ctorDesc.toString(), false);
-        return collName;
+    private static void finishConstructorCall(ConstructorCallNode ctor, MethodVisitor method) {
+        String collName = ctor.getCollectionName();
+        CollectionType collection = (CollectionType) typeOf(ctor);
+        method.visitMethodInsn(INVOKESPECIAL, collName, "<init>", collection.getConstructorDescriptor(), false);
     }
 
-    private String generateArrayInit(ArrayInitNode arrayInit, MethodVisitor method) {
-        String elementType = arrayInit.getType();
+    private void generateArrayInit(ArrayInitNode arrayInit, MethodVisitor method) {
         generateExpression(arrayInit.getSize(), method); // size on stack
+        finishArrayInit(arrayInit, method);
+    }
 
-        switch (elementType) {
-            case "INT"  -> method.visitIntInsn(NEWARRAY, T_INT);
-            case "FLOAT" -> method.visitIntInsn(NEWARRAY, T_FLOAT);
-            case "BOOL"  -> method.visitIntInsn(NEWARRAY, T_BOOLEAN);
-            default      -> {
-                String desc = descriptorFor(elementType);
-                String internalName = desc.startsWith("L") && desc.endsWith(";")
-                        ? desc.substring(1, desc.length() - 1) : desc;
-                method.visitTypeInsn(ANEWARRAY, internalName);
-            }
-        }
+    private static void finishArrayInit(ArrayInitNode arrayInit, MethodVisitor method) {
+        Type elementType = ((ArrayType) typeOf(arrayInit)).getElementType();
 
-        return elementType + "[]";
+        if (elementType == Type.INT) {
+            method.visitIntInsn(NEWARRAY, T_INT);
+        } else if (elementType == Type.FLOAT) {
+            method.visitIntInsn(NEWARRAY, T_FLOAT);
+        } else if (elementType == Type.BOOL) {
+            method.visitIntInsn(NEWARRAY, T_BOOLEAN);
+        } else {
+            method.visitTypeInsn(ANEWARRAY, elementType.getInternalName());
+        }
     }
 
     private void generateArrayStore(ArrayStoreNode store, MethodVisitor method) {
-        String arrayType = generateExpression(store.getArray(), method);
-
-        String elementType = arrayType.endsWith("[]")
-                ? arrayType.substring(0, arrayType.length() - 2)
-                : arrayType;
+        Type elementType = ((ArrayType) typeOf(store.getArray())).getElementType();
 
+        generateExpression(store.getArray(), method);
         generateExpression(store.getIndex(), method);
-        String valueType = generateExpression(store.getValue(), method);
+        generateExpression(store.getValue(), elementType, method);
 
-        if ("FLOAT".equals(elementType) && "INT".equals(valueType)) {
-            method.visitInsn(I2F);
-            valueType = "FLOAT";
-        }
-
-        if (!elementType.equals(valueType)) {
-            throw new RuntimeException("CodeGenerationError: cannot store '" + valueType
-                    + "' into array of '" + elementType + "'.");
-        }
-
-        int storeArrOpcode = switch (elementType) {
-            case "INT"   -> IASTORE;
-            case "FLOAT" -> FASTORE;
-            case "BOOL"  -> BASTORE;
-            default      -> AASTORE;
-        };
+        int storeArrOpcode = elementType == Type.INT ? IASTORE
+                : elementType == Type.FLOAT ? FASTORE
+                : elementType == Type.BOOL ? BASTORE
+                : AASTORE;
 
         method.visitInsn(storeArrOpcode);
     }
 
     private void generateFieldStore(FieldStoreNode store, MethodVisitor method) {
-        String collType = generateExpression(store.getTarget(), method);
-        String baseType = collType.replace("[]", "");
+        CollectionType collection = (CollectionType) typeOf(store.getTarget()).getBaseType();
+        Type fieldType = collection.getField(store.getField()).type();
 
-        if (!collectionFields.containsKey(baseType)) {
-            throw new RuntimeException("CodeGenerationError: field-write on unknown collection type: " + collType);
-        }
-
-        String fieldType = null;
-
-        for (String[] field : collectionFields.get(baseType)) {
-            if (field[0].equals(store.getField())) {
-                fieldType = field[1];
-                break;
-            }
-        }
+        generateExpression(store.getTarget(), method);
+        generateExpression(store.getValue(), fieldType, method);
 
-        if (fieldType == null) {
-            throw new RuntimeException("CodeGenerationError: collection '" + baseType
-                    + "' has no field '" + store.getField() + "'.");
-        }
-
-        String valueType = generateExpression(store.getValue(), method);
-
-        if ("FLOAT".equals(fieldType) && "INT".equals(valueType)) {
-            method.visitInsn(I2F);
-            valueType = "FLOAT";
-        }
-
-        if (!fieldType.equals(valueType)) {
-            throw new RuntimeException("CodeGenerationError: cannot assign '" + valueType
-                    + "' to field '" + store.getField() + "' of type '" + fieldType + "'.");
-        }
-
-        method.visitFieldInsn(PUTFIELD, baseType, store.getField(), descriptorFor(fieldType));
+        method.visitFieldInsn(PUTFIELD, collection.getInternalName(), store.getField(),
+                fieldType.getDescriptor());
     }
 
-    private String generateIndexAccess(IndexAccessNode idx, MethodVisitor method) {
-        String arrayType = generateExpression(idx.getArray(), method);
+    private void generateIndexAccess(IndexAccessNode idx, MethodVisitor method) {
+        generateExpression(idx.getArray(), method);
         generateExpression(idx.getIndex(), method);
+        finishIndexAccess(idx, method);
+    }
 
-        if ("STRING".equals(arrayType)) {
+    private static void finishIndexAccess(IndexAccessNode idx, MethodVisitor method) {
+        if (typeOf(idx.getArray()) == Type.STRING) {
             method.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "charAt", "(I)C", false);
-            return "INT";
+            return;
         }
 
-        String elementType = arrayType.endsWith("[]")
-                ? arrayType.substring(0, arrayType.length() - 2)
-                : arrayType;
+        Type elementType = typeOf(idx);
 
-        int loadArrOpcode = switch (elementType) {
-            case "INT"    -> IALOAD;
-            case "FLOAT"  -> FALOAD;
-            case "BOOL"   -> BALOAD;
-            default       -> AALOAD;
-        };
+        int loadArrOpcode = elementType == Type.INT ? IALOAD
+                : elementType == Type.FLOAT ? FALOAD
+                : elementType == Type.BOOL ? BALOAD
+                : AALOAD;
 
         method.visitInsn(loadArrOpcode);
-        return elementType;
     }
 
-    private String generateMemberAccess(MemberAccessNode member, MethodVisitor method) {
-        String collType  = generateExpression(member.getCollection(), method);
-        String fieldName = member.getMember();
-        String baseType  = collType.replace("[]", "");
-
-        if (!collectionFields.containsKey(baseType)) {
-            throw new RuntimeException(
-                    "CodeGenerationError: member access on unknown collection type: " + collType);
-        }
-
-        String fieldType = null;
-
-        for (String[] field : collectionFields.get(baseType)) {
-            if (field[0].equals(fieldName)) {
-                fieldType = field[1];
-                break;
-            }
-        }
-
-        if (fieldType == null) {
-            throw new RuntimeException("CodeGenerationError: collection '" + baseType
-                    + "' has no field '" + fieldName + "'");
-        }
+    private void generateMemberAccess(MemberAccessNode member, MethodVisitor method) {
+        generateExpression(member.getCollection(), method);
+        finishMemberAccess(member, method);
+    }
 
-        method.visitFieldInsn(GETFIELD, baseType, fieldName, descriptorFor(fieldType));
-        return fieldType;
+    private static void finishMemberAccess(MemberAccessNode member, MethodVisitor method) {
+        method.visitFieldInsn(GETFIELD, typeOf(member.getCollection()).getBaseType().getInternalName(),
+                member.getMember(), typeOf(member).getDescriptor());
     }
 
-    private String methodDescriptor(List<String> paramTypes, String returnType) {
+    private String methodDescriptor(List<Type> paramTypes, Type returnType) {
         StringBuilder descriptor = new StringBuilder();
         descriptor.append("(");
 
-        for (String paramType : paramTypes) {
-            descriptor.append(descriptorFor(paramType));
+        for (Type paramType : paramTypes) {
+            descriptor.append(paramType.getDescriptor());
         }
 
         descriptor.append(")");
-        descriptor.append(descriptorFor(returnType));
+        descriptor.append(returnType.getDescriptor());
 
         return descriptor.toString();
     }
 
-    private String descriptorFor(String type) {
-        return switch (type) {
-            case "INT"   -> "I";
-            case "FLOAT" -> "F";
-            case "BOOL"  -> "Z";
-            case "VOID"  -> "V";
-            case "STRING" -> "Ljava/lang/String;";
-            default -> {
-                if (type.endsWith("[]")) {
-                    String base = type.substring(0, type.length() - 2);
-                    yield "[" + descriptorFor(base);
-                }
-                yield "L" + type + ";";
-            }
-        };
-    }
-
-    private int storeOpcode(String type) {
-        return switch (type) {
-            case "INT", "BOOL" -> ISTORE;
-            case "FLOAT" -> FSTORE;
-            default -> ASTORE;
-        };
+    private int storeOpcode(Type type) {
+        if (type == Type.INT || type == Type.BOOL) return ISTORE;
+        if (type == Type.FLOAT) return FSTORE;
+        return ASTORE;
     }
 
-    private int loadOpcode(String type) {
-        return switch (type) {
-            case "INT", "BOOL" -> ILOAD;
-            case "FLOAT"       -> FLOAD;
-            default            -> ALOAD;
-        };
+    private int loadOpcode(Type type) {
+        if (type == Type.INT || type == Type.BOOL) return ILOAD;
+        if (type == Type.FLOAT) return FLOAD;
+        return ALOAD;
     }
 
-    private int returnOpcode(String type) {
-        return switch (type) {
-            case "INT", "BOOL" -> IRETURN;
-            case "FLOAT"       -> FRETURN;
-            case "VOID"        -> RETURN;
-            default            -> ARETURN;
-        };
+    private int returnOpcode(Type type) {
+        if (type == Type.INT || type == Type.BOOL) return IRETURN;
+        if (type == Type.FLOAT) return FRETURN;
+        if (type == Type.VOID) return RETURN;
+        return ARETURN;
     }
 
-    private int slotSize(String type) {
+    private int slotSize(Type type) {
         return 1;
     }
 
@@ -1,20 +1,36 @@
 package compiler;
 
+import compiler.Cache.ASTCache;
+import compiler.Diagnostics.DiagnosticCollector;
 import compiler.Lexer.Lexer;
+import compiler.Lexer.ParallelLexer;
 import compiler.Lexer.Symbol;
+import compiler.Lexer.TokenStream;
 import compiler.Lexer.TokenType;
 import compiler.Parser.Parser;
 import compiler.Parser.AST.ASTNode;
+import compiler.Parser.AST.ASTPrinter;
+import compiler.Parser.AST.FlatAST;
 import compiler.Semantic.SemanticAnalyzer;
 import compiler.CodeGen.CodeGenerator;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.StringReader;
-import java.io.Reader;
 import java.io.FileReader;
+import java.io.Writer;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 public class Compiler {
+    // -Dcompiler.cache=<dir> keeps checked trees there, so unchanged sources skip lexing, parsing and analysis
+    private static final String CACHE_PROPERTY = "compiler.cache";
+    // -Dcompiler.flatAST=true checks sources through a FlatAST: less memory on large sources,
+    // but slower, since each declaration's nodes are rebuilt to be analyzed
+    private static final String FLAT_AST_PROPERTY = "compiler.flatAST";
+
     public static void main(String[] args) {
         if (args.length == 3 && args[1].equals("-o")) {
             try {
@@ -66,60 +82,141 @@ public class Compiler {
 
     private static void runLexer(String filepath) throws Exception {
         System.out.println("Running Lexer on: " + filepath);
-        try (Reader reader = new FileReader(filepath)) {
-            Lexer lexer = new Lexer(reader);
-            Symbol symbol;
-            while ((symbol = lexer.getNextSymbol()).getType() != TokenType.EOF) {
-                if (symbol.getType() == TokenType.ERROR) {
-                    System.err.println("Lexical error at line " + symbol.getLine() + ": " + symbol.getValue());
-                    System.exit(1);
+        // One flush at the end instead of one per println
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, System.out.charset()), 1 << 16);
+        // All lexical errors are reported in one run, not just the first
+        DiagnosticCollector diagnostics = new DiagnosticCollector();
+        try (Lexer lexer = openLexer(filepath)) {
+            lexer.reportErrorsTo(diagnostics);
+            for (Symbol symbol : lexer) {
+                if (symbol.getType() != TokenType.ERROR) {
+                    out.write(symbol.toString());
+                    out.write('\n');
                 }
-                System.out.println(symbol);
             }
         }
+        out.flush();
+
+        if (diagnostics.hasErrors()) {
+            diagnostics.print(System.err);
+            System.exit(1);
+        }
     }
 
     private static void runParser(String filepath) throws Exception {
-        try (Reader reader = new FileReader(filepath)) {
-            Lexer lexer = new Lexer(reader);
-            Parser parser = new Parser(lexer);
-            ASTNode root = parser.getAST();
+        // Every syntax error is reported in one run; the tree is only printed for a clean parse
+        DiagnosticCollector diagnostics = new DiagnosticCollector();
+        Parser parser = new Parser(lexFile(filepath));
+        parser.reportErrorsTo(diagnostics);
+        ASTNode root = parser.getAST();
 
-            if (root != null) {
-                System.out.println(root.print(""));
-            }
-        } catch (RuntimeException e) {
-            System.err.println(e.getMessage());
+        if (diagnostics.hasErrors()) {
+            diagnostics.print(System.err);
             System.exit(1);
         }
+        // Streamed, so deep trees are not built up as one String first
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, System.out.charset()), 1 << 16);
+        new ASTPrinter(out).print(root);
+        out.write('\n');
+        out.flush();
     }
 
     private static void runSemantic(String filepath) throws Exception {
-        try (Reader reader = new FileReader(filepath)) {
-            Lexer lexer = new Lexer(reader);
-            Parser parser = new Parser(lexer);
-            ASTNode root = parser.getAST();
-            if (root != null) {
-                SemanticAnalyzer analyzer = new SemanticAnalyzer();
-                analyzer.analyze(root);
-            }
+        CachedTree cached = cachedTree(filepath);
+        if (cached == null) {
+            analyze(filepath);
+        } else if (cached.load() == null) {
+            cached.store(FlatAST.of(analyzedTree(filepath, new SemanticAnalyzer())));
         }
     }
-    private static void runCodeGeneration(String sourceFile, String outputFile) throws Exception {
-        try (Reader reader = new FileReader(sourceFile)) {
-            Lexer lexer = new Lexer(reader);
-            Parser parser = new Parser(lexer);
-            ASTNode root = parser.getAST();
 
+    private static void runCodeGeneration(String sourceFile, String outputFile) throws Exception {
+        // A cached tree keeps the types it was analyzed with, so a hit is generated without analysis
+        CachedTree cached = cachedTree(sourceFile);
+        FlatAST hit = cached != null ? cached.load() : null;
+        if (hit != null) {
+            new CodeGenerator().generate(hit, outputFile);
+        } else {
             SemanticAnalyzer analyzer = new SemanticAnalyzer();
-            analyzer.analyze(root);
+            ASTNode root = analyzedTree(sourceFile, analyzer);
+            new CodeGenerator(analyzer.getTypes()).generate(root, outputFile);
+            if (cached != null) {
+                cached.store(FlatAST.of(root));
+            }
+        }
+        System.out.println("Generated class file: " + outputFile);
+    }
 
-            CodeGenerator generator = new CodeGenerator();
-            generator.generate(root, outputFile);
+    // The object tree of sourceFile once it has passed analysis, its expressions typed by analyzer
+    private static ASTNode analyzedTree(String sourceFile, SemanticAnalyzer analyzer) throws IOException {
+        ASTNode root = new Parser(lexFile(sourceFile)).getAST();
+        exitOnSemanticErrors(analyzer.analyze(root));
+        return root;
+    }
 
-            System.out.println("Generated class file: " + outputFile);
+    // Where the tree of sourceFile is cached, or null when there is no cache
+    private static CachedTree cachedTree(String sourceFile) throws IOException {
+        String cacheDir = System.getProperty(CACHE_PROPERTY);
+        // A pipe could not be read a second time for the hash
+        if (cacheDir == null || !Files.isRegularFile(Path.of(sourceFile))) {
+            return null;
         }
+        String key = ASTCache.key(Files.readAllBytes(Path.of(sourceFile)));
+        return new CachedTree(new ASTCache(Path.of(cacheDir)), key);
     }
+
+    private record CachedTree(ASTCache cache, String key) {
+        FlatAST load() {
+            return cache.load(key);
+        }
+
+        void store(FlatAST ast) {
+            try {
+                cache.store(key, ast);
+            } catch (IOException e) {
+                // Only the next compile's hit is lost
+                System.err.println("Cache warning: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void analyze(String sourceFile) throws IOException {
+        Parser parser = new Parser(lexFile(sourceFile));
+        SemanticAnalyzer analyzer = new SemanticAnalyzer();
+        if (Boolean.getBoolean(FLAT_AST_PROPERTY)) {
+            exitOnSemanticErrors(analyzer.analyze(parser.getFlatAST()));
+        } else {
+            exitOnSemanticErrors(analyzer.analyze(parser.getAST()));
+        }
+    }
+
+    // Every semantic error found is printed, one per line, before exiting with 2
+    private static void exitOnSemanticErrors(DiagnosticCollector diagnostics) {
+        if (diagnostics.hasErrors()) {
+            diagnostics.print(System.out);
+            System.exit(2);
+        }
+    }
+    // Regular files are memory-mapped; pipes and devices are read through a Reader.
+    private static Lexer openLexer(String filepath) throws IOException {
+        Path path = Path.of(filepath);
+        if (Files.isRegularFile(path)) {
+            return new Lexer(path);
+        }
+        return new Lexer(new FileReader(filepath));
+    }
+
+    // Large regular files are lexed on several threads, everything else in one pass.
+    private static TokenStream lexFile(String filepath) throws IOException {
+        Path path = Path.of(filepath);
+        if (Files.isRegularFile(path) && Files.size(path) >= 4L * ParallelLexer.MIN_CHUNK_SIZE) {
+            return new ParallelLexer().lex(path);
+        }
+        try (Lexer lexer = openLexer(filepath)) {
+            return TokenStream.lex(lexer);
+        }
+    }
+
     private static String defaultOutputFile(String sourceFile) {
         String fileName = Path.of(sourceFile).getFileName().toString();
 
@@ -178,7 +275,7 @@ public class Compiler {
         try {
             Lexer lexer = new Lexer(new StringReader(testInput));
 
-            Parser parser = new Parser(lexer);
+            Parser parser = new Parser(TokenStream.lex(lexer));
             ASTNode root = parser.getAST();
 
             if (root != null) {
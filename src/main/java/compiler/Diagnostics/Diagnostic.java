@@ -0,0 +1,68 @@
+package compiler.Diagnostics;
+
+/**
+ * One problem found in the source, with the position it was found at.
+ */
+public class Diagnostic {
+    public enum Phase {
+        LEXICAL("Lexical"),
+        SYNTAX("Syntax"),
+        SEMANTIC("Semantic");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private final Phase phase;
+    private final String message;
+    private final int line;
+    private final int column;
+
+    public Diagnostic(Phase phase, String message, int line, int column) {
+        this.phase = phase;
+        this.message = message;
+        this.line = line;
+        this.column = column;
+    }
+
+    // For problems found on the tree, which keeps no positions; line and column are 0
+    public Diagnostic(Phase phase, String message) {
+        this(phase, message, 0, 0);
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    public boolean hasPosition() {
+        return line > 0;
+    }
+
+    // Without a position the message is printed alone; semantic messages already name their error
+    @Override
+    public String toString() {
+        if (!hasPosition()) {
+            return message;
+        }
+        return phase.getLabel() + " error at line " + line + ", column " + column + ": " + message;
+    }
+}
@@ -0,0 +1,68 @@
+package compiler.Diagnostics;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects diagnostics across a whole pass instead of stopping at the first one.
+ * Only the first limit diagnostics are kept; the rest are just counted.
+ */
+public class DiagnosticCollector {
+    public static final int DEFAULT_LIMIT = 100;
+
+    private final int limit;
+    private final List<Diagnostic> diagnostics = new ArrayList<>();
+    private int count = 0;
+
+    public DiagnosticCollector(int limit) {
+        this.limit = limit;
+    }
+
+    public DiagnosticCollector() {
+        this(DEFAULT_LIMIT);
+    }
+
+    public void report(Diagnostic.Phase phase, String message, int line, int column) {
+        report(new Diagnostic(phase, message, line, column));
+    }
+
+    public void report(Diagnostic.Phase phase, String message) {
+        report(new Diagnostic(phase, message));
+    }
+
+    private void report(Diagnostic diagnostic) {
+        count++;
+        if (diagnostics.size() < limit) {
+            diagnostics.add(diagnostic);
+        }
+    }
+
+    public boolean hasErrors() {
+        return count > 0;
+    }
+
+    // Every diagnostic reported, including the ones past the limit
+    public int getCount() {
+        return count;
+    }
+
+    // True once the limit is reached, passes may stop early then
+    public boolean isFull() {
+        return count >= limit;
+    }
+
+    public List<Diagnostic> getDiagnostics() {
+        return Collections.unmodifiableList(diagnostics);
+    }
+
+    public void print(PrintStream out) {
+        for (Diagnostic diagnostic : diagnostics) {
+            out.println(diagnostic);
+        }
+        if (count > diagnostics.size()) {
+            out.println("... " + (count - diagnostics.size()) + " more error(s) not shown");
+        }
+    }
+}
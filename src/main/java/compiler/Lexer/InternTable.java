@@ -0,0 +1,137 @@
+package compiler.Lexer;
+
+import java.util.Arrays;
+
+/**
+ * Per-compilation table of lexeme spellings (identifiers, literals).
+ * Lookups hash the characters where they lie in the source buffer, so a
+ * lexeme that was seen before costs no allocation, and every occurrence of
+ * it maps to the same String object and the same integer id.
+ * Not thread-safe: one table belongs to one lexing pass.
+ */
+public class InternTable {
+    private static final int INITIAL_CAPACITY = 256;
+
+    // Strings by id, in the order they were first seen.
+    private String[] strings = new String[INITIAL_CAPACITY];
+    private int size = 0;
+
+    // Open-addressed hash index with linear probing: slot -> id + 1 (0 = empty).
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+    private int[] slotHashes = new int[INITIAL_CAPACITY * 2];
+
+    public String intern(char[] chars, int start, int length) {
+        // id() may grow the array, so it has to run before the field is read
+        int id = id(chars, start, length);
+        return strings[id];
+    }
+
+    public String intern(String text) {
+        return strings[id(text)];
+    }
+
+    // Same as id(char[], int, int) for a String; a new spelling keeps the given String
+    public int id(String text) {
+        int hash = hash(text);
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+
+        while (slots[slot] != 0) {
+            int id = slots[slot] - 1;
+            if (slotHashes[slot] == hash && strings[id].equals(text)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return add(text, slot, hash);
+    }
+
+    // Id of the lexeme, adding it to the table if it is new.
+    public int id(char[] chars, int start, int length) {
+        int hash = hash(chars, start, length);
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+
+        while (slots[slot] != 0) {
+            int id = slots[slot] - 1;
+            if (slotHashes[slot] == hash && matches(strings[id], chars, start, length)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        return add(new String(chars, start, length), slot, hash);
+    }
+
+    private int add(String text, int slot, int hash) {
+        int id = size++;
+        if (id == strings.length) {
+            strings = Arrays.copyOf(strings, id * 2);
+        }
+        strings[id] = text;
+        slots[slot] = id + 1;
+        slotHashes[slot] = hash;
+
+        // Keep the load factor at or below one half
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return id;
+    }
+
+    public String get(int id) {
+        return strings[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void rehash(int capacity) {
+        int[] newSlots = new int[capacity];
+        int[] newHashes = new int[capacity];
+        int mask = capacity - 1;
+
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] != 0) {
+                int slot = slotHashes[i] & mask;
+                while (newSlots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                newSlots[slot] = slots[i];
+                newHashes[slot] = slotHashes[i];
+            }
+        }
+        slots = newSlots;
+        slotHashes = newHashes;
+    }
+
+    private static int hash(char[] chars, int start, int length) {
+        int h = 0;
+        for (int i = start; i < start + length; i++) {
+            h = 31 * h + chars[i];
+        }
+        // Spread the high bits, short identifiers only differ in the low ones
+        return h ^ (h >>> 16);
+    }
+
+    private static int hash(String text) {
+        int h = 0;
+        for (int i = 0; i < text.length(); i++) {
+            h = 31 * h + text.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean matches(String s, char[] chars, int start, int length) {
+        if (s.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (s.charAt(i) != chars[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
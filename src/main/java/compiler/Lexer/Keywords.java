@@ -0,0 +1,122 @@
+package compiler.Lexer;
+
+/**
+ * Keyword classifier that works on the raw characters of a lexeme, so the
+ * lexer does not have to build a String to find out an identifier is a keyword.
+ *
+ * The table is a perfect hash: at class load a seed is searched for which the
+ * hash of (length, first char, second char, last char) puts every keyword in its own slot.
+ * A lookup is then one hash and one comparison against the candidate keyword.
+ */
+public final class Keywords {
+    private static final String[] WORDS = {
+            "final", "coll", "def", "for", "while", "if", "else", "return", "not", "ARRAY",
+            "INT", "FLOAT", "BOOL", "STRING", "true", "false",
+            "str", "length", "floor", "ceil",
+            "read_INT", "read_FLOAT", "read_STRING", "print_INT", "print_FLOAT",
+            "print", "println", "write", "main", "min", "max", "abs", "pow", "sort"
+    };
+    private static final TokenType[] TYPES = {
+            TokenType.FINAL, TokenType.COLL, TokenType.DEF, TokenType.FOR, TokenType.WHILE,
+            TokenType.IF, TokenType.ELSE, TokenType.RETURN, TokenType.NOT, TokenType.ARRAY_KEYWORD,
+            TokenType.INT_TYPE, TokenType.FLOAT_TYPE, TokenType.BOOL_TYPE, TokenType.STRING_TYPE,
+            TokenType.TRUE, TokenType.FALSE,
+            TokenType.STR, TokenType.LENGTH, TokenType.FLOOR, TokenType.CEIL,
+            TokenType.READ_INT, TokenType.READ_FLOAT, TokenType.READ_STRING,
+            TokenType.PRINT_INT, TokenType.PRINT_FLOAT,
+            TokenType.PRINT, TokenType.PRINTLN, TokenType.WRITE, TokenType.MAIN,
+            TokenType.MIN, TokenType.MAX, TokenType.ABS, TokenType.POW, TokenType.SORT
+    };
+
+    private static final String[] SPELLING = new String[TokenType.values().length];
+
+    private static final int MIN_LENGTH;
+    private static final int MAX_LENGTH;
+
+    // Filled in by build(): slot -> keyword characters and token type
+    private static char[][] slotWords;
+    private static TokenType[] slotTypes;
+    private static int seed;
+    private static int mask;
+
+    static {
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        for (int i = 0; i < WORDS.length; i++) {
+            SPELLING[TYPES[i].ordinal()] = WORDS[i];
+            min = Math.min(min, WORDS[i].length());
+            max = Math.max(max, WORDS[i].length());
+        }
+        MIN_LENGTH = min;
+        MAX_LENGTH = max;
+        build();
+    }
+
+    private Keywords() {
+    }
+
+    // Tries seeds until no two keywords share a slot, growing the table if none fits
+    private static void build() {
+        for (int size = 64; ; size *= 2) {
+            for (int s = 1; s <= 10000; s++) {
+                if (tryBuild(size, s)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static boolean tryBuild(int size, int s) {
+        char[][] words = new char[size][];
+        TokenType[] types = new TokenType[size];
+        for (int i = 0; i < WORDS.length; i++) {
+            char[] word = WORDS[i].toCharArray();
+            int slot = hash(s, word, 0, word.length) & (size - 1);
+            if (words[slot] != null) {
+                return false;
+            }
+            words[slot] = word;
+            types[slot] = TYPES[i];
+        }
+        slotWords = words;
+        slotTypes = types;
+        seed = s;
+        mask = size - 1;
+        return true;
+    }
+
+    private static int hash(int seed, char[] chars, int start, int length) {
+        int h = seed * 0x9E3779B9;
+        h = (h ^ length) * 0x01000193;
+        h = (h ^ chars[start]) * 0x01000193;
+        h = (h ^ chars[start + 1]) * 0x01000193;
+        h = (h ^ chars[start + length - 1]) * 0x01000193;
+        return h ^ (h >>> 15);
+    }
+
+    /**
+     * Token type of the keyword spelled by chars[start .. start + length),
+     * or null if those characters are not a keyword.
+     */
+    public static TokenType lookup(char[] chars, int start, int length) {
+        if (length < MIN_LENGTH || length > MAX_LENGTH) {
+            return null;
+        }
+        int slot = hash(seed, chars, start, length) & mask;
+        char[] word = slotWords[slot];
+        if (word == null || word.length != length) {
+            return null;
+        }
+        for (int i = 0; i < length; i++) {
+            if (word[i] != chars[start + i]) {
+                return null;
+            }
+        }
+        return slotTypes[slot];
+    }
+
+    // Source spelling of a keyword token type, null for every other type.
+    public static String spelling(TokenType type) {
+        return SPELLING[type.ordinal()];
+    }
+}
@@ -1,68 +1,249 @@
 package compiler.Lexer;
+import compiler.Diagnostics.Diagnostic;
+import compiler.Diagnostics.DiagnosticCollector;
+
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.Reader;
-import java.util.HashMap;
-
-public class Lexer {
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class Lexer implements Closeable, Iterable<Symbol> {
+    // How many characters are pulled from a Reader (or a mapped file) in one refill.
+    private static final int BUFFER_SIZE = 8192;
+
+    // At most one of input/bytes is set; both are null for an in-memory char[] source.
     private final Reader input;
+    // UTF-8 bytes of a memory-mapped source file, consumed from bytePos.
+    private final ByteBuffer bytes;
+    private int bytePos = 0;
+    private byte[] byteChunk;
+    // Window over the source. buffer[pos] is the current character and
+    // buffer[pos + 1 .. limit) has already been read but not consumed yet.
+    private char[] buffer;
+    private int pos = -1;
+    // First character of an in-memory range, 0 for every other source
+    private int origin = 0;
+    private int limit = 0;
     private int currentChar;
     private int line =1;
     private int column =0;
-    private static final java.util.Map<String, TokenType> keywords = new java.util.HashMap<>();
+    // When set, the window only grows so the whole source stays addressable (see TokenStream).
+    private boolean retainSource = false;
+
+    // The token being scanned: it starts at buffer[tokenStart] (-1 when no token is pending).
+    private int tokenStart = -1;
+    private int tokenLine;
+    private int tokenColumn;
+    private String errorMessage;
+    // When set, every ERROR token is also reported here (the token is still returned)
+    private DiagnosticCollector diagnostics;
+    // Canonical spelling of every identifier and literal this lexer has produced.
+    private final InternTable names = new InternTable();
+    // Spelling of every token type whose value never changes (keywords and operators).
+    private static final String[] FIXED_TEXT = new String[TokenType.values().length];
 
     static {
-        keywords.put("final", TokenType.FINAL);
-        keywords.put("coll", TokenType.COLL);
-        keywords.put("def", TokenType.DEF);
-        keywords.put("for", TokenType.FOR);
-        keywords.put("while", TokenType.WHILE);
-        keywords.put("if", TokenType.IF);
-        keywords.put("else", TokenType.ELSE);
-        keywords.put("return", TokenType.RETURN);
-        keywords.put("not", TokenType.NOT);
-        keywords.put("ARRAY", TokenType.ARRAY_KEYWORD);
-        keywords.put("INT", TokenType.INT_TYPE);
-        keywords.put("FLOAT", TokenType.FLOAT_TYPE);
-        keywords.put("BOOL", TokenType.BOOL_TYPE);
-        keywords.put("STRING", TokenType.STRING_TYPE);
-        keywords.put("true", TokenType.TRUE);
-        keywords.put("false", TokenType.FALSE);
-        keywords.put("str", TokenType.STR);
-        keywords.put("length", TokenType.LENGTH);
-        keywords.put("floor", TokenType.FLOOR);
-        keywords.put("ceil", TokenType.CEIL);
-        keywords.put("read_INT", TokenType.READ_INT);
-        keywords.put("read_FLOAT", TokenType.READ_FLOAT);
-        keywords.put("read_STRING", TokenType.READ_STRING);
-        keywords.put("print_INT", TokenType.PRINT_INT);
-        keywords.put("print_FLOAT", TokenType.PRINT_FLOAT);
-        keywords.put("print", TokenType.PRINT);
-        keywords.put("println", TokenType.PRINTLN);
-        keywords.put("write", TokenType.WRITE);
-        keywords.put("main", TokenType.MAIN);
-        keywords.put("min", TokenType.MIN);
-        keywords.put("max", TokenType.MAX);
-        keywords.put("abs", TokenType.ABS);
-        keywords.put("pow", TokenType.POW);
-        keywords.put("sort", TokenType.SORT);
+        for (TokenType type : TokenType.values()) {
+            FIXED_TEXT[type.ordinal()] = Keywords.spelling(type);
+        }
+        String[][] operators = {
+                {"PLUS", "+"}, {"MINUS", "-"}, {"STAR", "*"}, {"SLASH", "/"}, {"PERCENT", "%"},
+                {"EQUAL", "=="}, {"NOT_EQUAL", "=/="}, {"LESS", "<"}, {"GREATER", ">"},
+                {"LESS_EQUAL", "<="}, {"GREATER_EQUAL", ">="}, {"AND", "&&"}, {"OR", "||"},
+                {"ASSIGN", "="}, {"LPAREN", "("}, {"RPAREN", ")"}, {"LBRACE", "{"}, {"RBRACE", "}"},
+                {"LBRACKET", "["}, {"RBRACKET", "]"}, {"DOT", "."}, {"SEMICOLON", ";"},
+                {"COMMA", ","}, {"ARROW", "->"}, {"EOF", ""}
+        };
+        for (String[] operator : operators) {
+            FIXED_TEXT[TokenType.valueOf(operator[0]).ordinal()] = operator[1];
+        }
     }
+    // Reads the source through a fixed size window instead of one read() per character.
     public Lexer(Reader input) {
         this.input = input;
+        this.bytes = null;
+        this.buffer = new char[BUFFER_SIZE];
+        advance();
+    }
+
+    // Memory-maps a UTF-8 source file. ASCII bytes go straight into the window,
+    // only non-ASCII sequences (string literals, comments) take the decoding path.
+    public Lexer(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Source file too large to map: " + file);
+            }
+            this.bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        this.input = null;
+        this.buffer = new char[BUFFER_SIZE];
         advance();
     }
+
+    // Lexes the first length characters of an in-memory source. The array is not copied.
+    public Lexer(char[] source, int length) {
+        this(source, 0, length);
+    }
+
+    // Lexes source[start .. end) as if it were a whole file: lines count from 1 at start.
+    // Token offsets stay relative to the whole array (see ParallelLexer).
+    Lexer(char[] source, int start, int end) {
+        this.input = null;
+        this.bytes = null;
+        this.buffer = source;
+        this.origin = start;
+        this.pos = start - 1;
+        this.limit = end;
+        advance();
+    }
+
+    public Lexer(String source) {
+        this(source.toCharArray(), source.length());
+    }
+
     private void advance() {
+        pos++;
+        if (pos >= limit) {
+            pos = limit;
+            if (!refill()) {
+                currentChar = -1;
+                return;
+            }
+        }
+        currentChar = buffer[pos];
+        if (currentChar == '\n') {
+            line++;
+            column = 0;
+        } else {
+            column++;
+        }
+    }
+
+    // Moves the unconsumed part of the window to the front and reads more input after it.
+    // Returns false once the input is exhausted (always for in-memory sources).
+    private boolean refill() {
+        if (input == null && (bytes == null || bytePos >= bytes.limit())) {
+            return false;
+        }
+        // Never drop the current character or the pending token
+        int start = retainSource ? 0 : pos;
+        if (tokenStart >= 0 && tokenStart < start) {
+            start = tokenStart;
+        }
+        int kept = limit - start;
+        if (start > 0) {
+            if (tokenStart >= 0) {
+                tokenStart -= start;
+            }
+            System.arraycopy(buffer, start, buffer, 0, kept);
+            pos -= start;
+            limit = kept;
+        }
+        if (buffer.length - limit < 2) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        if (bytes != null) {
+            decodeBytes();
+            return true;
+        }
         try {
-            currentChar = input.read();
-            if (currentChar == '\n') {
-                line++;
-                column = 0;
-            } else if (currentChar != -1) {
-                column++;
+            int read = input.read(buffer, limit, buffer.length - limit);
+            if (read <= 0) {
+                return false;
             }
+            limit += read;
+            return true;
         } catch (IOException e) {
-            currentChar = -1;
+            return false;
+        }
+    }
+    // Widens mapped bytes into the free part of the window. Needs room for at least 2 chars.
+    // Bytes are pulled in bulk so the ASCII loop runs over a plain array without per-byte checks.
+    private void decodeBytes() {
+        int end = bytes.limit();
+        int room = buffer.length - 1;
+        while (limit < room && bytePos < end) {
+            int count = Math.min(room - limit, end - bytePos);
+            if (byteChunk == null || byteChunk.length < count) {
+                byteChunk = new byte[Math.max(count, BUFFER_SIZE)];
+            }
+            bytes.get(bytePos, byteChunk, 0, count);
+
+            int ascii = 0;
+            while (ascii < count && byteChunk[ascii] >= 0) {
+                buffer[limit + ascii] = (char) byteChunk[ascii];
+                ascii++;
+            }
+            limit += ascii;
+            bytePos += ascii;
+
+            if (ascii < count) {
+                decodeMultiByte(end);
+            }
+        }
+    }
+
+    // Slow path for one non-ASCII UTF-8 sequence. Malformed input becomes U+FFFD.
+    private void decodeMultiByte(int end) {
+        int b = bytes.get(bytePos) & 0xFF;
+        int length;
+        int codePoint;
+        if ((b & 0xE0) == 0xC0) {
+            length = 2;
+            codePoint = b & 0x1F;
+        } else if ((b & 0xF0) == 0xE0) {
+            length = 3;
+            codePoint = b & 0x0F;
+        } else if ((b & 0xF8) == 0xF0) {
+            length = 4;
+            codePoint = b & 0x07;
+        } else {
+            length = 1;
+            codePoint = 0xFFFD;
+        }
+
+        int consumed = 1;
+        while (consumed < length) {
+            if (bytePos + consumed >= end) {
+                codePoint = 0xFFFD;
+                break;
+            }
+            int next = bytes.get(bytePos + consumed);
+            if ((next & 0xC0) != 0x80) {
+                codePoint = 0xFFFD;
+                break;
+            }
+            codePoint = (codePoint << 6) | (next & 0x3F);
+            consumed++;
+        }
+        bytePos += consumed;
+
+        if (!Character.isValidCodePoint(codePoint)) {
+            codePoint = 0xFFFD;
         }
+        limit += Character.toChars(codePoint, buffer, limit);
     }
+
+    @Override
+    public void close() throws IOException {
+        if (input != null) {
+            input.close();
+        }
+    }
+
     // return the current character as char
     private char peek() {
         return (char) currentChar;
@@ -94,251 +275,427 @@ public class Lexer {
         }
     }
 
-    // Read an identifier or keyword
-    private Symbol readIdentifierOrKeyword(int startLine, int startColumn) {
-        StringBuilder sb = new StringBuilder();
-
+    // Scan an identifier or keyword
+    private TokenType scanIdentifierOrKeyword() {
         // Keep reading while we see letters, digits, or underscore
         while (!isAtEnd() && (Character.isLetterOrDigit(peek()) || peek() == '_')) {
-            sb.append(peek());
             advance();
         }
 
-        String text = sb.toString();
-
-        // Check if it's a keyword
-        TokenType type = keywords.get(text);
+        // Check if it's a keyword, straight from the buffer
+        TokenType type = Keywords.lookup(buffer, tokenStart, pos - tokenStart);
         if (type != null) {
-            return new Symbol(type, text, startLine, startColumn);
+            return type;
         }
 
         // Check if it starts with uppercase (collection name)
-        if (Character.isUpperCase(text.charAt(0))) {
-            return new Symbol(TokenType.COLLECTION_NAME, text, startLine, startColumn);
+        if (Character.isUpperCase(buffer[tokenStart])) {
+            return TokenType.COLLECTION_NAME;
         }
 
         // Regular identifier
-        return new Symbol(TokenType.IDENTIFIER, text, startLine, startColumn);
+        return TokenType.IDENTIFIER;
     }
-    //Read a number (integer or float)
-     private Symbol readNumber(int startLine, int startColumn) {
-        StringBuilder sb = new StringBuilder();
-
-        // Handle leading zeros: 00342 -> 342
-        while (!isAtEnd() && peek() == '0') {
-            advance();
-            // Check what comes next
-            if (isAtEnd() || (!Character.isDigit(peek()) && peek() != '.')) {
-                // It's just "0" or "0" followed by non-digit
-                return new Symbol(TokenType.INTEGER_LITERAL, "0", startLine, startColumn);
-            }
-            if (peek() == '.') {
-                sb.append('0');
-                break;
-            }
-            // Otherwise skip the leading zero and continue
-        }
-
-        // Read integer part
+    //Scan a number (integer or float)
+    private TokenType scanNumber() {
+        // Leading zeros stay in the span, valueOf() drops them: 00342 -> 342
         while (!isAtEnd() && Character.isDigit(peek())) {
-            sb.append(peek());
             advance();
         }
 
         // Check for decimal point (float)
         if (!isAtEnd() && peek() == '.') {
-            sb.append('.');
             advance();
 
             // Read fractional part
             while (!isAtEnd() && Character.isDigit(peek())) {
-                sb.append(peek());
                 advance();
             }
 
-            return new Symbol(TokenType.FLOAT_LITERAL, sb.toString(), startLine, startColumn);
+            return TokenType.FLOAT_LITERAL;
         }
 
         // It's an integer
-        String value = sb.toString();
-        if (value.isEmpty()) {
-            value = "0";
+        return TokenType.INTEGER_LITERAL;
+    }
+    // Returns the character k positions after the current one without consuming anything,
+    // or -1 if the input ends first. The window keeps everything from the current character
+    // on, so lookahead never loses input whichever source the lexer reads from.
+    private int peekAhead(int k) {
+        while (pos + k >= limit) {
+            if (!refill()) {
+                return -1;
+            }
         }
-        return new Symbol(TokenType.INTEGER_LITERAL, value, startLine, startColumn);
+        return buffer[pos + k];
     }
+
+    private static boolean isDigit(int c) {
+        return c != -1 && Character.isDigit((char) c);
+    }
+
     // Check if next character is a digit (for .234 style floats)
     private boolean isDigitAhead() {
-        try {
-            input.mark(1);
-            int next = input.read();
-            input.reset();
-            return next != -1 && Character.isDigit((char) next);
-        } catch (IOException e) {
-            return false;
-        }
+        return isDigit(peekAhead(1));
     }
 
-    // Read a float that starts with dot: .234 -> 0.234
-    private Symbol readDotFloat(int startLine, int startColumn) {
-        StringBuilder sb = new StringBuilder("0");
-        sb.append(peek());  // Add the dot
-        advance();
+    // Scan a float that starts with dot: .234 (valueOf() turns it into 0.234)
+    private TokenType scanDotFloat() {
+        advance();  // Skip the dot
 
         // Read the fractional part
         while (!isAtEnd() && Character.isDigit(peek())) {
-            sb.append(peek());
             advance();
         }
 
-        return new Symbol(TokenType.FLOAT_LITERAL, sb.toString(), startLine, startColumn);
+        return TokenType.FLOAT_LITERAL;
     }
 
-    // Read operators and punctuation
-    private Symbol readOperator(int startLine, int startColumn) {
+    // Scan operators and punctuation
+    private TokenType scanOperator() {
         char c = peek();
         advance();
 
         switch (c) {
             // Single character operators
-            case '+': return new Symbol(TokenType.PLUS, "+", startLine, startColumn);
-            case '*': return new Symbol(TokenType.STAR, "*", startLine, startColumn);
-            case '/': return new Symbol(TokenType.SLASH, "/", startLine, startColumn);
-            case '%': return new Symbol(TokenType.PERCENT, "%", startLine, startColumn);
-            case '(': return new Symbol(TokenType.LPAREN, "(", startLine, startColumn);
-            case ')': return new Symbol(TokenType.RPAREN, ")", startLine, startColumn);
-            case '{': return new Symbol(TokenType.LBRACE, "{", startLine, startColumn);
-            case '}': return new Symbol(TokenType.RBRACE, "}", startLine, startColumn);
-            case '[': return new Symbol(TokenType.LBRACKET, "[", startLine, startColumn);
-            case ']': return new Symbol(TokenType.RBRACKET, "]", startLine, startColumn);
-            case '.': return new Symbol(TokenType.DOT, ".", startLine, startColumn);
-            case ';': return new Symbol(TokenType.SEMICOLON, ";", startLine, startColumn);
-            case ',': return new Symbol(TokenType.COMMA, ",", startLine, startColumn);
+            case '+': return TokenType.PLUS;
+            case '*': return TokenType.STAR;
+            case '/': return TokenType.SLASH;
+            case '%': return TokenType.PERCENT;
+            case '(': return TokenType.LPAREN;
+            case ')': return TokenType.RPAREN;
+            case '{': return TokenType.LBRACE;
+            case '}': return TokenType.RBRACE;
+            case '[': return TokenType.LBRACKET;
+            case ']': return TokenType.RBRACKET;
+            case '.': return TokenType.DOT;
+            case ';': return TokenType.SEMICOLON;
+            case ',': return TokenType.COMMA;
 
             // Minus or Arrow (-)
             case '-':
                 if (!isAtEnd() && peek() == '>') {
                     advance();
-                    return new Symbol(TokenType.ARROW, "->", startLine, startColumn);
+                    return TokenType.ARROW;
                 }
-                return new Symbol(TokenType.MINUS, "-", startLine, startColumn);
+                return TokenType.MINUS;
 
             // Equals, Equal-Equal, or Not-Equal (=, ==, =/=)
             case '=':
                 if (!isAtEnd() && peek() == '=') {
                     advance();
-                    return new Symbol(TokenType.EQUAL, "==", startLine, startColumn);
+                    return TokenType.EQUAL;
+                }
+                if (peek() == '/' && peekAhead(1) == '=') {
+                    advance();
+                    advance();
+                    return TokenType.NOT_EQUAL;
                 }
                 if (!isAtEnd() && peek() == '/') {
                     advance();
-                    if (!isAtEnd() && peek() == '=') {
-                        advance();
-                        return new Symbol(TokenType.NOT_EQUAL, "=/=", startLine, startColumn);
-                    }
-                    return new Symbol(TokenType.ERROR, "=/", startLine, startColumn);
+                    return error("=/");
                 }
-                return new Symbol(TokenType.ASSIGN, "=", startLine, startColumn);
+                return TokenType.ASSIGN;
 
             // Less or Less-Equal (<, <=)
             case '<':
                 if (!isAtEnd() && peek() == '=') {
                     advance();
-                    return new Symbol(TokenType.LESS_EQUAL, "<=", startLine, startColumn);
+                    return TokenType.LESS_EQUAL;
                 }
-                return new Symbol(TokenType.LESS, "<", startLine, startColumn);
+                return TokenType.LESS;
 
             // Greater or Greater-Equal (>, >=)
             case '>':
                 if (!isAtEnd() && peek() == '=') {
                     advance();
-                    return new Symbol(TokenType.GREATER_EQUAL, ">=", startLine, startColumn);
+                    return TokenType.GREATER_EQUAL;
                 }
-                return new Symbol(TokenType.GREATER, ">", startLine, startColumn);
+                return TokenType.GREATER;
 
             // And (&&)
             case '&':
                 if (!isAtEnd() && peek() == '&') {
                     advance();
-                    return new Symbol(TokenType.AND, "&&", startLine, startColumn);
+                    return TokenType.AND;
                 }
-                return new Symbol(TokenType.ERROR, "&", startLine, startColumn);
+                return error("&");
 
             // Or (||)
             case '|':
                 if (!isAtEnd() && peek() == '|') {
                     advance();
-                    return new Symbol(TokenType.OR, "||", startLine, startColumn);
+                    return TokenType.OR;
                 }
-                return new Symbol(TokenType.ERROR, "|", startLine, startColumn);
+                return error("|");
 
             default:
-                return new Symbol(TokenType.ERROR, String.valueOf(c), startLine, startColumn);
+                return error(String.valueOf(c));
         }
     }
-    // Read a string literal
-    private Symbol readString(int startLine, int startColumn) {
-        StringBuilder sb = new StringBuilder();
+    // Scan a string literal, escapes are resolved later by valueOf()
+    private TokenType scanString() {
         advance();  // Skip opening "
 
         while (!isAtEnd() && peek() != '"') {
             if (peek() == '\\') {
-                // Handle escape sequences
-                advance();  // Skip backslaesh
+                // Check escape sequences
+                advance();  // Skip backslash
                 if (isAtEnd()) {
-                    return new Symbol(TokenType.ERROR, "Unterminated string", startLine, startColumn);
+                    return error("Unterminated string");
                 }
-                switch (peek()) {
-                    case 'n':  sb.append('\n'); break;
-                    case '\\': sb.append('\\'); break;
-                    case '"':  sb.append('"');  break;
-                    default:
-                        return new Symbol(TokenType.ERROR, "Invalid escape: \\" + peek(), startLine, startColumn);
+                char escaped = peek();
+                if (escaped != 'n' && escaped != '\\' && escaped != '"') {
+                    return error("Invalid escape: \\" + escaped);
                 }
-            } else {
-                sb.append(peek());
             }
             advance();
         }
 
         if (isAtEnd()) {
-            return new Symbol(TokenType.ERROR, "Unterminated string", startLine, startColumn);
+            return error("Unterminated string");
         }
 
         advance();  // Skip closing "
-        return new Symbol(TokenType.STRING_LITERAL, sb.toString(), startLine, startColumn);
+        return TokenType.STRING_LITERAL;
     }
-    // Main method - returns the next token
-    public Symbol getNextSymbol() {
+
+    private TokenType error(String message) {
+        errorMessage = message;
+        if (diagnostics != null) {
+            diagnostics.report(Diagnostic.Phase.LEXICAL, message, tokenLine, tokenColumn);
+        }
+        return TokenType.ERROR;
+    }
+
+    // Collects every lexical error of the pass, scanning carries on after each one
+    public void reportErrorsTo(DiagnosticCollector diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+     * Scans the next token without building its value. The token covers
+     * buffer[tokenStart .. pos); for ERROR tokens errorMessage holds the message.
+     */
+    TokenType scanToken() {
         skipWhitespaceAndComments();
 
+        tokenStart = pos;
+        tokenLine = line;
+        tokenColumn = column;
+
         if (isAtEnd()) {
-            return new Symbol(TokenType.EOF, "", line, column);
+            return TokenType.EOF;
         }
 
-        int startLine = line;
-        int startColumn = column;
         char c = peek();
 
         // Identifiers and keywords start with letter or underscore
         if (Character.isLetter(c) || c == '_') {
-            return readIdentifierOrKeyword(startLine, startColumn);
+            return scanIdentifierOrKeyword();
         }
 
         // Numbers start with digit
         if (Character.isDigit(c)) {
-            return readNumber(startLine, startColumn);
+            return scanNumber();
         }
 
         // Handle .234 style floats (dot followed by digit)
         if (c == '.' && isDigitAhead()) {
-            return readDotFloat(startLine, startColumn);
+            return scanDotFloat();
         }
 
         // Strings start with "
         if (c == '"') {
-            return readString(startLine, startColumn);
+            return scanString();
         }
 
         // Everything else is an operator or punctuation
-        return readOperator(startLine, startColumn);
+        return scanOperator();
+    }
+
+    // Main method - returns the next token
+    public Symbol getNextSymbol() {
+        TokenType type = scanToken();
+
+        String value;
+        if (type == TokenType.ERROR) {
+            value = errorMessage;
+        } else {
+            value = valueOf(type, buffer, tokenStart, pos - tokenStart, names);
+        }
+        tokenStart = -1;
+
+        return new Symbol(type, value, tokenLine, tokenColumn);
+    }
+
+    /**
+     * Lazily hands out the remaining symbols, stopping before EOF. Like the lexer
+     * itself it is single pass: a second iterator continues where the first stopped.
+     */
+    @Override
+    public Iterator<Symbol> iterator() {
+        return new Iterator<Symbol>() {
+            private Symbol next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    next = getNextSymbol();
+                }
+                return next.getType() != TokenType.EOF;
+            }
+
+            @Override
+            public Symbol next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Symbol symbol = next;
+                next = null;
+                return symbol;
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<Symbol> spliterator() {
+        return Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    // The remaining symbols (without EOF) as a sequential stream
+    public Stream<Symbol> symbols() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * The remaining token types (without EOF) as TokenType ordinals. No Symbol
+     * or token value is built, so counting or filtering tokens allocates nothing per token.
+     */
+    public IntStream tokenTypes() {
+        Spliterator.OfInt types = new Spliterators.AbstractIntSpliterator(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            private boolean done;
+
+            @Override
+            public boolean tryAdvance(IntConsumer action) {
+                if (done) {
+                    return false;
+                }
+                TokenType type = scanToken();
+                tokenStart = -1;
+                if (type == TokenType.EOF) {
+                    done = true;
+                    return false;
+                }
+                action.accept(type.ordinal());
+                return true;
+            }
+        };
+        return StreamSupport.intStream(types, false);
+    }
+
+    // Keeps every character read so far in the window, so token offsets stay valid
+    // for the whole source. Must be called before the first token is scanned.
+    void retainSource() {
+        retainSource = true;
+        if (bytes != null && buffer.length < bytes.limit() + 2) {
+            // The decoded text is at most one char per byte
+            buffer = Arrays.copyOf(buffer, bytes.limit() + 2);
+        }
+    }
+
+    // Length of the whole source if it is known up front, otherwise of what has been read so far.
+    int expectedLength() {
+        return bytes != null ? bytes.limit() : limit - origin;
+    }
+
+    public InternTable getInternTable() {
+        return names;
+    }
+
+    char[] source() {
+        return buffer;
+    }
+
+    int sourceLength() {
+        return limit;
+    }
+
+    int tokenStart() {
+        return tokenStart;
+    }
+
+    int tokenLength() {
+        return pos - tokenStart;
+    }
+
+    int tokenLine() {
+        return tokenLine;
+    }
+
+    int tokenColumn() {
+        return tokenColumn;
+    }
+
+    String errorMessage() {
+        return errorMessage;
+    }
+
+    /**
+     * Builds the value of a non-ERROR token from its source text: keywords and operators
+     * map to their fixed spelling, numbers lose leading zeros and strings get their escapes resolved.
+     * Identifiers and literals come back as the canonical String from the intern table.
+     */
+    static String valueOf(TokenType type, char[] source, int start, int length, InternTable names) {
+        String fixed = FIXED_TEXT[type.ordinal()];
+        if (fixed != null) {
+            return fixed;
+        }
+        int end = start + length;
+        switch (type) {
+            case INTEGER_LITERAL:
+                while (start < end - 1 && source[start] == '0') {
+                    start++;
+                }
+                return names.intern(source, start, end - start);
+            case FLOAT_LITERAL:
+                if (source[start] == '.') {
+                    return names.intern("0" + new String(source, start, length));
+                }
+                while (source[start] == '0' && isDigit(source[start + 1])) {
+                    start++;
+                }
+                return names.intern(source, start, end - start);
+            case STRING_LITERAL:
+                return unescape(source, start + 1, end - 1, names);
+            default:
+                return names.intern(source, start, length);
+        }
+    }
+
+    private static String unescape(char[] source, int start, int end, InternTable names) {
+        int backslash = start;
+        while (backslash < end && source[backslash] != '\\') {
+            backslash++;
+        }
+        if (backslash == end) {
+            return names.intern(source, start, end - start);
+        }
+
+        char[] text = new char[end - start];
+        int length = backslash - start;
+        System.arraycopy(source, start, text, 0, length);
+        for (int i = backslash; i < end; i++) {
+            char c = source[i];
+            if (c == '\\') {
+                c = source[++i];
+                if (c == 'n') {
+                    c = '\n';
+                }
+            }
+            text[length++] = c;
+        }
+        return names.intern(text, 0, length);
     }
 }
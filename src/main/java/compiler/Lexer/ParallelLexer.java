@@ -0,0 +1,129 @@
+package compiler.Lexer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Lexes a large in-memory source on several threads. The source is cut into
+ * chunks right after a newline: comments end at the newline, so the lexer is in
+ * its start state there unless a string literal runs across it. Each chunk is
+ * lexed on its own, then the chunks are stitched into one TokenStream with the
+ * line numbers shifted by the newlines before them.
+ *
+ * A chunk that ends inside a string shows up as an "Unterminated string" error
+ * at its end; it is then lexed again together with the following chunk.
+ */
+public class ParallelLexer {
+    // Below this size splitting costs more than it saves
+    public static final int MIN_CHUNK_SIZE = 64 * 1024;
+    private static final String UNTERMINATED_STRING = "Unterminated string";
+
+    private final ForkJoinPool pool;
+
+    public ParallelLexer(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public ParallelLexer() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public TokenStream lex(String source) {
+        return lex(source.toCharArray(), source.length());
+    }
+
+    // Decodes the file as UTF-8 (malformed input becomes U+FFFD, like the mapped Lexer).
+    public TokenStream lex(Path file) throws IOException {
+        String source = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        return lex(source);
+    }
+
+    // Lexes the first length characters of source. The array is not copied.
+    public TokenStream lex(char[] source, int length) {
+        int[] bounds = split(source, length);
+        if (bounds.length == 2) {
+            return TokenStream.lex(new Lexer(source, 0, length));
+        }
+
+        List<ForkJoinTask<Chunk>> tasks = new ArrayList<>();
+        for (int i = 0; i + 1 < bounds.length; i++) {
+            int start = bounds[i];
+            int end = bounds[i + 1];
+            tasks.add(pool.submit(() -> new Chunk(source, start, end)));
+        }
+
+        List<Chunk> chunks = new ArrayList<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            Chunk chunk = tasks.get(i).join();
+            // A string crosses the boundary: lex the two chunks again as one
+            while (chunk.endsInString() && i + 1 < tasks.size()) {
+                i++;
+                chunk = new Chunk(source, chunk.start, tasks.get(i).join().end);
+            }
+            chunks.add(chunk);
+        }
+
+        List<TokenStream> parts = new ArrayList<>();
+        int[] lineOffsets = new int[chunks.size()];
+        int newlines = 0;
+        for (int i = 0; i < chunks.size(); i++) {
+            parts.add(chunks.get(i).tokens);
+            lineOffsets[i] = newlines;
+            newlines += chunks.get(i).newlines;
+        }
+        return TokenStream.concat(parts, lineOffsets, source, length);
+    }
+
+    // Chunk boundaries, each one just past a newline: [0, b1, b2, ..., length]
+    private int[] split(char[] source, int length) {
+        // A single worker gains nothing from chunks, it only pays for stitching them
+        int parallelism = pool.getParallelism();
+        int count = parallelism == 1 ? 1 : Math.min(parallelism * 4, length / MIN_CHUNK_SIZE);
+        if (count <= 1) {
+            return new int[] {0, length};
+        }
+
+        int[] bounds = new int[count + 1];
+        int size = 1;
+        for (int i = 1; i < count; i++) {
+            int at = Math.max((int) ((long) length * i / count), bounds[size - 1]);
+            while (at < length && source[at - 1] != '\n') {
+                at++;
+            }
+            if (at < length && at > bounds[size - 1]) {
+                bounds[size++] = at;
+            }
+        }
+        bounds[size++] = length;
+        return Arrays.copyOf(bounds, size);
+    }
+
+    private static class Chunk {
+        final int start;
+        final int end;
+        final TokenStream tokens;
+        final int newlines;
+
+        Chunk(char[] source, int start, int end) {
+            this.start = start;
+            this.end = end;
+            this.tokens = TokenStream.lex(new Lexer(source, start, end));
+            // Lines count from 1, so the EOF token sits one line past the chunk's newlines
+            this.newlines = tokens.line(tokens.size() - 1) - 1;
+        }
+
+        boolean endsInString() {
+            int last = tokens.size() - 2;
+            return last >= 0
+                    && tokens.type(last) == TokenType.ERROR
+                    && UNTERMINATED_STRING.equals(tokens.value(last));
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package compiler.Lexer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * All tokens of a source file, stored as parallel primitive arrays instead of
+ * one Symbol object per token. A token's value is only turned into a String
+ * when value(i) is called. The last token is always EOF.
+ */
+public class TokenStream {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private char[] source;
+    private int sourceLength;
+    // Set once edit() has copied the source; until then it may be shared with the caller
+    private boolean ownsSource = false;
+    private InternTable names;
+
+    private byte[] types;
+    private int[] starts;
+    private int[] lengths;
+    private int[] lines;
+    private int[] columns;
+    private int size;
+
+    // ERROR tokens are rare, so their messages are kept aside by token index.
+    private final Map<Integer, String> errors = new HashMap<>();
+
+    private TokenStream(int capacity) {
+        types = new byte[capacity];
+        starts = new int[capacity];
+        lengths = new int[capacity];
+        lines = new int[capacity];
+        columns = new int[capacity];
+    }
+
+    /**
+     * Lexes everything the given lexer reads. The lexer must not have returned
+     * any token yet, since the stream keeps the whole source text around.
+     */
+    public static TokenStream lex(Lexer lexer) {
+        lexer.retainSource();
+        // Sources rarely average fewer than three characters per token, so this usually never grows
+        TokenStream tokens = new TokenStream(Math.max(1024, lexer.expectedLength() / 3));
+
+        TokenType type;
+        do {
+            type = lexer.scanToken();
+            tokens.add(type, lexer.tokenStart(), lexer.tokenLength(), lexer.tokenLine(), lexer.tokenColumn());
+            if (type == TokenType.ERROR) {
+                tokens.errors.put(tokens.size - 1, lexer.errorMessage());
+            }
+        } while (type != TokenType.EOF);
+
+        tokens.source = lexer.source();
+        tokens.sourceLength = lexer.sourceLength();
+        tokens.names = lexer.getInternTable();
+        return tokens;
+    }
+
+    /**
+     * Joins streams lexed from consecutive chunks of one source into a single stream.
+     * Every part but the last drops its EOF, and part i has its lines shifted by lineOffsets[i].
+     */
+    static TokenStream concat(List<TokenStream> parts, int[] lineOffsets, char[] source, int sourceLength) {
+        int capacity = 1;
+        for (TokenStream part : parts) {
+            capacity += part.size - 1;
+        }
+        TokenStream tokens = new TokenStream(capacity);
+
+        for (int p = 0; p < parts.size(); p++) {
+            TokenStream part = parts.get(p);
+            int count = p == parts.size() - 1 ? part.size : part.size - 1;
+            int base = tokens.size;
+            System.arraycopy(part.types, 0, tokens.types, base, count);
+            System.arraycopy(part.starts, 0, tokens.starts, base, count);
+            System.arraycopy(part.lengths, 0, tokens.lengths, base, count);
+            System.arraycopy(part.columns, 0, tokens.columns, base, count);
+            for (int i = 0; i < count; i++) {
+                tokens.lines[base + i] = part.lines[i] + lineOffsets[p];
+            }
+            for (Map.Entry<Integer, String> error : part.errors.entrySet()) {
+                if (error.getKey() < count) {
+                    tokens.errors.put(base + error.getKey(), error.getValue());
+                }
+            }
+            tokens.size += count;
+        }
+
+        // One table for the whole stream, so equal spellings from different parts stay identical
+        tokens.names = new InternTable();
+        tokens.source = source;
+        tokens.sourceLength = sourceLength;
+        return tokens;
+    }
+
+    /**
+     * Updates the stream in place for an edit that replaces removed characters at offset
+     * with inserted. Lexing restarts at the beginning of the line the edit touches and stops
+     * as soon as a new token starts where an old token after the edit started, shifted by the edit.
+     * The old tokens from there on are kept, with shifted offsets, lines and columns.
+     */
+    public void edit(int offset, int removed, String inserted) {
+        if (offset < 0 || removed < 0 || offset + removed > sourceLength) {
+            throw new IndexOutOfBoundsException("Edit " + offset + "+" + removed + " outside source of length " + sourceLength);
+        }
+        int delta = inserted.length() - removed;
+        int editEnd = offset + removed;
+
+        // First token the edit can change: one that ends at or after the offset
+        // (touching counts, "a" followed by an inserted "b" becomes "ab")
+        int first = firstEndingAtOrAfter(offset);
+        int restart = lineStart(Math.min(offset, starts[first]));
+        // A string that runs across lines may end inside the restart line; relex it too
+        while (first > 0 && starts[first - 1] + lengths[first - 1] > restart) {
+            first--;
+            restart = lineStart(starts[first]);
+        }
+        int lineBase = lines[first] - 1;
+        for (int i = restart; i < starts[first]; i++) {
+            if (source[i] == '\n') {
+                lineBase--;
+            }
+        }
+
+        replaceText(offset, removed, inserted);
+
+        // Relex into a scratch stream until it lines up with an old token
+        TokenStream relexed = new TokenStream(16);
+        Lexer lexer = new Lexer(source, restart, sourceLength);
+        int old = first;
+        boolean resynced = false;
+        TokenType type;
+        do {
+            type = lexer.scanToken();
+            int start = lexer.tokenStart();
+
+            // Old tokens after the edit, shifted into the new text
+            while (old < size && (starts[old] < editEnd || starts[old] + delta < start)) {
+                old++;
+            }
+            if (old < size && starts[old] + delta == start) {
+                resynced = true;
+                break;
+            }
+
+            relexed.add(type, start, lexer.tokenLength(), lexer.tokenLine() + lineBase, lexer.tokenColumn());
+            if (type == TokenType.ERROR) {
+                relexed.errors.put(relexed.size - 1, lexer.errorMessage());
+            }
+        } while (type != TokenType.EOF);
+
+        int kept = resynced ? old : size;
+        int lineDelta = resynced ? lexer.tokenLine() + lineBase - lines[old] : 0;
+        int columnDelta = resynced ? lexer.tokenColumn() - columns[old] : 0;
+        splice(first, kept, relexed);
+        shiftTail(first + relexed.size, delta, lineDelta, columnDelta);
+    }
+
+    // Replaces the characters in the source, taking a private copy first:
+    // the array may belong to whoever handed it to the Lexer.
+    private void replaceText(int offset, int removed, String inserted) {
+        int newLength = sourceLength + inserted.length() - removed;
+        if (!ownsSource || source.length < newLength) {
+            source = Arrays.copyOf(source, Math.max(newLength + newLength / 4, 16));
+            ownsSource = true;
+        }
+        System.arraycopy(source, offset + removed, source, offset + inserted.length(), sourceLength - offset - removed);
+        inserted.getChars(0, inserted.length(), source, offset);
+        sourceLength = newLength;
+    }
+
+    // Replaces tokens [from, to) with the tokens of replacement
+    private void splice(int from, int to, TokenStream replacement) {
+        int count = replacement.size;
+        int shift = count - (to - from);
+        if (shift != 0) {
+            while (types.length < size + shift) {
+                grow();
+            }
+            int tail = size - to;
+            System.arraycopy(types, to, types, to + shift, tail);
+            System.arraycopy(starts, to, starts, to + shift, tail);
+            System.arraycopy(lengths, to, lengths, to + shift, tail);
+            System.arraycopy(lines, to, lines, to + shift, tail);
+            System.arraycopy(columns, to, columns, to + shift, tail);
+        }
+        System.arraycopy(replacement.types, 0, types, from, count);
+        System.arraycopy(replacement.starts, 0, starts, from, count);
+        System.arraycopy(replacement.lengths, 0, lengths, from, count);
+        System.arraycopy(replacement.lines, 0, lines, from, count);
+        System.arraycopy(replacement.columns, 0, columns, from, count);
+        size += shift;
+
+        if (!errors.isEmpty() || !replacement.errors.isEmpty()) {
+            Map<Integer, String> moved = new HashMap<>();
+            for (Map.Entry<Integer, String> error : errors.entrySet()) {
+                int index = error.getKey();
+                if (index < from) {
+                    moved.put(index, error.getValue());
+                } else if (index >= to) {
+                    moved.put(index + shift, error.getValue());
+                }
+            }
+            for (Map.Entry<Integer, String> error : replacement.errors.entrySet()) {
+                moved.put(from + error.getKey(), error.getValue());
+            }
+            errors.clear();
+            errors.putAll(moved);
+        }
+    }
+
+    // Moves the tokens from index on by the edit. Only those on the same line as
+    // the first one move sideways, the lines below keep their columns.
+    private void shiftTail(int from, int delta, int lineDelta, int columnDelta) {
+        if (from >= size) {
+            return;
+        }
+        int firstLine = lines[from];
+        for (int i = from; i < size && lines[i] == firstLine; i++) {
+            columns[i] += columnDelta;
+        }
+        if (delta != 0) {
+            for (int i = from; i < size; i++) {
+                starts[i] += delta;
+            }
+        }
+        if (lineDelta != 0) {
+            for (int i = from; i < size; i++) {
+                lines[i] += lineDelta;
+            }
+        }
+    }
+
+    // Tokens never overlap, so their end offsets only grow: binary search on them
+    private int firstEndingAtOrAfter(int offset) {
+        int low = 0;
+        int high = size - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] + lengths[mid] >= offset) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    private int lineStart(int offset) {
+        while (offset > 0 && source[offset - 1] != '\n') {
+            offset--;
+        }
+        return offset;
+    }
+
+    public static TokenStream lex(String source) {
+        return lex(new Lexer(source));
+    }
+
+    private void add(TokenType type, int start, int length, int line, int column) {
+        if (size == types.length) {
+            grow();
+        }
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        lines[size] = line;
+        columns[size] = column;
+        size++;
+    }
+
+    private void grow() {
+        int capacity = Math.max(16, types.length * 2);
+        types = Arrays.copyOf(types, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        columns = Arrays.copyOf(columns, capacity);
+    }
+
+    // Number of tokens, including the final EOF.
+    public int size() {
+        return size;
+    }
+
+    public TokenType type(int index) {
+        return TYPES[types[index]];
+    }
+
+    // Offset of the token's first character in the source.
+    public int start(int index) {
+        return starts[index];
+    }
+
+    public int length(int index) {
+        return lengths[index];
+    }
+
+    public int line(int index) {
+        return lines[index];
+    }
+
+    public int column(int index) {
+        return columns[index];
+    }
+
+    // Same value the Lexer puts into the token's Symbol. Identifiers and literals are
+    // looked up in the intern table, so repeated calls return the same String.
+    public String value(int index) {
+        return value(index, names);
+    }
+
+    // Same as value(index), interning into the given table. Threads reading one
+    // stream concurrently each pass their own table, as the stream's is not thread-safe.
+    public String value(int index, InternTable table) {
+        TokenType type = type(index);
+        if (type == TokenType.ERROR) {
+            return errors.get(index);
+        }
+        return Lexer.valueOf(type, source, starts[index], lengths[index], table);
+    }
+
+    public Symbol symbol(int index) {
+        return new Symbol(type(index), value(index), lines[index], columns[index]);
+    }
+
+    public InternTable getInternTable() {
+        return names;
+    }
+
+    public char[] source() {
+        return source;
+    }
+
+    public int sourceLength() {
+        return sourceLength;
+    }
+}
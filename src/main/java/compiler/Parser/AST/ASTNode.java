@@ -3,4 +3,7 @@ package compiler.Parser.AST;
 public interface ASTNode {
     // This method will be used to print the tree structure
     String print(String indent);
-}
\ No newline at end of file
+
+    // Calls the visitor method for this node's class (see ASTVisitor)
+    <R, P> R accept(ASTVisitor<R, P> visitor, P arg);
+}
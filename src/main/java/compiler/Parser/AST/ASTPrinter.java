@@ -0,0 +1,258 @@
+package compiler.Parser.AST;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Writes the tree in the format of ASTNode.print straight to an Appendable.
+ * Every character is written once, where building the String node by node
+ * copied a child's text again at each level above it. Indentation is kept as
+ * a space count added to the caller's prefix, not as a new String per level.
+ */
+public class ASTPrinter {
+    private static final String SPACES = " ".repeat(64);
+
+    private final Appendable out;
+    private final String prefix;
+    private final StackGuard stack = new StackGuard();
+
+    public ASTPrinter(Appendable out, String prefix) {
+        this.out = out;
+        this.prefix = prefix;
+    }
+
+    public ASTPrinter(Appendable out) {
+        this(out, "");
+    }
+
+    public void print(ASTNode node) throws IOException {
+        print(node, 0);
+    }
+
+    // What node.print(indent) returns
+    public static String toString(ASTNode node, String indent) {
+        StringBuilder sb = new StringBuilder();
+        try {
+            new ASTPrinter(sb, indent).print(node);
+        } catch (IOException e) {
+            // a StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+        return sb.toString();
+    }
+
+    private void indent(int depth) throws IOException {
+        out.append(prefix);
+        for (; depth > SPACES.length(); depth -= SPACES.length()) {
+            out.append(SPACES);
+        }
+        out.append(SPACES, 0, depth);
+    }
+
+    // Writes indent + text + "\n"
+    private void line(int depth, String text) throws IOException {
+        indent(depth);
+        out.append(text).append('\n');
+    }
+
+    private void arguments(List<ASTNode> args, int depth, String none) throws IOException {
+        if (args.isEmpty()) {
+            out.append(none);
+        } else {
+            for (ASTNode arg : args) {
+                out.append('\n');
+                print(arg, depth + 4);
+            }
+        }
+    }
+
+    private void print(ASTNode node, int depth) throws IOException {
+        if (!stack.enter()) {
+            stack.deeper(() -> {
+                print(node, depth);
+                return null;
+            });
+            return;
+        }
+        try {
+            printNode(node, depth);
+        } finally {
+            stack.exit();
+        }
+    }
+
+    private void printNode(ASTNode node, int depth) throws IOException {
+        switch (node) {
+            case BlockNode block -> {
+                List<ASTNode> statements = block.getStatements();
+                for (int i = 0; i < statements.size(); i++) {
+                    print(statements.get(i), depth);
+                    if (i < statements.size() - 1) {
+                        out.append('\n');
+                    }
+                }
+            }
+            case FinalNode fin -> {
+                line(depth, "FinalModifier");
+                print(fin.getAssignment(), depth + 2);
+            }
+            case AssignmentNode assignment -> {
+                line(depth, "Expr");
+                if (assignment.getType() != null) {
+                    line(depth, "  Type, " + assignment.getType());
+                }
+                indent(depth);
+                out.append("  Identifier, ").append(assignment.getIdentifier());
+                if (assignment.getExpression() != null) {
+                    out.append('\n');
+                    line(depth, "  AssignmentOperator");
+                    print(assignment.getExpression(), depth + 2);
+                }
+            }
+            case CollectionNode collection -> {
+                line(depth, "CollectionDefinition");
+                line(depth, "  Name,  " + collection.getName());
+                line(depth, "  CollectionMembers");
+                print(collection.getBody(), depth + 4);
+            }
+            case FunctionNode function -> {
+                line(depth, "FunctionDefinition " + function.getName());
+                line(depth, "  ReturnType " + function.getReturnType());
+                indent(depth);
+                out.append("  Arguments");
+                arguments(function.getArgs(), depth, ", None");
+                out.append('\n');
+                line(depth, "  Body");
+                print(function.getBody(), depth + 4);
+            }
+            case IfNode ifNode -> {
+                line(depth, "IfStatement");
+                line(depth, "  Condition");
+                print(ifNode.getCondition(), depth + 4);
+                out.append('\n');
+                line(depth, "  Then");
+                print(ifNode.getThenBlock(), depth + 4);
+                if (ifNode.getElseBlock() != null) {
+                    out.append('\n');
+                    line(depth, "  Else");
+                    print(ifNode.getElseBlock(), depth + 4);
+                }
+            }
+            case WhileNode whileNode -> {
+                line(depth, "WhileLoop");
+                line(depth, "  Condition");
+                print(whileNode.getCondition(), depth + 4);
+                out.append('\n');
+                line(depth, "  LoopBody");
+                print(whileNode.getBody(), depth + 4);
+            }
+            case ForNode forNode -> {
+                line(depth, "ForLoop");
+                line(depth, "  Iterator");
+                print(forNode.getInit(), depth + 4);
+                out.append('\n');
+                line(depth, "  RangeStart");
+                print(forNode.getRangeStart(), depth + 4);
+                out.append('\n');
+                line(depth, "  RangeEnd");
+                print(forNode.getRangeEnd(), depth + 4);
+                out.append('\n');
+                line(depth, "  UpdatedValue");
+                print(forNode.getUpdate(), depth + 4);
+                out.append('\n');
+                line(depth, "  LoopBody");
+                print(forNode.getBody(), depth + 4);
+            }
+            case ReturnNode returnNode -> {
+                indent(depth);
+                out.append("ReturnStatement");
+                if (returnNode.getExpression() != null) {
+                    out.append('\n');
+                    print(returnNode.getExpression(), depth + 2);
+                }
+            }
+            case FunctionCallNode call -> {
+                line(depth, "FunctionCall " + call.getFunctionName());
+                indent(depth);
+                out.append("  Arguments");
+                arguments(call.getArguments(), depth, "  None");
+            }
+            case ConstructorCallNode call -> {
+                line(depth, "ConstructorCall");
+                line(depth, "  Collection " + call.getCollectionName());
+                indent(depth);
+                out.append("  Arguments");
+                arguments(call.getArguments(), depth, "  None");
+            }
+            case ArrayStoreNode store -> {
+                line(depth, "ArrayStore");
+                print(store.getArray(), depth + 2);
+                out.append('\n');
+                line(depth, "  Index");
+                print(store.getIndex(), depth + 4);
+                out.append('\n');
+                line(depth, "  Value");
+                print(store.getValue(), depth + 4);
+            }
+            case FieldStoreNode store -> {
+                line(depth, "FieldStore");
+                print(store.getTarget(), depth + 2);
+                out.append('\n');
+                line(depth, "  Field, " + store.getField());
+                line(depth, "  Value");
+                print(store.getValue(), depth + 4);
+            }
+            case BinaryExpressionNode binary -> {
+                print(binary.getLeft(), depth);
+                out.append('\n');
+                String label = switch (binary.getType()) {
+                    case "Logical" -> "LogicalOperator, ";
+                    case "Relational" -> "RelationalOperator, ";
+                    default -> "ArithmeticOperator, ";
+                };
+                line(depth, label + binary.getOperator());
+                print(binary.getRight(), depth);
+            }
+            case UnaryNode unary -> {
+                line(depth, "UnaryOperator, " + unary.getOperator());
+                print(unary.getOperand(), depth + 2);
+            }
+            case LiteralNode literal -> {
+                String label = switch (literal.getType()) {
+                    case INT -> "Integer";
+                    case FLOAT -> "Float";
+                    case STRING -> "String";
+                    case BOOL -> "Bool";
+                };
+                indent(depth);
+                out.append(label).append(", ").append(literal.getValue());
+            }
+            case IdentifierNode identifier -> {
+                indent(depth);
+                out.append("Identifier, ").append(identifier.getName());
+            }
+            case ArrayInitNode init -> {
+                line(depth, "ArrayInit");
+                line(depth, "  Type, " + init.getType());
+                line(depth, "  Size");
+                print(init.getSize(), depth + 4);
+            }
+            case IndexAccessNode access -> {
+                line(depth, "IndexAccess");
+                print(access.getArray(), depth + 2);
+                out.append('\n');
+                line(depth, "  Index");
+                print(access.getIndex(), depth + 4);
+            }
+            case MemberAccessNode access -> {
+                line(depth, "MemberAccess");
+                print(access.getCollection(), depth + 2);
+                out.append('\n');
+                indent(depth);
+                out.append("  member ").append(access.getMember());
+            }
+            default -> throw new RuntimeException("ASTPrinterError: unknown node " + node.getClass().getSimpleName());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package compiler.Parser.AST;
+
+/**
+ * Double dispatch over the node classes: node.accept(visitor, arg) calls the
+ * visit method for the node's own class, one virtual call instead of a chain
+ * of type checks. R is what a visit returns, P an argument passed along
+ * (use Void and null when there is none).
+ *
+ * Every method falls back to visitDefault, so a visitor only implements the
+ * nodes it handles.
+ */
+public interface ASTVisitor<R, P> {
+
+    // Called for every node kind the visitor does not handle itself
+    default R visitDefault(ASTNode node, P arg) {
+        throw new RuntimeException("VisitorError: unsupported node " + node.getClass().getSimpleName());
+    }
+
+    // Statements and declarations
+
+    default R visitBlock(BlockNode node, P arg) {
+        return visitDefault(node, arg);
+    }
+
+    default R visitFinal(FinalNode node, P arg) {
+        return visitDefault(node, arg);
+    }
+
+    default R visitAssignment(AssignmentNode node, P arg) {
+        return visitDefault(node, arg);
+    }
+
+    default R visitCollection(CollectionNode node, P arg) {
+        return visitDefault(node, arg);
+    }
+
+    default R visitFunction(FunctionNode node, P arg) {
+        return visitDefault(node, arg);
+    }
+
+    default R visitIf(IfNode node, P arg) {
+        return visitDefault(node, arg);
+    }
+
+    default R visitWhile(WhileNode node, P arg) {
+        return visitDefault(node, arg);
+    }
+
+    default R visitFor(ForNode node, P arg) {
+        return visitDefault(node, arg);
+    }
+
+    default R visitReturn(ReturnNode node, P arg) {
+        return visitDefault(node, arg);
+    }
+
+    default R visitArrayStore(ArrayStoreNode node, P arg) {
+        return visitDefault(node, arg);
+    }
+
+    default R visitFieldStore(FieldStoreNode node, P arg) {
+        return visitDefault(node, arg);
+    }
+
+    // Expressions (a function call is both)
+
+    default R visitFunctionCall(FunctionCallNode node, P arg) {
+        return visitDefault(node, arg);
+    }
+
+    default R visitConstructorCall(ConstructorCallNode node, P arg) {
+        return visitDefault(node, arg);
+    }
+
+    default R visitBinaryExpression(BinaryExpressionNode node, P arg) {
+        return visitDefault(node, arg);
+    }
+
+    default R visitUnary(UnaryNode node, P arg) {
+        return visitDefault(node, arg);
+    }
+
+    default R visitLiteral(LiteralNode node, P arg) {
+        return visitDefault(node, arg);
+    }
+
+    default R visitIdentifier(IdentifierNode node, P arg) {
+        return visitDefault(node, arg);
+    }
+
+    default R visitArrayInit(ArrayInitNode node, P arg) {
+        return visitDefault(node, arg);
+    }
+
+    default R visitIndexAccess(IndexAccessNode node, P arg) {
+        return visitDefault(node, arg);
+    }
+
+    default R visitMemberAccess(MemberAccessNode node, P arg) {
+        return visitDefault(node, arg);
+    }
+}
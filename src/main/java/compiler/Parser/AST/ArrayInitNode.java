@@ -1,6 +1,6 @@
 package compiler.Parser.AST;
 
-public class ArrayInitNode implements ASTNode {
+public class ArrayInitNode extends ExpressionNode {
     private final String type;
     private final ASTNode size;
 
@@ -17,13 +17,11 @@ public class ArrayInitNode implements ASTNode {
 
     @Override
     public String print(String indent) {
-        StringBuilder sb = new StringBuilder();
-
-        sb.append(indent).append("ArrayInit\n");
-        sb.append(indent).append("  Type, ").append(type).append("\n");
-        sb.append(indent).append("  Size\n");
-        sb.append(size.print(indent + "    "));
+        return ASTPrinter.toString(this, indent);
+    }
 
-        return sb.toString();
+    @Override
+    public <R, P> R accept(ASTVisitor<R, P> visitor, P arg) {
+        return visitor.visitArrayInit(this, arg);
     }
 }
\ No newline at end of file
@@ -20,11 +20,11 @@ public class ArrayStoreNode implements ASTNode {
 
     @Override
     public String print(String indent) {
-        return indent + "ArrayStore\n"
-                + array.print(indent + "  ") + "\n"
-                + indent + "  Index\n"
-                + index.print(indent + "    ") + "\n"
-                + indent + "  Value\n"
-                + value.print(indent + "    ");
+        return ASTPrinter.toString(this, indent);
+    }
+
+    @Override
+    public <R, P> R accept(ASTVisitor<R, P> visitor, P arg) {
+        return visitor.visitArrayStore(this, arg);
     }
 }
@@ -31,29 +31,12 @@ public class AssignmentNode implements ASTNode {
     }
     @Override
     public String print(String indent) {
-        StringBuilder sb = new StringBuilder();
-
-        // Root of the assignment
-        sb.append(indent).append("Expr\n");
-
-        // The type (e.g., INT)
-        if (type != null) {
-            sb.append(indent).append("  Type, ").append(type).append("\n");
-        }
-
-        // The variable name (e.g., x)
-        sb.append(indent).append("  Identifier, ").append(identifier);
-
-        if (expression != null) {
-            // The assignment operator label
-            sb.append("\n").append(indent).append("  AssignmentOperator\n");
-
-            // The right-hand side value/expression (e.g., 1 + 2)
-            // We pass an increased indent to the child expression
-            sb.append(expression.print(indent + "  "));
-        }
+        return ASTPrinter.toString(this, indent);
+    }
 
-        return sb.toString();
+    @Override
+    public <R, P> R accept(ASTVisitor<R, P> visitor, P arg) {
+        return visitor.visitAssignment(this, arg);
     }
 }
 
@@ -3,7 +3,7 @@ package compiler.Parser.AST;
 /**
  * Represents arithmetic operations like +, -, *, / in the AST.
  */
-public class BinaryExpressionNode implements ASTNode {
+public class BinaryExpressionNode extends ExpressionNode {
     private final String operator;
     private final ASTNode left;
     private final ASTNode right;
@@ -30,27 +30,11 @@ public class BinaryExpressionNode implements ASTNode {
 
     @Override
     public String print(String indent) {
-        StringBuilder sb = new StringBuilder();
-
-        // Print the left operand
-        sb.append(left.print(indent)).append("\n");
-
-        // Print the operator line
-        switch (type){
-            case "Logical":
-                sb.append(indent).append("LogicalOperator, ").append(operator).append("\n");
-                break;
-            case "Relational":
-                sb.append(indent).append("RelationalOperator, ").append(operator).append("\n");
-                break;
-            default:
-                sb.append(indent).append("ArithmeticOperator, ").append(operator).append("\n");
-                break;
-        }
-
-        // Print the right operand
-        sb.append(right.print(indent));
+        return ASTPrinter.toString(this, indent);
+    }
 
-        return sb.toString();
+    @Override
+    public <R, P> R accept(ASTVisitor<R, P> visitor, P arg) {
+        return visitor.visitBinaryExpression(this, arg);
     }
 }
\ No newline at end of file
@@ -15,13 +15,11 @@ public class BlockNode implements ASTNode {
 
     @Override
     public String print(String indent) {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < statements.size(); i++) {
-            sb.append(statements.get(i).print(indent));
-            if (i < statements.size() - 1) {
-                sb.append("\n");
-            }
-        }
-        return sb.toString();
+        return ASTPrinter.toString(this, indent);
+    }
+
+    @Override
+    public <R, P> R accept(ASTVisitor<R, P> visitor, P arg) {
+        return visitor.visitBlock(this, arg);
     }
 }
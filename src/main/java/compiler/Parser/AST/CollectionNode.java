@@ -16,15 +16,11 @@ public class CollectionNode implements ASTNode {
     }
     @Override
     public String print(String indent) {
-        StringBuilder sb = new StringBuilder();
-
-        sb.append(indent).append("CollectionDefinition\n");
-
-        sb.append(indent).append("  Name,  ").append(name).append("\n");
-
-        sb.append(indent).append("  CollectionMembers\n");
-        sb.append(body.print(indent + "    "));
+        return ASTPrinter.toString(this, indent);
+    }
 
-        return sb.toString();
+    @Override
+    public <R, P> R accept(ASTVisitor<R, P> visitor, P arg) {
+        return visitor.visitCollection(this, arg);
     }
 }
\ No newline at end of file
@@ -2,7 +2,7 @@ package compiler.Parser.AST;
 
 import java.util.List;
 
-public class ConstructorCallNode implements ASTNode {
+public class ConstructorCallNode extends ExpressionNode {
     private final String collection;
     private final List<ASTNode> args;
 
@@ -21,19 +21,11 @@ public class ConstructorCallNode implements ASTNode {
 
     @Override
     public String print(String indent) {
-        StringBuilder sb = new StringBuilder();
-
-        sb.append(indent).append("ConstructorCall\n");
-        sb.append(indent).append("  Collection ").append(collection).append("\n");
-        sb.append(indent).append("  Arguments");
+        return ASTPrinter.toString(this, indent);
+    }
 
-        if (args.isEmpty()) {
-            sb.append("  None");
-        } else {
-            for (ASTNode arg : args) {
-                sb.append("\n").append(arg.print(indent + "    "));
-            }
-        }
-        return sb.toString();
+    @Override
+    public <R, P> R accept(ASTVisitor<R, P> visitor, P arg) {
+        return visitor.visitConstructorCall(this, arg);
     }
 }
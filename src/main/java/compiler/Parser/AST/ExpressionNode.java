@@ -0,0 +1,20 @@
+package compiler.Parser.AST;
+
+import compiler.Semantic.Type;
+
+/**
+ * A node that stands for a value. The SemanticAnalyzer fills in the type it
+ * infers for the node, and the code generator reads it back instead of
+ * working it out again; null until the tree has been analyzed.
+ */
+public abstract class ExpressionNode implements ASTNode {
+    private Type resolvedType;
+
+    public Type getResolvedType() {
+        return resolvedType;
+    }
+
+    public void setResolvedType(Type type) {
+        this.resolvedType = type;
+    }
+}
@@ -20,10 +20,11 @@ public class FieldStoreNode implements ASTNode {
 
     @Override
     public String print(String indent) {
-        return indent + "FieldStore\n"
-                + target.print(indent + "  ") + "\n"
-                + indent + "  Field, " + field + "\n"
-                + indent + "  Value\n"
-                + value.print(indent + "    ");
+        return ASTPrinter.toString(this, indent);
+    }
+
+    @Override
+    public <R, P> R accept(ASTVisitor<R, P> visitor, P arg) {
+        return visitor.visitFieldStore(this, arg);
     }
 }
@@ -13,6 +13,11 @@ public class FinalNode implements ASTNode {
 
     @Override
     public String print(String indent) {
-        return indent + "FinalModifier\n" + assignment.print(indent + "  ");
+        return ASTPrinter.toString(this, indent);
+    }
+
+    @Override
+    public <R, P> R accept(ASTVisitor<R, P> visitor, P arg) {
+        return visitor.visitFinal(this, arg);
     }
 }
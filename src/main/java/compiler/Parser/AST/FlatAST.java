@@ -0,0 +1,662 @@
+package compiler.Parser.AST;
+
+import compiler.Lexer.InternTable;
+import compiler.Semantic.Types;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Compact AST kept in parallel primitive arrays: node kind, first child, next
+ * sibling and value (an id in the tree's intern table: names, operators,
+ * literal text and type names). A node is just an int index, 13 bytes in total,
+ * against an object, its fields and the lists of the object tree.
+ *
+ * The root (node 0) is the program block. The Parser appends one top-level
+ * declaration at a time, so only that declaration ever exists as objects.
+ * Passes that need objects call toNode() on one declaration and drop the
+ * result when they are done with it.
+ *
+ * A tree flattened from analyzed nodes also keeps the name of each
+ * expression's type, so it can be materialized already analyzed.
+ */
+public class FlatAST {
+    public static final int NONE = -1;
+    private static final NodeKind[] KINDS = NodeKind.values();
+
+    private byte[] kinds = new byte[1024];
+    private int[] firstChild = new int[1024];
+    private int[] nextSibling = new int[1024];
+    private int[] values = new int[1024];
+    // Type name ids of expressions, NONE for other nodes; null for a tree without types
+    private int[] types;
+    private int size = 0;
+
+    private final InternTable names = new InternTable();
+
+    // add() recurses through this, so appending deep trees is not limited by -Xss
+    private final StackGuard stack = new StackGuard();
+
+    // Children of the root, so appending and indexing declarations need no walk
+    private int[] declarations = new int[64];
+    private int declarationCount = 0;
+
+    public FlatAST() {
+        newNode(NodeKind.BLOCK, null);
+    }
+
+    // Flattens a whole object tree, with the types of analyzed expressions; a BlockNode root contributes its statements.
+    public static FlatAST of(ASTNode root) {
+        FlatAST ast = new FlatAST();
+        if (root instanceof BlockNode block) {
+            for (ASTNode statement : block.getStatements()) {
+                ast.append(statement);
+            }
+        } else {
+            ast.append(root);
+        }
+        ast.trimToSize();
+        return ast;
+    }
+
+    /**
+     * Adds a top-level declaration (the next statement of the program block).
+     */
+    public void append(ASTNode declaration) {
+        int node = add(declaration);
+        if (declarationCount > 0) {
+            nextSibling[declarations[declarationCount - 1]] = node;
+        } else {
+            firstChild[root()] = node;
+        }
+        if (declarationCount == declarations.length) {
+            declarations = Arrays.copyOf(declarations, Math.max(16, declarationCount * 2));
+        }
+        declarations[declarationCount++] = node;
+    }
+
+    // Drops the spare capacity left by growing; call once nothing more is appended
+    public void trimToSize() {
+        kinds = Arrays.copyOf(kinds, size);
+        firstChild = Arrays.copyOf(firstChild, size);
+        nextSibling = Arrays.copyOf(nextSibling, size);
+        values = Arrays.copyOf(values, size);
+        if (types != null) {
+            types = Arrays.copyOf(types, size);
+        }
+        declarations = Arrays.copyOf(declarations, declarationCount);
+    }
+
+    public int root() {
+        return 0;
+    }
+
+    // Number of nodes, root included
+    public int size() {
+        return size;
+    }
+
+    public NodeKind kind(int node) {
+        return KINDS[kinds[node]];
+    }
+
+    public int firstChild(int node) {
+        return firstChild[node];
+    }
+
+    public int nextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    // Name, operator, literal text or type name; null for kinds without one
+    public String value(int node) {
+        int id = values[node];
+        return id == NONE ? null : names.get(id);
+    }
+
+    // Whether the tree was flattened from analyzed nodes and holds their types
+    public boolean hasTypes() {
+        return types != null;
+    }
+
+    // Name of the type the analyzer gave node; null for a node that is not an expression
+    public String typeName(int node) {
+        int id = types == null ? NONE : types[node];
+        return id == NONE ? null : names.get(id);
+    }
+
+    public int childCount(int node) {
+        int count = 0;
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+            count++;
+        }
+        return count;
+    }
+
+    public int child(int node, int index) {
+        int child = firstChild[node];
+        for (int i = 0; i < index && child != NONE; i++) {
+            child = nextSibling[child];
+        }
+        return child;
+    }
+
+    public int declarationCount() {
+        return declarationCount;
+    }
+
+    public int declaration(int index) {
+        return declarations[index];
+    }
+
+    /**
+     * The top-level declarations as a list that builds the object form of an
+     * element each time it is fetched, without keeping it.
+     */
+    public List<ASTNode> declarations() {
+        return new Declarations();
+    }
+
+    private class Declarations extends AbstractList<ASTNode> implements RandomAccess {
+        @Override
+        public ASTNode get(int index) {
+            if (index < 0 || index >= declarationCount) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return toNode(declarations[index]);
+        }
+
+        @Override
+        public int size() {
+            return declarationCount;
+        }
+    }
+
+    // ---- Building ----
+
+    private int newNode(NodeKind kind, String value) {
+        if (size == kinds.length) {
+            int capacity = Math.max(16, size * 2);
+            kinds = Arrays.copyOf(kinds, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            values = Arrays.copyOf(values, capacity);
+            if (types != null) {
+                types = Arrays.copyOf(types, capacity);
+            }
+        }
+        kinds[size] = (byte) kind.ordinal();
+        firstChild[size] = NONE;
+        nextSibling[size] = NONE;
+        values[size] = value == null ? NONE : names.id(value);
+        if (types != null) {
+            types[size] = NONE;
+        }
+        return size++;
+    }
+
+    private void setType(int node, String type) {
+        if (types == null) {
+            types = new int[kinds.length];
+            Arrays.fill(types, NONE);
+        }
+        types[node] = names.id(type);
+    }
+
+    // Chains the given children (NONE entries are skipped) under parent
+    private int link(int parent, int... children) {
+        int last = NONE;
+        for (int child : children) {
+            if (child == NONE) {
+                continue;
+            }
+            if (last == NONE) {
+                firstChild[parent] = child;
+            } else {
+                nextSibling[last] = child;
+            }
+            last = child;
+        }
+        return parent;
+    }
+
+    private int linkAll(int parent, List<ASTNode> children) {
+        int[] ids = new int[children.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = add(children.get(i));
+        }
+        return link(parent, ids);
+    }
+
+    private int type(String type) {
+        return type == null ? NONE : newNode(NodeKind.TYPE, type);
+    }
+
+    // Nodes are numbered in preorder: the parent first, then its children left to right
+    private int add(ASTNode node) {
+        if (node == null) {
+            return NONE;
+        }
+        if (!stack.enter()) {
+            return stack.deeper(() -> add(node));
+        }
+        int id;
+        try {
+            id = addNode(node);
+        } finally {
+            stack.exit();
+        }
+        if (node instanceof ExpressionNode expression && expression.getResolvedType() != null) {
+            setType(id, expression.getResolvedType().getName());
+        }
+        return id;
+    }
+
+    private int addNode(ASTNode node) {
+        return switch (node) {
+            case null -> NONE;
+            case BlockNode block -> linkAll(newNode(NodeKind.BLOCK, null), block.getStatements());
+            case FinalNode fin -> link(newNode(NodeKind.FINAL, null), add(fin.getAssignment()));
+            case AssignmentNode assignment -> link(newNode(NodeKind.ASSIGNMENT, assignment.getIdentifier()),
+                    type(assignment.getType()), add(assignment.getExpression()));
+            case CollectionNode collection -> link(newNode(NodeKind.COLLECTION, collection.getName()),
+                    add(collection.getBody()));
+            case FunctionNode function -> {
+                int parent = newNode(NodeKind.FUNCTION, function.getName());
+                int[] children = new int[function.getArgs().size() + 2];
+                children[0] = type(function.getReturnType());
+                for (int i = 0; i < function.getArgs().size(); i++) {
+                    children[i + 1] = add(function.getArgs().get(i));
+                }
+                children[children.length - 1] = add(function.getBody());
+                yield link(parent, children);
+            }
+            case IfNode ifNode -> link(newNode(NodeKind.IF, null),
+                    add(ifNode.getCondition()), add(ifNode.getThenBlock()), add(ifNode.getElseBlock()));
+            case WhileNode whileNode -> link(newNode(NodeKind.WHILE, null),
+                    add(whileNode.getCondition()), add(whileNode.getBody()));
+            case ForNode forNode -> link(newNode(NodeKind.FOR, null), add(forNode.getInit()),
+                    add(forNode.getRangeStart()), add(forNode.getRangeEnd()),
+                    add(forNode.getUpdate()), add(forNode.getBody()));
+            case ReturnNode returnNode -> link(newNode(NodeKind.RETURN, null), add(returnNode.getExpression()));
+            case FunctionCallNode call -> linkAll(newNode(NodeKind.FUNCTION_CALL, call.getFunctionName()),
+                    call.getArguments());
+            case ConstructorCallNode call -> linkAll(newNode(NodeKind.CONSTRUCTOR_CALL, call.getCollectionName()),
+                    call.getArguments());
+            case ArrayStoreNode store -> link(newNode(NodeKind.ARRAY_STORE, null),
+                    add(store.getArray()), add(store.getIndex()), add(store.getValue()));
+            case FieldStoreNode store -> link(newNode(NodeKind.FIELD_STORE, store.getField()),
+                    add(store.getTarget()), add(store.getValue()));
+            case BinaryExpressionNode binary -> link(newNode(binaryKind(binary.getType()), binary.getOperator()),
+                    add(binary.getLeft()), add(binary.getRight()));
+            case UnaryNode unary -> link(newNode(NodeKind.UNARY, unary.getOperator()), add(unary.getOperand()));
+            case LiteralNode literal -> newNode(literalKind(literal.getType()), literal.getValue());
+            case IdentifierNode identifier -> newNode(NodeKind.IDENTIFIER, identifier.getName());
+            case ArrayInitNode arrayInit -> link(newNode(NodeKind.ARRAY_INIT, arrayInit.getType()),
+                    add(arrayInit.getSize()));
+            case IndexAccessNode access -> link(newNode(NodeKind.INDEX_ACCESS, null),
+                    add(access.getArray()), add(access.getIndex()));
+            case MemberAccessNode access -> link(newNode(NodeKind.MEMBER_ACCESS, access.getMember()),
+                    add(access.getCollection()));
+            default -> throw new RuntimeException(
+                    "FlatASTError: unsupported node " + node.getClass().getSimpleName());
+        };
+    }
+
+    private static NodeKind binaryKind(String type) {
+        return switch (type) {
+            case "Logical" -> NodeKind.LOGICAL;
+            case "Relational" -> NodeKind.RELATIONAL;
+            default -> NodeKind.ARITHMETIC;
+        };
+    }
+
+    private static NodeKind literalKind(DataType type) {
+        return switch (type) {
+            case INT -> NodeKind.INT_LITERAL;
+            case FLOAT -> NodeKind.FLOAT_LITERAL;
+            case STRING -> NodeKind.STRING_LITERAL;
+            case BOOL -> NodeKind.BOOL_LITERAL;
+        };
+    }
+
+    // ---- Materializing ----
+
+    /**
+     * Builds the object form of the subtree rooted at node (null for NONE).
+     */
+    public ASTNode toNode(int node) {
+        return new Materializer(null).toNode(node);
+    }
+
+    /**
+     * Same as toNode(node), with each expression given the type it was
+     * flattened with, looked up in types (see hasTypes()).
+     */
+    public ASTNode toNode(int node, Types types) {
+        return new Materializer(types).toNode(node);
+    }
+
+    // One per call, so trees can still be read on several threads
+    private class Materializer {
+        private final StackGuard stack = new StackGuard();
+        private final Types types;
+
+        Materializer(Types types) {
+            this.types = types;
+        }
+
+        ASTNode toNode(int node) {
+            if (node == NONE) {
+                return null;
+            }
+            if (!stack.enter()) {
+                return stack.deeper(() -> toNode(node));
+            }
+            ASTNode created;
+            try {
+                created = materialize(node);
+            } finally {
+                stack.exit();
+            }
+            if (types != null && created instanceof ExpressionNode expression) {
+                expression.setResolvedType(types.stored(typeName(node)));
+            }
+            return created;
+        }
+
+        private ASTNode materialize(int node) {
+            int child = firstChild[node];
+            String value = value(node);
+
+            switch (kind(node)) {
+                case BLOCK:
+                    return toBlock(node);
+                case FINAL:
+                    return new FinalNode(toNode(child));
+                case ASSIGNMENT: {
+                    String type = null;
+                    if (child != NONE && kind(child) == NodeKind.TYPE) {
+                        type = value(child);
+                        child = nextSibling[child];
+                    }
+                    return child == NONE ? new AssignmentNode(type, value)
+                            : new AssignmentNode(type, value, toNode(child));
+                }
+                case COLLECTION:
+                    return new CollectionNode(value, toBlock(child));
+                case FUNCTION: {
+                    String returnType = null;
+                    if (kind(child) == NodeKind.TYPE) {
+                        returnType = value(child);
+                        child = nextSibling[child];
+                    }
+                    List<ASTNode> args = new ArrayList<>();
+                    while (kind(child) != NodeKind.BLOCK) {
+                        args.add(toNode(child));
+                        child = nextSibling[child];
+                    }
+                    return new FunctionNode(returnType, value, args, toBlock(child));
+                }
+                case IF: {
+                    int then = nextSibling[child];
+                    return new IfNode(toNode(child), toBlock(then), toBlock(nextSibling[then]));
+                }
+                case WHILE:
+                    return new WhileNode(toNode(child), toBlock(nextSibling[child]));
+                case FOR: {
+                    int start = nextSibling[child];
+                    int end = nextSibling[start];
+                    int update = nextSibling[end];
+                    return new ForNode(toNode(child), toNode(start), toNode(end),
+                            toNode(update), toBlock(nextSibling[update]));
+                }
+                case RETURN:
+                    return new ReturnNode(toNode(child));
+                case FUNCTION_CALL:
+                    return new FunctionCallNode(value, toList(child));
+                case CONSTRUCTOR_CALL:
+                    return new ConstructorCallNode(value, toList(child));
+                case ARRAY_STORE: {
+                    int index = nextSibling[child];
+                    return new ArrayStoreNode(toNode(child), toNode(index),
+                            toNode(nextSibling[index]));
+                }
+                case FIELD_STORE:
+                    return new FieldStoreNode(toNode(child), value, toNode(nextSibling[child]));
+                case ARITHMETIC:
+                    return new BinaryExpressionNode(value, toNode(child), toNode(nextSibling[child]),
+                            "Arithmetic");
+                case RELATIONAL:
+                    return new BinaryExpressionNode(value, toNode(child), toNode(nextSibling[child]),
+                            "Relational");
+                case LOGICAL:
+                    return new BinaryExpressionNode(value, toNode(child), toNode(nextSibling[child]),
+                            "Logical");
+                case UNARY:
+                    return new UnaryNode(value, toNode(child));
+                case INT_LITERAL:
+                    return new LiteralNode(value, DataType.INT);
+                case FLOAT_LITERAL:
+                    return new LiteralNode(value, DataType.FLOAT);
+                case STRING_LITERAL:
+                    return new LiteralNode(value, DataType.STRING);
+                case BOOL_LITERAL:
+                    return new LiteralNode(value, DataType.BOOL);
+                case IDENTIFIER:
+                    return new IdentifierNode(value);
+                case ARRAY_INIT:
+                    return new ArrayInitNode(value, toNode(child));
+                case INDEX_ACCESS:
+                    return new IndexAccessNode(toNode(child), toNode(nextSibling[child]));
+                case MEMBER_ACCESS:
+                    return new MemberAccessNode(toNode(child), value);
+                default:
+                    throw new RuntimeException("FlatASTError: " + kind(node) + " is not a standalone node.");
+            }
+        }
+
+        private BlockNode toBlock(int node) {
+            if (node == NONE) {
+                return null;
+            }
+            BlockNode block = new BlockNode();
+            for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+                block.addStatement(toNode(child));
+            }
+            return block;
+        }
+
+        private List<ASTNode> toList(int first) {
+            List<ASTNode> nodes = new ArrayList<>();
+            for (int child = first; child != NONE; child = nextSibling[child]) {
+                nodes.add(toNode(child));
+            }
+            return nodes;
+        }
+    }
+
+    // ---- Serializing ----
+
+    /**
+     * Compact binary form of the tree: the intern table's strings in id order,
+     * then for every node its kind, value id + 1 and the distance to its first
+     * child and to its next sibling (0 for none), as varints. Both come after
+     * the node in preorder and a first child right after it, so most nodes
+     * take four bytes. A last varint says whether the types follow, one type
+     * name id + 1 per node.
+     */
+    public byte[] toBytes() {
+        Encoder out = new Encoder(size * 4 + 1024);
+        out.varint(names.size());
+        for (int id = 0; id < names.size(); id++) {
+            byte[] text = names.get(id).getBytes(StandardCharsets.UTF_8);
+            out.varint(text.length);
+            out.bytes(text);
+        }
+        out.varint(size);
+        for (int node = 0; node < size; node++) {
+            out.varint(kinds[node]);
+            out.varint(values[node] + 1);
+            out.varint(firstChild[node] == NONE ? 0 : firstChild[node] - node);
+            out.varint(nextSibling[node] == NONE ? 0 : nextSibling[node] - node);
+        }
+        out.varint(types == null ? 0 : 1);
+        if (types != null) {
+            for (int node = 0; node < size; node++) {
+                out.varint(types[node] + 1);
+            }
+        }
+        return out.toArray();
+    }
+
+    /**
+     * Reads back what toBytes wrote, from data[offset, offset + length).
+     */
+    public static FlatAST fromBytes(byte[] data, int offset, int length) {
+        Decoder in = new Decoder(data, offset, offset + length);
+        FlatAST ast = new FlatAST();
+
+        int strings = in.varint();
+        for (int id = 0; id < strings; id++) {
+            int bytes = in.varint();
+            String text = new String(data, in.take(bytes), bytes, StandardCharsets.UTF_8);
+            if (ast.names.id(text) != id) {
+                throw malformed();
+            }
+        }
+
+        int size = in.varint();
+        if (size < 1) {
+            throw malformed();
+        }
+        ast.kinds = new byte[size];
+        ast.firstChild = new int[size];
+        ast.nextSibling = new int[size];
+        ast.values = new int[size];
+        ast.size = size;
+        for (int node = 0; node < size; node++) {
+            int kind = in.varint();
+            int value = in.varint() - 1;
+            int child = in.varint();
+            int sibling = in.varint();
+            if (kind >= KINDS.length || value >= strings
+                    || child > size - 1 - node || sibling > size - 1 - node) {
+                throw malformed();
+            }
+            ast.kinds[node] = (byte) kind;
+            ast.values[node] = value;
+            ast.firstChild[node] = child == 0 ? NONE : node + child;
+            ast.nextSibling[node] = sibling == 0 ? NONE : node + sibling;
+        }
+        int typed = in.varint();
+        if (typed > 1) {
+            throw malformed();
+        }
+        if (typed == 1) {
+            ast.types = new int[size];
+            for (int node = 0; node < size; node++) {
+                int type = in.varint() - 1;
+                if (type >= strings) {
+                    throw malformed();
+                }
+                ast.types[node] = type;
+            }
+        }
+        if (!in.atEnd() || ast.kind(0) != NodeKind.BLOCK) {
+            throw malformed();
+        }
+
+        ast.declarationCount = ast.childCount(0);
+        ast.declarations = new int[ast.declarationCount];
+        for (int i = 0, child = ast.firstChild[0]; child != NONE; i++, child = ast.nextSibling[child]) {
+            ast.declarations[i] = child;
+        }
+        return ast;
+    }
+
+    private static RuntimeException malformed() {
+        return new RuntimeException("FlatASTError: malformed binary tree");
+    }
+
+    private static class Encoder {
+        private byte[] buffer;
+        private int length;
+
+        Encoder(int capacity) {
+            buffer = new byte[capacity];
+        }
+
+        void varint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[length++] = (byte) value;
+        }
+
+        void bytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+        }
+
+        byte[] toArray() {
+            return Arrays.copyOf(buffer, length);
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(length + extra, buffer.length * 2));
+            }
+        }
+    }
+
+    private static class Decoder {
+        private final byte[] data;
+        private final int end;
+        private int position;
+
+        Decoder(byte[] data, int start, int end) {
+            this.data = data;
+            this.position = start;
+            this.end = end;
+        }
+
+        int varint() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                if (position == end) {
+                    throw malformed();
+                }
+                byte b = data[position++];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    if (value < 0) {
+                        throw malformed();
+                    }
+                    return value;
+                }
+            }
+            throw malformed();
+        }
+
+        // Skips count bytes and returns where they start
+        int take(int count) {
+            if (count > end - position) {
+                throw malformed();
+            }
+            position += count;
+            return position - count;
+        }
+
+        boolean atEnd() {
+            return position == end;
+        }
+    }
+}
@@ -39,17 +39,11 @@ public class ForNode implements ASTNode {
 
     @Override
     public String print(String indent) {
-        StringBuilder sb = new StringBuilder();
-
-        sb.append(indent).append("ForLoop\n");
-        sb.append(indent).append("  Iterator\n").append(init.print(indent + "    ")).append("\n");
-        sb.append(indent).append("  RangeStart\n").append(rangeStart.print(indent + "    ")).append("\n");
-        sb.append(indent).append("  RangeEnd\n").append(rangeEnd.print(indent + "    ")).append("\n");
-        sb.append(indent).append("  UpdatedValue\n");
-        sb.append(update.print(indent + "    ")).append("\n");
-        sb.append(indent).append("  LoopBody\n");
-        sb.append(body.print(indent + "    "));
-
-        return sb.toString();
+        return ASTPrinter.toString(this, indent);
+    }
+
+    @Override
+    public <R, P> R accept(ASTVisitor<R, P> visitor, P arg) {
+        return visitor.visitFor(this, arg);
     }
 }
\ No newline at end of file
@@ -2,7 +2,7 @@ package compiler.Parser.AST;
 
 import java.util.List;
 
-public class FunctionCallNode implements ASTNode {
+public class FunctionCallNode extends ExpressionNode {
     private final String name;
     private final List<ASTNode> args;
 
@@ -19,19 +19,11 @@ public class FunctionCallNode implements ASTNode {
     }
     @Override
     public String print(String indent) {
-        StringBuilder sb = new StringBuilder();
-
-        sb.append(indent).append("FunctionCall ").append(name).append("\n");
-        sb.append(indent).append("  Arguments");
-
-        if (args.isEmpty()) {
-            sb.append("  None");
-        } else {
-            for (ASTNode arg : args) {
-                sb.append("\n").append(arg.print(indent + "    "));
-            }
-        }
+        return ASTPrinter.toString(this, indent);
+    }
 
-        return sb.toString();
+    @Override
+    public <R, P> R accept(ASTVisitor<R, P> visitor, P arg) {
+        return visitor.visitFunctionCall(this, arg);
     }
 }
\ No newline at end of file
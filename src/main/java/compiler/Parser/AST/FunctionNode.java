@@ -1,12 +1,14 @@
 package compiler.Parser.AST;
 
 import java.util.List;
+import java.util.function.Supplier;
 
 public class FunctionNode implements ASTNode {
     private final String returnType;
     private final String name;
     private final List<ASTNode> args;
-    private final BlockNode body;
+    private BlockNode body;
+    private Supplier<BlockNode> bodyParser;   // set until a lazy body is parsed
 
     public FunctionNode(String returnType, String name, List<ASTNode> args, BlockNode body) {
         this.returnType = returnType;
@@ -14,6 +16,14 @@ public class FunctionNode implements ASTNode {
         this.args = args;
         this.body = body;
     }
+
+    // A function whose body is parsed by bodyParser the first time getBody() is called
+    public FunctionNode(String returnType, String name, List<ASTNode> args, Supplier<BlockNode> bodyParser) {
+        this.returnType = returnType;
+        this.name = name;
+        this.args = args;
+        this.bodyParser = bodyParser;
+    }
     public String getReturnType() {
         return returnType;
     }
@@ -24,26 +34,23 @@ public class FunctionNode implements ASTNode {
         return args;
     }
     public BlockNode getBody() {
+        if (bodyParser != null) {
+            body = bodyParser.get();
+            bodyParser = null;
+        }
         return body;
     }
+
+    public boolean isBodyParsed() {
+        return bodyParser == null;
+    }
     @Override
     public String print(String indent) {
-        StringBuilder sb = new StringBuilder();
-
-        sb.append(indent).append("FunctionDefinition ").append(name).append("\n");
-        sb.append(indent).append("  ReturnType ").append(returnType).append("\n");
-        sb.append(indent).append("  Arguments");
-
-        if (args.isEmpty()) {
-             sb.append(", None");
-        } else {
-            for (ASTNode arg : args) {
-                sb.append("\n").append(arg.print(indent + "    "));
-            }
-        }
-        sb.append("\n").append(indent).append("  Body\n");
-        sb.append(body.print(indent + "    "));
+        return ASTPrinter.toString(this, indent);
+    }
 
-        return sb.toString();
+    @Override
+    public <R, P> R accept(ASTVisitor<R, P> visitor, P arg) {
+        return visitor.visitFunction(this, arg);
     }
 }
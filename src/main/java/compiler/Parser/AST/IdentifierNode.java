@@ -3,7 +3,7 @@ package compiler.Parser.AST;
 /**
  * Represents a variable identifier (like 'x' or 'myVar') in the AST.
  */
-public class IdentifierNode implements ASTNode {
+public class IdentifierNode extends ExpressionNode {
     private final String name;
 
     public IdentifierNode(String name) {
@@ -16,7 +16,11 @@ public class IdentifierNode implements ASTNode {
 
     @Override
     public String print(String indent) {
-        // Matches the format: "Identifier, x"
-        return indent + "Identifier, " + name;
+        return ASTPrinter.toString(this, indent);
+    }
+
+    @Override
+    public <R, P> R accept(ASTVisitor<R, P> visitor, P arg) {
+        return visitor.visitIdentifier(this, arg);
     }
 }
\ No newline at end of file
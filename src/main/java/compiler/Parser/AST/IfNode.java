@@ -26,22 +26,11 @@ public class IfNode implements ASTNode {
 
     @Override
     public String print(String indent) {
-        StringBuilder sb = new StringBuilder();
-
-        sb.append(indent).append("IfStatement\n");
-
-        sb.append(indent).append("  Condition\n");
-        sb.append(condition.print(indent + "    ")).append("\n");
-
-        sb.append(indent).append("  Then\n");
-        sb.append(body.print(indent + "    "));
-
-        // Print the else block only if it exists
-        if (elseBody != null) {
-            sb.append("\n").append(indent).append("  Else\n");
-            sb.append(elseBody.print(indent + "    "));
-        }
+        return ASTPrinter.toString(this, indent);
+    }
 
-        return sb.toString();
+    @Override
+    public <R, P> R accept(ASTVisitor<R, P> visitor, P arg) {
+        return visitor.visitIf(this, arg);
     }
 }
\ No newline at end of file
@@ -1,6 +1,6 @@
 package compiler.Parser.AST;
 
-public class IndexAccessNode implements ASTNode {
+public class IndexAccessNode extends ExpressionNode {
     private final ASTNode array;
     private final ASTNode index;
 
@@ -16,14 +16,11 @@ public class IndexAccessNode implements ASTNode {
     }
     @Override
     public String print(String indent) {
-        StringBuilder sb = new StringBuilder();
-
-        sb.append(indent).append("IndexAccess\n");
-
-        sb.append(array.print(indent + "  ")).append("\n");
-        sb.append(indent).append("  Index\n");
-        sb.append(index.print(indent + "    "));
+        return ASTPrinter.toString(this, indent);
+    }
 
-        return sb.toString();
+    @Override
+    public <R, P> R accept(ASTVisitor<R, P> visitor, P arg) {
+        return visitor.visitIndexAccess(this, arg);
     }
 }
\ No newline at end of file
@@ -1,6 +1,6 @@
 package compiler.Parser.AST;
 
-public class LiteralNode implements ASTNode {
+public class LiteralNode extends ExpressionNode {
     private final String value;
     private final DataType type;
 
@@ -16,14 +16,11 @@ public class LiteralNode implements ASTNode {
     }
     @Override
     public String print(String indent) {
-        // Mapping the Enum back to the specific string format required for the project tree
-        String label = switch (type) {
-            case INT -> "Integer";
-            case FLOAT -> "Float";
-            case STRING -> "String";
-            case BOOL -> "Bool";
-            default -> type.name();
-        };
-        return indent + label + ", " + value;
+        return ASTPrinter.toString(this, indent);
+    }
+
+    @Override
+    public <R, P> R accept(ASTVisitor<R, P> visitor, P arg) {
+        return visitor.visitLiteral(this, arg);
     }
 }
\ No newline at end of file
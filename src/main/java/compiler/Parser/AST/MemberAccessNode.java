@@ -1,6 +1,6 @@
 package compiler.Parser.AST;
 
-public class MemberAccessNode implements ASTNode {
+public class MemberAccessNode extends ExpressionNode {
     private final ASTNode collection;
     private final String member;
 
@@ -19,13 +19,11 @@ public class MemberAccessNode implements ASTNode {
 
     @Override
     public String print(String indent) {
-        StringBuilder sb = new StringBuilder();
-
-        sb.append(indent).append("MemberAccess\n");
-
-        sb.append(collection.print(indent + "  ")).append("\n");
-        sb.append(indent).append("  member ").append(member);
+        return ASTPrinter.toString(this, indent);
+    }
 
-        return sb.toString();
+    @Override
+    public <R, P> R accept(ASTVisitor<R, P> visitor, P arg) {
+        return visitor.visitMemberAccess(this, arg);
     }
 }
@@ -0,0 +1,163 @@
+package compiler.Parser.AST;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Creates the parser's immutable expression nodes: literals, identifiers,
+ * binary expressions and index and member accesses. PLAIN allocates a new
+ * node every time.
+ *
+ * A hashConsing() factory returns the node it made before when asked for an
+ * identical one, so repeated subexpressions (i * 2, p [ 0 ] . x, a constant)
+ * are one shared subtree. Children are compared by identity. A child made by
+ * the same factory is already shared, so identity is structural equality;
+ * any other child (a function call, say) is never equal to a new one. Two
+ * expressions from one factory are therefore equal exactly when they are
+ * the same node, which is what common-subexpression detection needs.
+ *
+ * The parser reports scopes and declarations to the factory, and an
+ * identifier is only shared while it names the same declaration: x in a
+ * function taking INT x is not the x of one taking FLOAT x. A shared node
+ * therefore has one type wherever it is used, and the analyzer can store
+ * that type on it. Other per-occurrence state must not be attached.
+ *
+ * A hash-consing factory holds on to every node it has made and is not
+ * thread-safe. A lazily parsed function body resolves names in the scope
+ * open when it is parsed, so it must be parsed while no other parse with
+ * the factory is in progress.
+ */
+public class NodeFactory {
+    public static final NodeFactory PLAIN = new NodeFactory();
+
+    protected NodeFactory() {
+    }
+
+    public static NodeFactory hashConsing() {
+        return new HashConsing();
+    }
+
+    public ASTNode literal(String value, DataType type) {
+        return new LiteralNode(value, type);
+    }
+
+    public ASTNode identifier(String name) {
+        return new IdentifierNode(name);
+    }
+
+    public ASTNode binary(String operator, ASTNode left, ASTNode right, String type) {
+        return new BinaryExpressionNode(operator, left, right, type);
+    }
+
+    public ASTNode indexAccess(ASTNode array, ASTNode index) {
+        return new IndexAccessNode(array, index);
+    }
+
+    public ASTNode memberAccess(ASTNode collection, String member) {
+        return new MemberAccessNode(collection, member);
+    }
+
+    // The parser's scopes, in the order it opens and closes them
+    public void enterScope() {
+    }
+
+    // name is declared in the innermost open scope, from here on
+    public void declare(String name) {
+    }
+
+    public void exitScope() {
+    }
+
+    // Distinct nodes handed out so far; 0 for PLAIN, which keeps none
+    public int size() {
+        return 0;
+    }
+
+    private static class HashConsing extends NodeFactory {
+        // ASTNode does not override equals, so node fields in the keys compare by identity
+        private record Literal(String value, DataType type) {
+        }
+
+        // binding tells apart declarations of the same name
+        private record Identifier(String name, int binding) {
+        }
+
+        private record Binary(String operator, ASTNode left, ASTNode right, String type) {
+        }
+
+        private record Index(ASTNode array, ASTNode index) {
+        }
+
+        private record Member(ASTNode collection, String member) {
+        }
+
+        // A declaration and the binding of its name that it hid
+        private record Hidden(String name, Integer binding) {
+        }
+
+        private final Map<Object, ASTNode> nodes = new HashMap<>();
+
+        // The declaration each name refers to now, as a number no other one gets; absent for none
+        private final Map<String, Integer> bindings = new HashMap<>();
+        private final ArrayDeque<Hidden> declarations = new ArrayDeque<>();
+        // How many declarations were made before each open scope
+        private final ArrayDeque<Integer> scopes = new ArrayDeque<>();
+        private int nextBinding = 1;
+
+        @Override
+        public ASTNode literal(String value, DataType type) {
+            return nodes.computeIfAbsent(new Literal(value, type), k -> new LiteralNode(value, type));
+        }
+
+        @Override
+        public ASTNode identifier(String name) {
+            return nodes.computeIfAbsent(new Identifier(name, bindings.getOrDefault(name, 0)),
+                    k -> new IdentifierNode(name));
+        }
+
+        @Override
+        public ASTNode binary(String operator, ASTNode left, ASTNode right, String type) {
+            return nodes.computeIfAbsent(new Binary(operator, left, right, type),
+                    k -> new BinaryExpressionNode(operator, left, right, type));
+        }
+
+        @Override
+        public ASTNode indexAccess(ASTNode array, ASTNode index) {
+            return nodes.computeIfAbsent(new Index(array, index), k -> new IndexAccessNode(array, index));
+        }
+
+        @Override
+        public ASTNode memberAccess(ASTNode collection, String member) {
+            return nodes.computeIfAbsent(new Member(collection, member), k -> new MemberAccessNode(collection, member));
+        }
+
+        @Override
+        public void enterScope() {
+            scopes.push(declarations.size());
+        }
+
+        @Override
+        public void declare(String name) {
+            declarations.push(new Hidden(name, bindings.put(name, nextBinding++)));
+        }
+
+        @Override
+        public void exitScope() {
+            int outer = scopes.pop();
+            while (declarations.size() > outer) {
+                Hidden hidden = declarations.pop();
+                if (hidden.binding() == null) {
+                    bindings.remove(hidden.name());
+                } else {
+                    bindings.put(hidden.name(), hidden.binding());
+                }
+            }
+        }
+
+        @Override
+        public int size() {
+            return nodes.size();
+        }
+    }
+}
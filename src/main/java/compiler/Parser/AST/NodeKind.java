@@ -0,0 +1,34 @@
+package compiler.Parser.AST;
+
+/**
+ * Node kinds of the flat AST (see FlatAST). The children each kind has,
+ * in order, are listed next to it; "?" marks an optional child.
+ */
+public enum NodeKind {
+    BLOCK,               // statements
+    FINAL,               // assignment
+    ASSIGNMENT,          // value = identifier; TYPE?, expression?
+    TYPE,                // value = type name, e.g. INT[]
+    COLLECTION,          // value = name; BLOCK of members
+    FUNCTION,            // value = name; TYPE? (return type), ASSIGNMENT parameters, BLOCK body
+    IF,                  // condition, BLOCK, BLOCK? (else)
+    WHILE,               // condition, BLOCK
+    FOR,                 // init, range start, range end, update, BLOCK
+    RETURN,              // expression?
+    FUNCTION_CALL,       // value = name; arguments
+    CONSTRUCTOR_CALL,    // value = collection name; arguments
+    ARRAY_STORE,         // array, index, value
+    FIELD_STORE,         // value = field; target, value
+    ARITHMETIC,          // value = operator; left, right
+    RELATIONAL,          // value = operator; left, right
+    LOGICAL,             // value = operator; left, right
+    UNARY,               // value = operator; operand
+    INT_LITERAL,         // value = literal text
+    FLOAT_LITERAL,
+    STRING_LITERAL,
+    BOOL_LITERAL,
+    IDENTIFIER,          // value = name
+    ARRAY_INIT,          // value = element type; size
+    INDEX_ACCESS,        // array, index
+    MEMBER_ACCESS        // value = member; collection
+}
@@ -12,11 +12,12 @@ public class ReturnNode implements ASTNode {
     }
     @Override
     public String print(String indent) {
-        if (expression == null) {
-            return indent + "ReturnStatement";
-        }
+        return ASTPrinter.toString(this, indent);
+    }
 
-        return indent + "ReturnStatement\n" + expression.print(indent + "  ");
+    @Override
+    public <R, P> R accept(ASTVisitor<R, P> visitor, P arg) {
+        return visitor.visitReturn(this, arg);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,98 @@
+package compiler.Parser.AST;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Keeps the recursive walks over the tree (parsing, printing, type inference,
+ * code generation) from overflowing the Java stack on deeply nested input.
+ *
+ * A walk counts its levels with enter() and exit(), which allocate nothing,
+ * so input of ordinary depth pays one increment per level. Past a depth
+ * threshold enter() refuses. Expression parsing, type inference and
+ * expression generation then finish the expression with an explicit stack
+ * instead of recursing; the other walks continue through deeper(), on a
+ * pooled thread with a large stack, for up to SEGMENT more levels.
+ *
+ * Nesting depth is then bounded by memory rather than by -Xss. One guard
+ * belongs to one walk at a time; it is not for concurrent use.
+ */
+public class StackGuard {
+    // Levels run on the caller's thread, whose stack may be small (a pool worker's)
+    private static final int FIRST_SEGMENT = 128;
+    // Levels run on each extra thread, well within STACK_SIZE
+    private static final int SEGMENT = 8192;
+    private static final long STACK_SIZE = 64L << 20;
+
+    // Idle threads are kept a while, so repeated hops do not each start a thread
+    private static final ExecutorService THREADS = Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(null, task, "deep-nesting", STACK_SIZE);
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public interface Step<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    private int depth;
+    private int limit = FIRST_SEGMENT;
+
+    // Counts one more level; false, counting nothing, once the current thread has run its share
+    public boolean enter() {
+        if (depth >= limit) {
+            return false;
+        }
+        depth++;
+        return true;
+    }
+
+    // Undoes a successful enter()
+    public void exit() {
+        depth--;
+    }
+
+    /**
+     * For a walk that enter() refused: runs step, which enters again, on a
+     * thread with a fresh large stack while the current thread waits for it.
+     */
+    @SuppressWarnings("unchecked")
+    public <T, E extends Exception> T deeper(Step<T, E> step) throws E {
+        int callerLimit = limit;
+        limit = depth + SEGMENT;
+        try {
+            // The future orders the fields between the two threads
+            return getUninterruptibly(THREADS.submit(step::run));
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            } else if (cause instanceof Error error) {
+                throw error;
+            }
+            // step only throws E or unchecked exceptions
+            throw (E) cause;
+        } finally {
+            limit = callerLimit;
+        }
+    }
+
+    private static <T> T getUninterruptibly(Future<T> future) throws ExecutionException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package compiler.Parser.AST;
 
-public class UnaryNode implements ASTNode {
+public class UnaryNode extends ExpressionNode {
     private final String operator;
     private final ASTNode operand;
 
@@ -17,7 +17,11 @@ public class UnaryNode implements ASTNode {
     }
     @Override
     public String print(String indent) {
-        return indent + "UnaryOperator, " + operator + "\n" +
-                operand.print(indent + "  ");
+        return ASTPrinter.toString(this, indent);
+    }
+
+    @Override
+    public <R, P> R accept(ASTVisitor<R, P> visitor, P arg) {
+        return visitor.visitUnary(this, arg);
     }
 }
\ No newline at end of file
@@ -17,17 +17,11 @@ public class WhileNode implements ASTNode {
 
     @Override
     public String print(String indent) {
-        StringBuilder sb = new StringBuilder();
-
-        sb.append(indent).append("WhileLoop\n");
-
-        sb.append(indent).append("  Condition\n");
-        sb.append(condition.print(indent + "    ")).append("\n");
-
-        sb.append(indent).append("  LoopBody\n");
-        sb.append(body.print(indent + "    "));
-
+        return ASTPrinter.toString(this, indent);
+    }
 
-        return sb.toString();
+    @Override
+    public <R, P> R accept(ASTVisitor<R, P> visitor, P arg) {
+        return visitor.visitWhile(this, arg);
     }
 }
\ No newline at end of file
@@ -0,0 +1,177 @@
+package compiler.Parser;
+
+import compiler.Lexer.TokenStream;
+import compiler.Lexer.TokenType;
+import compiler.Parser.AST.ASTNode;
+import compiler.Parser.AST.BlockNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps a program's AST up to date while its source is edited. Each edit goes
+ * through TokenStream.edit; then only the top-level declarations whose source
+ * span touches the edit are parsed again and spliced into the same BlockNode.
+ * Every other declaration keeps its node.
+ *
+ * Reparsing starts where the first touched declaration began and goes on
+ * until it reaches the first token of an untouched declaration. If an edit
+ * removes a '}', the reparsed function runs on into the next declaration, and
+ * that one is reparsed as well.
+ *
+ * If a reparse fails with a syntax error, the error is thrown. The tree then
+ * keeps its state from before the edit, and the next edit reparses the whole
+ * stream.
+ */
+public class IncrementalParser {
+    private final TokenStream tokens;
+    private final BlockNode program = new BlockNode();
+
+    // Source span of each top-level declaration: first token start, last token end
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int count;
+
+    private boolean stale;
+    private int reparsed;
+
+    public IncrementalParser(TokenStream tokens) {
+        this.tokens = tokens;
+        reparseAll();
+    }
+
+    public BlockNode getAST() {
+        return program;
+    }
+
+    public TokenStream getTokens() {
+        return tokens;
+    }
+
+    // Number of top-level declarations parsed by the last edit (all of them after a full parse)
+    public int getReparsedCount() {
+        return reparsed;
+    }
+
+    /**
+     * Replaces removed characters at offset with inserted, in both the token
+     * stream and the tree.
+     */
+    public void edit(int offset, int removed, String inserted) {
+        tokens.edit(offset, removed, inserted);
+        if (stale) {
+            reparseAll();
+            return;
+        }
+        int delta = inserted.length() - removed;
+
+        // Declarations [first, last) touch the edit; touching an end counts ("}" + "x")
+        int first = firstEndingAtOrAfter(offset);
+        int last = first;
+        while (last < count && starts[last] <= offset + removed) {
+            last++;
+        }
+
+        // The text before the first touched declaration is unchanged
+        int position = tokenAt(first == 0 ? 0 : ends[first - 1]);
+        Parser parser = new Parser(tokens, position);
+        List<ASTNode> nodes = new ArrayList<>();
+        List<int[]> spans = new ArrayList<>();
+        try {
+            while (true) {
+                // Skip the old declarations the reparse has run past
+                while (last < count && starts[last] + delta < tokens.start(position)) {
+                    last++;
+                }
+                if (tokens.type(position) == TokenType.EOF
+                        || (last < count && starts[last] + delta == tokens.start(position))) {
+                    break;
+                }
+                nodes.add(parser.parseDeclaration());
+                int end = parser.position();
+                spans.add(new int[] {tokens.start(position), tokens.start(end - 1) + tokens.length(end - 1)});
+                position = end;
+            }
+        } catch (RuntimeException e) {
+            stale = true;
+            throw e;
+        }
+
+        splice(first, last, nodes, spans, delta);
+        reparsed = nodes.size();
+    }
+
+    private void reparseAll() {
+        stale = true;
+        Parser parser = new Parser(tokens, 0);
+        List<ASTNode> nodes = new ArrayList<>();
+        List<int[]> spans = new ArrayList<>();
+        int position = 0;
+        while (tokens.type(position) != TokenType.EOF) {
+            nodes.add(parser.parseDeclaration());
+            int end = parser.position();
+            spans.add(new int[] {tokens.start(position), tokens.start(end - 1) + tokens.length(end - 1)});
+            position = end;
+        }
+
+        splice(0, count, nodes, spans, 0);
+        stale = false;
+        reparsed = count;
+    }
+
+    // Replaces declarations [from, to) and shifts the spans after them by delta
+    private void splice(int from, int to, List<ASTNode> nodes, List<int[]> spans, int delta) {
+        List<ASTNode> statements = program.getStatements();
+        statements.subList(from, to).clear();
+        statements.addAll(from, nodes);
+
+        int added = spans.size();
+        int newCount = count - (to - from) + added;
+        if (newCount > starts.length) {
+            starts = Arrays.copyOf(starts, Math.max(newCount, starts.length * 2));
+            ends = Arrays.copyOf(ends, starts.length);
+        }
+        System.arraycopy(starts, to, starts, from + added, count - to);
+        System.arraycopy(ends, to, ends, from + added, count - to);
+        for (int i = 0; i < added; i++) {
+            starts[from + i] = spans.get(i)[0];
+            ends[from + i] = spans.get(i)[1];
+        }
+        for (int i = from + added; i < newCount; i++) {
+            starts[i] += delta;
+            ends[i] += delta;
+        }
+        count = newCount;
+    }
+
+    // First declaration that ends at or after offset, count if none does
+    private int firstEndingAtOrAfter(int offset) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ends[middle] < offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // First token starting at or after offset; EOF if there is none
+    private int tokenAt(int offset) {
+        int low = 0;
+        int high = tokens.size() - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (tokens.start(middle) < offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
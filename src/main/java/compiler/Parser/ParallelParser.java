@@ -0,0 +1,164 @@
+package compiler.Parser;
+
+import compiler.Lexer.InternTable;
+import compiler.Lexer.TokenStream;
+import compiler.Lexer.TokenType;
+import compiler.Parser.AST.ASTNode;
+import compiler.Parser.AST.BlockNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Parses a large TokenStream on several threads. A skimming pass first finds
+ * where each top-level declaration starts by matching braces and parentheses:
+ * a declaration ends at a ';' outside of both, or at the '}' that closes its
+ * outermost block (unless an else follows). Runs of whole declarations are
+ * then parsed as chunks on the pool, and the nodes are put into the root
+ * BlockNode in source order.
+ *
+ * Each chunk interns its token values into a table of its own. If a chunk
+ * does not end exactly where the skim said it would, the source is not what
+ * the skim assumed (a stray brace, say). Everything from that chunk on is
+ * then parsed again sequentially, so the result and the first syntax error
+ * thrown are the same as with Parser.
+ */
+public class ParallelParser {
+    // Below this many tokens per chunk splitting costs more than it saves
+    public static final int MIN_CHUNK_TOKENS = 16 * 1024;
+
+    private final ForkJoinPool pool;
+
+    public ParallelParser(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public ParallelParser() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public BlockNode parse(TokenStream tokens) {
+        int[] bounds = split(tokens);
+        if (bounds.length == 2) {
+            return (BlockNode) new Parser(tokens).getAST();
+        }
+
+        List<ForkJoinTask<Chunk>> tasks = new ArrayList<>();
+        for (int i = 0; i + 1 < bounds.length; i++) {
+            int start = bounds[i];
+            int end = bounds[i + 1];
+            tasks.add(pool.submit(() -> new Chunk(tokens, start, end)));
+        }
+
+        BlockNode program = new BlockNode();
+        for (int i = 0; i < tasks.size(); i++) {
+            Chunk chunk = tasks.get(i).join();
+            if (chunk.error == null && chunk.reached == chunk.end) {
+                program.getStatements().addAll(chunk.nodes);
+                continue;
+            }
+            // The skim was wrong from here on (or this chunk has the first syntax error)
+            for (int j = i + 1; j < tasks.size(); j++) {
+                tasks.get(j).cancel(false);
+            }
+            Parser parser = new Parser(tokens, chunk.start);
+            while (parser.position() < tokens.size() - 1) {
+                program.addStatement(parser.parseDeclaration());
+            }
+            break;
+        }
+        return program;
+    }
+
+    // Index of the first token of every top-level declaration, then the index of EOF
+    private static int[] skim(TokenStream tokens) {
+        int eof = tokens.size() - 1;
+        int[] starts = new int[64];
+        int count = 0;
+        int braces = 0;
+        int parens = 0;
+        int start = 0;
+        for (int i = 0; i < eof; i++) {
+            boolean ends = false;
+            switch (tokens.type(i)) {
+                case LBRACE -> braces++;
+                case RBRACE -> {
+                    braces--;
+                    ends = braces == 0 && parens == 0 && tokens.type(i + 1) != TokenType.ELSE;
+                }
+                case LPAREN -> parens++;
+                case RPAREN -> parens--;
+                case SEMICOLON -> ends = braces == 0 && parens == 0;
+                default -> {
+                }
+            }
+            if (ends) {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                }
+                starts[count++] = start;
+                start = i + 1;
+            }
+        }
+        // Whatever is left (a declaration missing its end) is parsed as one more
+        if (start < eof) {
+            starts = Arrays.copyOf(starts, count + 1);
+            starts[count++] = start;
+        }
+        int[] result = Arrays.copyOf(starts, count + 1);
+        result[count] = eof;
+        return result;
+    }
+
+    // Chunk boundaries, each at a declaration start: [0, b1, b2, ..., EOF index]
+    private int[] split(TokenStream tokens) {
+        // A single worker gains nothing from chunks (same as ParallelLexer)
+        int parallelism = pool.getParallelism();
+        int eof = tokens.size() - 1;
+        int count = parallelism == 1 ? 1 : Math.min(parallelism * 4, eof / MIN_CHUNK_TOKENS);
+        if (count <= 1) {
+            return new int[] {0, eof};
+        }
+
+        int[] declarations = skim(tokens);
+        int[] bounds = new int[count + 1];
+        int size = 1;
+        int next = 0;
+        for (int i = 1; i < count; i++) {
+            int target = (int) ((long) eof * i / count);
+            while (next < declarations.length - 1 && declarations[next] < target) {
+                next++;
+            }
+            if (declarations[next] > bounds[size - 1] && declarations[next] < eof) {
+                bounds[size++] = declarations[next];
+            }
+        }
+        bounds[size++] = eof;
+        return Arrays.copyOf(bounds, size);
+    }
+
+    private static class Chunk {
+        final int start;
+        final int end;
+        final List<ASTNode> nodes = new ArrayList<>();
+        int reached;
+        RuntimeException error;
+
+        Chunk(TokenStream tokens, int start, int end) {
+            this.start = start;
+            this.end = end;
+            Parser parser = new Parser(tokens, start, new InternTable());
+            try {
+                while (parser.position() < end) {
+                    nodes.add(parser.parseDeclaration());
+                }
+            } catch (RuntimeException e) {
+                error = e;
+            }
+            this.reached = parser.position();
+        }
+    }
+}
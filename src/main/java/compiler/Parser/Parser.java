@@ -1,32 +1,234 @@
 package compiler.Parser;
 
+import compiler.Diagnostics.Diagnostic;
+import compiler.Diagnostics.DiagnosticCollector;
+import compiler.Lexer.InternTable;
 import compiler.Lexer.Lexer;
 import compiler.Lexer.Symbol;
+import compiler.Lexer.TokenStream;
 import compiler.Lexer.TokenType;
 import compiler.Parser.AST.*;
 
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
 public class Parser {
+    // Exactly one of lexer/tokens is set.
     private final Lexer lexer;
-    private Symbol currentSymbol;
+    private final TokenStream tokens;
+    private final InternTable names;   // where token values are interned, with tokens
+    private Symbol currentSymbol;   // only used when pulling from a Lexer
+    private int tokenIndex;         // only used when reading a TokenStream
+    private TokenType currentType;
+    private int consumed;           // tokens advanced past, to tell whether recovery made progress
+
+    // When set, syntax errors are recorded here and parsing resumes at the next statement
+    private DiagnosticCollector diagnostics;
+
+    // When set, function bodies are skipped and only parsed once FunctionNode.getBody() is called
+    private boolean lazyBodies;
+
+    // Makes literals, identifiers, binary expressions and accesses; see NodeFactory
+    private NodeFactory nodes = NodeFactory.PLAIN;
+
+    // Counts nested blocks and expressions; past its threshold expressions are parsed
+    // iteratively and blocks on a larger stack, so depth is not limited by -Xss
+    private final StackGuard stack = new StackGuard();
 
     public Parser(Lexer lexer) {
         this.lexer = lexer;
+        this.tokens = null;
+        this.names = null;
         this.currentSymbol = lexer.getNextSymbol();
+        this.currentType = currentSymbol.getType();
+    }
+
+    // Parses an already lexed stream; token values are only built for the tokens that need one.
+    public Parser(TokenStream tokens) {
+        this(tokens, 0);
+    }
+
+    // Starts reading tokens at index instead of at the beginning (see IncrementalParser).
+    Parser(TokenStream tokens, int index) {
+        this(tokens, index, tokens.getInternTable());
+    }
+
+    // Interns token values into names, so parsers on several threads can share one stream
+    Parser(TokenStream tokens, int index, InternTable names) {
+        this.lexer = null;
+        this.tokens = tokens;
+        this.names = names;
+        this.tokenIndex = index;
+        this.currentType = tokens.type(index);
+    }
+
+    // Index of the current token; only meaningful when reading a TokenStream
+    int position() {
+        return tokenIndex;
+    }
+
+    // Parses the top-level declaration or statement at the current token
+    ASTNode parseDeclaration() {
+        return parseStatement();
+    }
+
+    /**
+     * Records every syntax error in diagnostics instead of throwing on the first
+     * one. Statements that fail to parse are left out of the tree; the rest of
+     * the program is still parsed. Lexical ERROR tokens are reported and skipped.
+     */
+    public void reportErrorsTo(DiagnosticCollector diagnostics) {
+        this.diagnostics = diagnostics;
+        skipLexicalErrors();
+    }
+
+    /**
+     * Makes the parser skip function bodies by brace matching and parse each one
+     * only when its FunctionNode.getBody() is first called. Signatures and
+     * collections are still parsed right away. Syntax errors inside a body are
+     * thrown by getBody(). Only works on a TokenStream, which the bodies are
+     * parsed from later.
+     */
+    public void setLazyFunctionBodies(boolean lazy) {
+        if (lazy && tokens == null) {
+            throw new RuntimeException("ParserError: lazy function bodies need a TokenStream");
+        }
+        this.lazyBodies = lazy;
+    }
+
+    /**
+     * Makes expression nodes through factory, e.g. NodeFactory.hashConsing()
+     * to share identical subexpressions.
+     */
+    public void setNodeFactory(NodeFactory factory) {
+        this.nodes = factory;
     }
 
     private void advance() {
-        currentSymbol = lexer.getNextSymbol();
+        step();
+        if (diagnostics != null) {
+            skipLexicalErrors();
+        }
+    }
+
+    private void step() {
+        consumed++;
+        if (tokens != null) {
+            if (currentType != TokenType.EOF) {
+                tokenIndex++;
+                currentType = tokens.type(tokenIndex);
+            }
+        } else {
+            currentSymbol = lexer.getNextSymbol();
+            currentType = currentSymbol.getType();
+        }
+    }
+
+    private void skipLexicalErrors() {
+        while (currentType == TokenType.ERROR) {
+            diagnostics.report(Diagnostic.Phase.LEXICAL, currentValue(), currentLine(), currentColumn());
+            step();
+        }
+    }
+
+    private String currentValue() {
+        return tokens != null ? tokens.value(tokenIndex, names) : currentSymbol.getValue();
+    }
+
+    private int currentLine() {
+        return tokens != null ? tokens.line(tokenIndex) : currentSymbol.getLine();
+    }
+
+    private int currentColumn() {
+        return tokens != null ? tokens.column(tokenIndex) : currentSymbol.getColumn();
     }
 
     private void match(TokenType type) {
-        if (currentSymbol.getType() == type) {
+        if (currentType == type) {
             advance();
         } else {
-            throw new RuntimeException("Syntax Error at line " + currentSymbol.getLine() +
-                    ": Expected " + type + " but found " + currentSymbol.getType());
+            throw syntaxError("Expected " + type + " but found " + currentType);
+        }
+    }
+
+    private SyntaxError syntaxError(String message) {
+        return new SyntaxError(message, currentLine(), currentColumn());
+    }
+
+    /**
+     * Parses one statement and hands it to sink. With a collector set, a syntax
+     * error is recorded instead and the parser skips ahead (panic mode).
+     * Returns false if the statement was dropped.
+     */
+    private boolean parseStatementInto(Consumer<ASTNode> sink) {
+        if (diagnostics == null) {
+            sink.accept(parseStatement());
+            return true;
+        }
+
+        int start = consumed;
+        try {
+            sink.accept(parseStatement());
+            return true;
+        } catch (SyntaxError e) {
+            diagnostics.report(Diagnostic.Phase.SYNTAX, e.detail, e.line, e.column);
+            if (diagnostics.isFull()) {
+                while (currentType != TokenType.EOF) {
+                    advance();
+                }
+                return false;
+            }
+            synchronize();
+            if (consumed == start) {
+                // Nothing could start here (e.g. a stray '}' at top level), skip the token
+                advance();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Skips to a point where a statement can start: just past a ';', at a '}'
+     * closing an enclosing block, or at def/coll/final. Blocks opened while
+     * skipping are skipped whole, so a broken if/while header does not end
+     * the enclosing block at the body's '}'.
+     */
+    private void synchronize() {
+        int depth = 0;
+        while (currentType != TokenType.EOF) {
+            switch (currentType) {
+                case SEMICOLON -> {
+                    advance();
+                    if (depth == 0) {
+                        return;
+                    }
+                }
+                case LBRACE -> {
+                    depth++;
+                    advance();
+                }
+                case RBRACE -> {
+                    if (depth == 0) {
+                        return;
+                    }
+                    depth--;
+                    advance();
+                    if (depth == 0 && currentType != TokenType.ELSE) {
+                        return;
+                    }
+                }
+                case DEF, COLL, FINAL -> {
+                    return;
+                }
+                default -> advance();
+            }
         }
     }
 
+    private static boolean startsDeclaration(TokenType type) {
+        return type == TokenType.DEF || type == TokenType.COLL || type == TokenType.FINAL;
+    }
+
     /**
      * Entry point for the parser.
      * Collects all statements,.
@@ -34,20 +236,36 @@ public class Parser {
     public ASTNode getAST() {
         BlockNode program = new BlockNode();
 
-        while (currentSymbol.getType() != TokenType.EOF) {
+        while (currentType != TokenType.EOF) {
             // We parse one statement at a time until the end of the file.
-            program.addStatement(parseStatement());
+            parseStatementInto(program::addStatement);
         }
 
         return program;
     }
 
+    /**
+     * Same program as getAST(), in the compact FlatAST form. Each top-level
+     * declaration is flattened as soon as it is parsed, so the object nodes of
+     * only one declaration exist at any time.
+     */
+    public FlatAST getFlatAST() {
+        FlatAST program = new FlatAST();
+
+        while (currentType != TokenType.EOF) {
+            parseStatementInto(program::append);
+        }
+        program.trimToSize();
+
+        return program;
+    }
+
     /**
      * Decides what kind of statement to parse.
      */
     private ASTNode parseStatement() {
         // Check if the current token looks like a type declaration (INT, FLOAT, etc.)
-        TokenType type = currentSymbol.getType();
+        TokenType type = currentType;
 
         if (type == TokenType.FINAL) {
             return parseFinalDeclaration();
@@ -92,10 +310,10 @@ public class Parser {
         // Identifier can be either reassignment: x = 10;
 // or function call: helper();
         if (type == TokenType.IDENTIFIER) {
-            String name = currentSymbol.getValue();
+            String name = currentValue();
             advance();
 
-            if (currentSymbol.getType() == TokenType.LPAREN) {
+            if (currentType == TokenType.LPAREN) {
                 ASTNode call = parseFunctionCallAfterName(name);
                 match(TokenType.SEMICOLON);
                 return call;
@@ -104,20 +322,20 @@ public class Parser {
             return parseAssignmentAfterName(name);
         }
 
-        throw new RuntimeException("Syntax Error: Unexpected token " + type + " at line " + currentSymbol.getLine());
+        throw syntaxError("Unexpected token " + type);
     }
 
     private ASTNode parseInbuilt() {
-        String name = currentSymbol.getValue();
+        String name = currentValue();
         advance();
 
         match(TokenType.LPAREN);
 
         java.util.List<ASTNode> args = new java.util.ArrayList<>();
 
-        if (currentSymbol.getType() != TokenType.RPAREN) {
+        if (currentType != TokenType.RPAREN) {
             args.add(parseExpression());
-            while (currentSymbol.getType() == TokenType.COMMA) {
+            while (currentType == TokenType.COMMA) {
                 advance();
                 args.add(parseExpression());
             }
@@ -139,7 +357,7 @@ public class Parser {
     private ASTNode parseReturn() {
         match(TokenType.RETURN);
 
-        if (currentSymbol.getType() == TokenType.SEMICOLON) {
+        if (currentType == TokenType.SEMICOLON) {
             match(TokenType.SEMICOLON);
             return new ReturnNode(null);
         }
@@ -156,21 +374,21 @@ public class Parser {
         String returnType = null;
         String name;
 
-        if (currentSymbol.getType() == TokenType.MAIN) {
-            name = currentSymbol.getValue();
+        if (currentType == TokenType.MAIN) {
+            name = currentValue();
             advance();
-        } else if (currentSymbol.getType() == TokenType.IDENTIFIER) {
-            name = currentSymbol.getValue();
+        } else if (currentType == TokenType.IDENTIFIER) {
+            name = currentValue();
             advance();
         } else {
             returnType = parseTypeString();
 
-            name = currentSymbol.getValue();
-            if (currentSymbol.getType() == TokenType.IDENTIFIER ||
-                    currentSymbol.getType() == TokenType.MAIN) {
+            name = currentValue();
+            if (currentType == TokenType.IDENTIFIER ||
+                    currentType == TokenType.MAIN) {
                 advance();
             } else {
-                throw new RuntimeException("Syntax Error: Expected function name after return type.");
+                throw syntaxError("Expected function name after return type");
             }
         }
 
@@ -178,37 +396,83 @@ public class Parser {
 
         java.util.List<ASTNode> args = new java.util.ArrayList<>();
 
-        if (currentSymbol.getType() != TokenType.RPAREN) {
-            args.add(parseArguments());
-
-            while (currentSymbol.getType() == TokenType.COMMA) {
-                advance();
+        // The parameters are in scope in the body only
+        nodes.enterScope();
+        try {
+            if (currentType != TokenType.RPAREN) {
                 args.add(parseArguments());
+
+                while (currentType == TokenType.COMMA) {
+                    advance();
+                    args.add(parseArguments());
+                }
             }
-        }
 
-        match(TokenType.RPAREN);
+            match(TokenType.RPAREN);
 
-        BlockNode body = parseBlock();
+            if (lazyBodies) {
+                int bodyStart = tokenIndex;
+                skipBlock();
+                TokenStream source = tokens;
+                InternTable table = names;
+                NodeFactory factory = nodes;
+                return new FunctionNode(returnType, name, args, () -> {
+                    Parser body = new Parser(source, bodyStart, table);
+                    body.setNodeFactory(factory);
+                    factory.enterScope();
+                    try {
+                        for (ASTNode arg : args) {
+                            factory.declare(((AssignmentNode) arg).getIdentifier());
+                        }
+                        return body.parseBlock();
+                    } finally {
+                        factory.exitScope();
+                    }
+                });
+            }
+
+            BlockNode body = parseBlock();
+
+            return new FunctionNode(returnType, name, args, body);
+        } finally {
+            nodes.exitScope();
+        }
+    }
 
-        return new FunctionNode(returnType, name, args, body);
+    // Moves past a brace-delimited block without building it
+    private void skipBlock() {
+        if (currentType != TokenType.LBRACE) {
+            throw syntaxError("Expected LBRACE but found " + currentType);
+        }
+        int depth = 0;
+        do {
+            if (currentType == TokenType.LBRACE) {
+                depth++;
+            } else if (currentType == TokenType.RBRACE) {
+                depth--;
+            } else if (currentType == TokenType.EOF) {
+                throw syntaxError("Expected RBRACE but found EOF");
+            }
+            advance();
+        } while (depth > 0);
     }
 
     private ASTNode parseArguments() {
         String type = parseTypeString();
-        if (currentSymbol.getType() == TokenType.LBRACKET) {
+        if (currentType == TokenType.LBRACKET) {
             match(TokenType.LBRACKET);
             match(TokenType.RBRACKET);
             type += "[]";
         }
-        String id = currentSymbol.getValue();
+        String id = currentValue();
         match(TokenType.IDENTIFIER);
+        nodes.declare(id);
         return new AssignmentNode(type, id, null);
     }
 
     private ASTNode parseCollectionDeclaration() {
         match(TokenType.COLL);
-        String name = currentSymbol.getValue();
+        String name = currentValue();
         match(TokenType.COLLECTION_NAME);
         BlockNode members = parseBlock();
         return new CollectionNode(name, members);
@@ -217,16 +481,22 @@ public class Parser {
     private ASTNode parseForLoop() {
         match(TokenType.FOR);
         match(TokenType.LPAREN);
-        ASTNode init = parseAssignment();
-        ASTNode rangeStart = parseExpression();
-        match(TokenType.ARROW);
-        ASTNode rangeEnd = parseExpression();
-        match(TokenType.SEMICOLON);
-        ASTNode update = parseExpression();
-        match(TokenType.RPAREN);
-        BlockNode body = parseBlock();
+        // A loop variable declared here is in scope until the end of the body
+        nodes.enterScope();
+        try {
+            ASTNode init = parseAssignment();
+            ASTNode rangeStart = parseExpression();
+            match(TokenType.ARROW);
+            ASTNode rangeEnd = parseExpression();
+            match(TokenType.SEMICOLON);
+            ASTNode update = parseExpression();
+            match(TokenType.RPAREN);
+            BlockNode body = parseBlock();
 
-        return new ForNode(init, rangeStart, rangeEnd, update, body);
+            return new ForNode(init, rangeStart, rangeEnd, update, body);
+        } finally {
+            nodes.exitScope();
+        }
     }
 
     private ASTNode parseWhileLoop() {
@@ -245,7 +515,7 @@ public class Parser {
         ASTNode condition = parseExpression();
         match(TokenType.RPAREN);
         BlockNode body = parseBlock();
-        if (currentSymbol.getType() == TokenType.ELSE) {
+        if (currentType == TokenType.ELSE) {
             advance();
             BlockNode elseBlock = parseBlock();
             return new IfNode(condition, body, elseBlock);
@@ -254,27 +524,49 @@ public class Parser {
     }
 
     private BlockNode parseBlock() {
+        if (!stack.enter()) {
+            return stack.deeper(this::parseBlock);
+        }
+        nodes.enterScope();
+        try {
+            return parseBlockContents();
+        } finally {
+            nodes.exitScope();
+            stack.exit();
+        }
+    }
+
+    private BlockNode parseBlockContents() {
         match(TokenType.LBRACE);
         BlockNode block = new BlockNode();
 
-        while (currentSymbol.getType() != TokenType.RBRACE &&
-                currentSymbol.getType() != TokenType.EOF) {
-            block.addStatement(parseStatement());
+        while (currentType != TokenType.RBRACE &&
+                currentType != TokenType.EOF) {
+            // Recovery stopping at def/coll/final means this block was never closed
+            if (!parseStatementInto(block::addStatement) && startsDeclaration(currentType)) {
+                break;
+            }
         }
 
+        if (currentType != TokenType.RBRACE && diagnostics != null) {
+            // Keep the partial block; the missing '}' is reported once
+            SyntaxError e = syntaxError("Expected RBRACE but found " + currentType);
+            diagnostics.report(Diagnostic.Phase.SYNTAX, e.detail, e.line, e.column);
+            return block;
+        }
         match(TokenType.RBRACE);
         return block;
     }
 
     private String parseTypeString() {
-        TokenType type = currentSymbol.getType();
-        String typeName = currentSymbol.getValue();
+        TokenType type = currentType;
+        String typeName = currentValue();
         if (type == TokenType.INT_TYPE || type == TokenType.FLOAT_TYPE ||
                 type == TokenType.STRING_TYPE || type == TokenType.BOOL_TYPE ||
                 type == TokenType.COLLECTION_NAME) {
 
             advance();
-            if (currentSymbol.getType() == TokenType.LBRACKET) {
+            if (currentType == TokenType.LBRACKET) {
                 match(TokenType.LBRACKET);
                 match(TokenType.RBRACKET);
                 typeName += "[]";
@@ -285,16 +577,20 @@ public class Parser {
 
     private ASTNode parseAssignment() {
         String typeStr;
-        if (currentSymbol.getType() != TokenType.IDENTIFIER) {
+        if (currentType != TokenType.IDENTIFIER) {
             typeStr = parseTypeString();
         } else {
             typeStr = null;
         }
 
-        String id = currentSymbol.getValue();
+        String id = currentValue();
         match(TokenType.IDENTIFIER);
+        // Declared before the right-hand side, which the analyzer checks with the new variable in scope
+        if (typeStr != null) {
+            nodes.declare(id);
+        }
 
-        if (currentSymbol.getType() == TokenType.SEMICOLON) {
+        if (currentType == TokenType.SEMICOLON) {
             match(TokenType.SEMICOLON);
             return new AssignmentNode(typeStr, id);
         } else {
@@ -313,10 +609,10 @@ public class Parser {
 
         java.util.List<ASTNode> args = new java.util.ArrayList<>();
 
-        if (currentSymbol.getType() != TokenType.RPAREN) {
+        if (currentType != TokenType.RPAREN) {
             args.add(parseExpression());
 
-            while (currentSymbol.getType() == TokenType.COMMA) {
+            while (currentType == TokenType.COMMA) {
                 advance();
                 args.add(parseExpression());
             }
@@ -328,23 +624,23 @@ public class Parser {
     }
 
     private ASTNode parseAssignmentAfterName(String id) {
-        ASTNode target = new IdentifierNode(id);
+        ASTNode target = nodes.identifier(id);
 
-        while (currentSymbol.getType() == TokenType.DOT || currentSymbol.getType() == TokenType.LBRACKET) {
-            if (currentSymbol.getType() == TokenType.DOT) {
+        while (currentType == TokenType.DOT || currentType == TokenType.LBRACKET) {
+            if (currentType == TokenType.DOT) {
                 advance();
-                String fieldName = currentSymbol.getValue();
+                String fieldName = currentValue();
                 match(TokenType.IDENTIFIER);
-                target = new MemberAccessNode(target, fieldName);
+                target = nodes.memberAccess(target, fieldName);
             } else {
                 advance();
                 ASTNode index = parseExpression();
                 match(TokenType.RBRACKET);
-                target = new IndexAccessNode(target, index);
+                target = nodes.indexAccess(target, index);
             }
         }
 
-        if (currentSymbol.getType() == TokenType.SEMICOLON) {
+        if (currentType == TokenType.SEMICOLON) {
             match(TokenType.SEMICOLON);
             return new AssignmentNode(null, id);
         }
@@ -362,78 +658,71 @@ public class Parser {
         }
     }
 
-    public ASTNode parseExpression() {
-        return parseLogicalOR();
-    }
-
-    private ASTNode parseLogicalOR() {
-        ASTNode node = parseLogicalAND();
-
-        while (currentSymbol.getType() == TokenType.OR) {
-            String op = currentSymbol.getValue();
-            advance();
-            ASTNode right = parseLogicalAND();
-            node = new BinaryExpressionNode(op, node, right, "Logical");
+    // Binary operator precedence, loosest first; 0 means "not a binary operator".
+    // && binds tighter than ||, and every level is left-associative.
+    private static final int OR_LEVEL = 1;
+    private static final int AND_LEVEL = 2;
+    private static final int RELATIONAL_LEVEL = 3;
+    private static final int ADDITIVE_LEVEL = 4;
+    private static final int MULTIPLICATIVE_LEVEL = 5;
+
+    private static final int[] PRECEDENCE = new int[TokenType.values().length];
+    private static final String[] OPERATOR_KIND = new String[TokenType.values().length];
+
+    static {
+        operator(TokenType.OR, OR_LEVEL, "Logical");
+        operator(TokenType.AND, AND_LEVEL, "Logical");
+        for (TokenType type : new TokenType[] {TokenType.EQUAL, TokenType.NOT_EQUAL, TokenType.LESS,
+                TokenType.LESS_EQUAL, TokenType.GREATER, TokenType.GREATER_EQUAL}) {
+            operator(type, RELATIONAL_LEVEL, "Relational");
         }
-        return node;
+        operator(TokenType.PLUS, ADDITIVE_LEVEL, "Arithmetic");
+        operator(TokenType.MINUS, ADDITIVE_LEVEL, "Arithmetic");
+        operator(TokenType.STAR, MULTIPLICATIVE_LEVEL, "Arithmetic");
+        operator(TokenType.SLASH, MULTIPLICATIVE_LEVEL, "Arithmetic");
+        operator(TokenType.PERCENT, MULTIPLICATIVE_LEVEL, "Arithmetic");
     }
 
-    private ASTNode parseLogicalAND() {
-        ASTNode node = parseRelational();
-
-        while (currentSymbol.getType() == TokenType.AND) {
-            String op = currentSymbol.getValue();
-            advance();
-            ASTNode right = parseRelational();
-            node = new BinaryExpressionNode(op, node, right, "Logical");
-        }
-        return node;
+    private static void operator(TokenType type, int precedence, String kind) {
+        PRECEDENCE[type.ordinal()] = precedence;
+        OPERATOR_KIND[type.ordinal()] = kind;
     }
 
-    private ASTNode parseRelational() {
-        ASTNode node = parseAddition();
-
-        while (currentSymbol.getType() == TokenType.EQUAL ||
-                currentSymbol.getType() == TokenType.NOT_EQUAL ||
-                currentSymbol.getType() == TokenType.LESS ||
-                currentSymbol.getType() == TokenType.LESS_EQUAL ||
-                currentSymbol.getType() == TokenType.GREATER ||
-                currentSymbol.getType() == TokenType.GREATER_EQUAL) {
-            String op = currentSymbol.getValue();
-            advance();
-            ASTNode right = parseAddition();
-            node = new BinaryExpressionNode(op, node, right, "Relational");
+    public ASTNode parseExpression() {
+        if (!stack.enter()) {
+            return parseExpressionIteratively();
         }
-        return node;
-    }
-
-    private ASTNode parseAddition() {
-        if (currentSymbol.getType() == TokenType.MINUS) {
-            advance();
-            return new UnaryNode("-", parseMultiplication());
+        try {
+            return parseBinary(OR_LEVEL);
+        } finally {
+            stack.exit();
         }
+    }
 
-        ASTNode node = parseMultiplication();
-
-        while (currentSymbol.getType() == TokenType.PLUS ||
-                currentSymbol.getType() == TokenType.MINUS) {
-            String op = currentSymbol.getValue();
+    /**
+     * Precedence climbing: parses an operand, then keeps folding in operators
+     * that bind at least as tightly as minPrecedence. The right operand only
+     * takes operators of a strictly higher level, which makes each level
+     * left-associative.
+     */
+    private ASTNode parseBinary(int minPrecedence) {
+        ASTNode node;
+        if (currentType == TokenType.MINUS && minPrecedence <= ADDITIVE_LEVEL) {
+            // Unary minus sits on the +/- level: -a * b is -(a * b)
             advance();
-            node = new BinaryExpressionNode(op, node, parseMultiplication(), "Arithmetic");
+            node = new UnaryNode("-", parseBinary(MULTIPLICATIVE_LEVEL));
+        } else {
+            node = parseAccess();
         }
-        return node;
-    }
 
-    private ASTNode parseMultiplication() {
-        ASTNode node = parseAccess();
-
-        while (currentSymbol.getType() == TokenType.STAR ||
-                currentSymbol.getType() == TokenType.SLASH ||
-                currentSymbol.getType() == TokenType.PERCENT) {
-            String op = currentSymbol.getValue();
+        int precedence = PRECEDENCE[currentType.ordinal()];
+        while (precedence >= minPrecedence && precedence != 0) {
+            String kind = OPERATOR_KIND[currentType.ordinal()];
+            String op = currentValue();
             advance();
-            ASTNode right = parseAccess();
-            node = new BinaryExpressionNode(op, node, right, "Arithmetic");
+            ASTNode right = parseBinary(precedence + 1);
+            node = nodes.binary(op, node, right, kind);
+            precedence = PRECEDENCE[currentType.ordinal()];
         }
         return node;
     }
@@ -441,70 +730,70 @@ public class Parser {
     private ASTNode parseAccess() {
         ASTNode node = parsePrimary();
 
-        while (currentSymbol.getType() == TokenType.DOT || currentSymbol.getType() == TokenType.LBRACKET) {
-            if (currentSymbol.getType() == TokenType.DOT) {
+        while (currentType == TokenType.DOT || currentType == TokenType.LBRACKET) {
+            if (currentType == TokenType.DOT) {
                 advance();
-                String member = currentSymbol.getValue();
+                String member = currentValue();
                 match(TokenType.IDENTIFIER);
-                node = new MemberAccessNode(node, member);
-            } else if (currentSymbol.getType() == TokenType.LBRACKET) {
+                node = nodes.memberAccess(node, member);
+            } else if (currentType == TokenType.LBRACKET) {
                 advance();
                 ASTNode index = parseExpression();
                 match(TokenType.RBRACKET);
-                node = new IndexAccessNode(node, index);
+                node = nodes.indexAccess(node, index);
             }
         }
         return node;
     }
 
     private ASTNode parsePrimary() {
-        if (isInbuiltFunction(currentSymbol.getType())) {
+        if (isInbuiltFunction(currentType)) {
             return parseInbuilt();
         }
-        if (currentSymbol.getType() == TokenType.INTEGER_LITERAL) {
-            ASTNode node = new LiteralNode(currentSymbol.getValue(), DataType.INT);
+        if (currentType == TokenType.INTEGER_LITERAL) {
+            ASTNode node = nodes.literal(currentValue(), DataType.INT);
             advance();
             return node;
-        } else if (currentSymbol.getType() == TokenType.STRING_LITERAL) {
-            ASTNode node = new LiteralNode(currentSymbol.getValue(), DataType.STRING);
+        } else if (currentType == TokenType.STRING_LITERAL) {
+            ASTNode node = nodes.literal(currentValue(), DataType.STRING);
             advance();
             return node;
-        } else if (currentSymbol.getType() == TokenType.FLOAT_LITERAL) {
-            ASTNode node = new LiteralNode(currentSymbol.getValue(), DataType.FLOAT);
+        } else if (currentType == TokenType.FLOAT_LITERAL) {
+            ASTNode node = nodes.literal(currentValue(), DataType.FLOAT);
             advance();
             return node;
-        } else if (currentSymbol.getType() == TokenType.TRUE ||
-            currentSymbol.getType() == TokenType.FALSE) {
-            ASTNode node = new LiteralNode(currentSymbol.getValue(), DataType.BOOL);
+        } else if (currentType == TokenType.TRUE ||
+            currentType == TokenType.FALSE) {
+            ASTNode node = nodes.literal(currentValue(), DataType.BOOL);
             advance();
             return node;
-        } else if (currentSymbol.getType() == TokenType.COLLECTION_NAME) {
-            String collection = currentSymbol.getValue();
+        } else if (currentType == TokenType.COLLECTION_NAME) {
+            String collection = currentValue();
             advance();
             match(TokenType.LPAREN);
 
             java.util.List<ASTNode> args = new java.util.ArrayList<>();
-            if (currentSymbol.getType() != TokenType.RPAREN) {
+            if (currentType != TokenType.RPAREN) {
                 args.add(parseExpression());
-                while (currentSymbol.getType() == TokenType.COMMA) {
+                while (currentType == TokenType.COMMA) {
                     advance();
                     args.add(parseExpression());
                 }
             }
             match(TokenType.RPAREN);
             return new ConstructorCallNode(collection, args);
-        } else if (currentSymbol.getType() == TokenType.IDENTIFIER) {
-            String name = currentSymbol.getValue();
+        } else if (currentType == TokenType.IDENTIFIER) {
+            String name = currentValue();
             advance();
 
             ASTNode node;
 
-            if (currentSymbol.getType() == TokenType.LPAREN) {
+            if (currentType == TokenType.LPAREN) {
                 advance();
                 java.util.List<ASTNode> args = new java.util.ArrayList<>();
-                if (currentSymbol.getType() != TokenType.RPAREN) {
+                if (currentType != TokenType.RPAREN) {
                     args.add(parseExpression());
-                    while (currentSymbol.getType() == TokenType.COMMA) {
+                    while (currentType == TokenType.COMMA) {
                         advance();
                         args.add(parseExpression());
                     }
@@ -514,25 +803,214 @@ public class Parser {
                 return node;
             }
 
-            node = new IdentifierNode(name);
+            node = nodes.identifier(name);
             return node;
-        } else if (currentSymbol.getType() == TokenType.INT_TYPE || currentSymbol.getType() == TokenType.FLOAT_TYPE) {
-            String type = currentSymbol.getValue();
+        } else if (currentType == TokenType.INT_TYPE || currentType == TokenType.FLOAT_TYPE) {
+            String type = currentValue();
             advance();
-            if (currentSymbol.getType() == TokenType.ARRAY_KEYWORD) {
+            if (currentType == TokenType.ARRAY_KEYWORD) {
                 advance();
                 match(TokenType.LBRACKET);
                 ASTNode size = parseExpression();
                 match(TokenType.RBRACKET);
                 return new ArrayInitNode(type, size);
             }
-        } else if (currentSymbol.getType() == TokenType.LPAREN) {
+        } else if (currentType == TokenType.LPAREN) {
             match(TokenType.LPAREN);
             ASTNode node = parseExpression();
             match(TokenType.RPAREN);
             return node;
         }
-        throw new RuntimeException("Syntax Error: Unexpected symbol " + currentSymbol.getType() + " at line " + currentSymbol.getLine());
+        throw syntaxError("Unexpected symbol " + currentType);
+    }
+
+    // What a subexpression that parseExpressionIteratively is parsing will be folded into
+    private static final class Pending {
+        enum Kind { BINARY, NEGATE, ACCESS, GROUP, CALL, CONSTRUCTOR, ARRAY_SIZE }
+
+        final Kind kind;
+        // BINARY: the loosest operator level it folds in
+        final int precedence;
+        // CALL, CONSTRUCTOR: the name and the arguments so far; ARRAY_SIZE: the element type
+        final String name;
+        final java.util.List<ASTNode> args;
+        // BINARY: the left operand, once operator is waiting for its right one;
+        // ACCESS: the node being indexed, once its index is being parsed
+        ASTNode left;
+        String operator;
+        String operatorKind;
+
+        Pending(Kind kind, int precedence, String name, java.util.List<ASTNode> args) {
+            this.kind = kind;
+            this.precedence = precedence;
+            this.name = name;
+            this.args = args;
+        }
+
+        Pending(Kind kind) {
+            this(kind, 0, null, null);
+        }
+    }
+
+    /**
+     * parseBinary(OR_LEVEL) with an explicit stack, for expressions nested
+     * past the guard's threshold. Where the recursive parser would call
+     * itself (an operand, a parenthesized expression, an index, an argument)
+     * this pushes what the result will be folded into and starts on the
+     * subexpression; each finished node is handed down the stack until an
+     * entry needs another subexpression. Accepts and builds exactly what
+     * parseBinary, parseAccess and parsePrimary do.
+     */
+    private ASTNode parseExpressionIteratively() {
+        ArrayDeque<Pending> pending = new ArrayDeque<>();
+        int level = OR_LEVEL;
+        while (true) {
+            // Start of parseBinary(level)
+            pending.push(new Pending(Pending.Kind.BINARY, level, null, null));
+            if (currentType == TokenType.MINUS && level <= ADDITIVE_LEVEL) {
+                advance();
+                pending.push(new Pending(Pending.Kind.NEGATE));
+                level = MULTIPLICATIVE_LEVEL;
+                continue;
+            }
+            pending.push(new Pending(Pending.Kind.ACCESS));
+            ASTNode node = startPrimary(pending);
+            if (node == null) {
+                // A grouping, argument list or array size was opened
+                level = OR_LEVEL;
+                continue;
+            }
+
+            // Hands node down until an entry starts another subexpression
+            while (true) {
+                Pending top = pending.peek();
+                if (top.kind == Pending.Kind.BINARY) {
+                    if (top.operator != null) {
+                        node = nodes.binary(top.operator, top.left, node, top.operatorKind);
+                        top.operator = null;
+                    }
+                    int precedence = PRECEDENCE[currentType.ordinal()];
+                    if (precedence >= top.precedence && precedence != 0) {
+                        top.left = node;
+                        top.operatorKind = OPERATOR_KIND[currentType.ordinal()];
+                        top.operator = currentValue();
+                        advance();
+                        level = precedence + 1;
+                        break;
+                    }
+                    pending.pop();
+                    if (pending.isEmpty()) {
+                        return node;
+                    }
+                } else if (top.kind == Pending.Kind.ACCESS) {
+                    if (top.left != null) {
+                        match(TokenType.RBRACKET);
+                        node = nodes.indexAccess(top.left, node);
+                        top.left = null;
+                    }
+                    while (currentType == TokenType.DOT) {
+                        advance();
+                        String member = currentValue();
+                        match(TokenType.IDENTIFIER);
+                        node = nodes.memberAccess(node, member);
+                    }
+                    if (currentType == TokenType.LBRACKET) {
+                        advance();
+                        top.left = node;
+                        level = OR_LEVEL;
+                        break;
+                    }
+                    pending.pop();
+                } else if (top.kind == Pending.Kind.CALL || top.kind == Pending.Kind.CONSTRUCTOR) {
+                    top.args.add(node);
+                    if (currentType == TokenType.COMMA) {
+                        advance();
+                        level = OR_LEVEL;
+                        break;
+                    }
+                    match(TokenType.RPAREN);
+                    pending.pop();
+                    node = top.kind == Pending.Kind.CALL ? new FunctionCallNode(top.name, top.args)
+                            : new ConstructorCallNode(top.name, top.args);
+                } else if (top.kind == Pending.Kind.ARRAY_SIZE) {
+                    match(TokenType.RBRACKET);
+                    pending.pop();
+                    node = new ArrayInitNode(top.name, node);
+                } else if (top.kind == Pending.Kind.GROUP) {
+                    match(TokenType.RPAREN);
+                    pending.pop();
+                } else {
+                    pending.pop();
+                    node = new UnaryNode("-", node);
+                }
+            }
+        }
+    }
+
+    // parsePrimary up to its first subexpression: the node, or null once an entry waiting for one is pushed
+    private ASTNode startPrimary(ArrayDeque<Pending> pending) {
+        if (isInbuiltFunction(currentType)) {
+            String name = currentValue();
+            advance();
+            match(TokenType.LPAREN);
+            return startArguments(pending, Pending.Kind.CALL, name);
+        }
+        switch (currentType) {
+            case INTEGER_LITERAL, STRING_LITERAL, FLOAT_LITERAL, TRUE, FALSE -> {
+                DataType type = switch (currentType) {
+                    case INTEGER_LITERAL -> DataType.INT;
+                    case STRING_LITERAL -> DataType.STRING;
+                    case FLOAT_LITERAL -> DataType.FLOAT;
+                    default -> DataType.BOOL;
+                };
+                ASTNode node = nodes.literal(currentValue(), type);
+                advance();
+                return node;
+            }
+            case COLLECTION_NAME -> {
+                String collection = currentValue();
+                advance();
+                match(TokenType.LPAREN);
+                return startArguments(pending, Pending.Kind.CONSTRUCTOR, collection);
+            }
+            case IDENTIFIER -> {
+                String name = currentValue();
+                advance();
+                if (currentType == TokenType.LPAREN) {
+                    advance();
+                    return startArguments(pending, Pending.Kind.CALL, name);
+                }
+                return nodes.identifier(name);
+            }
+            case INT_TYPE, FLOAT_TYPE -> {
+                String type = currentValue();
+                advance();
+                if (currentType == TokenType.ARRAY_KEYWORD) {
+                    advance();
+                    match(TokenType.LBRACKET);
+                    pending.push(new Pending(Pending.Kind.ARRAY_SIZE, 0, type, null));
+                    return null;
+                }
+            }
+            case LPAREN -> {
+                match(TokenType.LPAREN);
+                pending.push(new Pending(Pending.Kind.GROUP));
+                return null;
+            }
+            default -> {
+            }
+        }
+        throw syntaxError("Unexpected symbol " + currentType);
+    }
+
+    private ASTNode startArguments(ArrayDeque<Pending> pending, Pending.Kind kind, String name) {
+        java.util.List<ASTNode> args = new java.util.ArrayList<>();
+        if (currentType != TokenType.RPAREN) {
+            pending.push(new Pending(kind, 0, name, args));
+            return null;
+        }
+        match(TokenType.RPAREN);
+        return kind == Pending.Kind.CALL ? new FunctionCallNode(name, args) : new ConstructorCallNode(name, args);
     }
 
     private boolean isInbuiltFunction(TokenType type) {
@@ -545,4 +1023,36 @@ public class Parser {
                 type == TokenType.NOT || type == TokenType.MIN || type == TokenType.MAX ||
                 type == TokenType.ABS || type == TokenType.POW || type == TokenType.SORT;
     }
+
+    /**
+     * A syntax error; the message keeps the "Syntax Error at line N: ..." form.
+     * Public because a lazily parsed function body throws it from getBody().
+     */
+    public static class SyntaxError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final String detail;
+        private final int line;
+        private final int column;
+
+        SyntaxError(String detail, int line, int column) {
+            super("Syntax Error at line " + line + ": " + detail);
+            this.detail = detail;
+            this.line = line;
+            this.column = column;
+        }
+
+        // The message without its "Syntax Error at line N: " prefix
+        public String getDetail() {
+            return detail;
+        }
+
+        public int getLine() {
+            return line;
+        }
+
+        public int getColumn() {
+            return column;
+        }
+    }
 }
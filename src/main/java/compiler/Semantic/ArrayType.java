@@ -0,0 +1,22 @@
+package compiler.Semantic;
+
+/**
+ * An array of some element type; get it through Type.arrayOf(), never new.
+ */
+public final class ArrayType extends Type {
+    private final Type elementType;
+
+    ArrayType(Type elementType) {
+        super(elementType.getName() + "[]", "[" + elementType.getDescriptor());
+        this.elementType = elementType;
+    }
+
+    public Type getElementType() {
+        return elementType;
+    }
+
+    @Override
+    public Type getBaseType() {
+        return elementType.getBaseType();
+    }
+}
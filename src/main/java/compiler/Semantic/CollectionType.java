@@ -0,0 +1,55 @@
+package compiler.Semantic;
+
+import java.util.List;
+
+/**
+ * A collection (coll Point { ... }), compiled to a class of the same name.
+ * A name is given a CollectionType as soon as it is used as a type, so uses
+ * before the declaration share the object; declare() then fills in the field
+ * layout. Until it does, isDeclared() is false and the name is unknown.
+ */
+public final class CollectionType extends Type {
+    public record Field(String name, Type type) {
+    }
+
+    private List<Field> fields = List.of();
+    private String constructorDescriptor;
+    private boolean declared;
+
+    CollectionType(String name) {
+        super(name, "L" + name + ";");
+    }
+
+    void declare(List<Field> fields) {
+        this.fields = List.copyOf(fields);
+        StringBuilder descriptor = new StringBuilder("(");
+        for (Field field : fields) {
+            descriptor.append(field.type().getDescriptor());
+        }
+        this.constructorDescriptor = descriptor.append(")V").toString();
+        this.declared = true;
+    }
+
+    public boolean isDeclared() {
+        return declared;
+    }
+
+    public List<Field> getFields() {
+        return fields;
+    }
+
+    // The field called name, or null
+    public Field getField(String name) {
+        for (Field field : fields) {
+            if (field.name().equals(name)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    // Descriptor of the constructor taking every field in order
+    public String getConstructorDescriptor() {
+        return constructorDescriptor;
+    }
+}
@@ -0,0 +1,10 @@
+package compiler.Semantic;
+
+/**
+ * INT, FLOAT, BOOL, STRING, plus VOID, ANY and ERROR; only the constants in Type exist.
+ */
+public final class PrimitiveType extends Type {
+    PrimitiveType(String name, String descriptor) {
+        super(name, descriptor);
+    }
+}
@@ -1,103 +1,142 @@
 package compiler.Semantic;
 
+import compiler.Diagnostics.Diagnostic;
+import compiler.Diagnostics.DiagnosticCollector;
 import compiler.Parser.AST.*;
+import compiler.Parser.Parser;
 import java.util.*;
 
 /**
  * Phase 3: Semantic Analysis
+ *
+ * Every error is reported and checking carries on: a failed statement is
+ * skipped and a failed expression gets Type.ERROR, which later checks accept.
+ * analyze() returns the errors found; the caller decides what to do with them.
  */
 public class SemanticAnalyzer {
 
     private final SymbolTable symbolTable = new SymbolTable();
     private final Map<String, FunctionDef> functionRegistry = new HashMap<>();
-    private final Map<String, List<FieldDef>> collectionRegistry = new HashMap<>();
-    private String currentFunctionReturnType = null;
+    private final Types types = new Types();
+    private DiagnosticCollector diagnostics = new DiagnosticCollector();
+    private Type currentFunctionReturnType = null;
+
+    // Node dispatch goes through ASTNode.accept into these two
+    private final StatementVisitor statements = new StatementVisitor();
+    private final TypeInference inference = new TypeInference();
+    // Counts nested statements and expressions; past its threshold expressions are
+    // inferred iteratively and statements on a larger stack, so depth is not limited by -Xss
+    private final StackGuard stack = new StackGuard();
 
     private static class FunctionDef {
-        String returnType;
-        List<String> paramTypes;
+        Type returnType;
+        List<Type> paramTypes;
 
-        FunctionDef(String returnType, List<String> paramTypes) {
+        FunctionDef(Type returnType, List<Type> paramTypes) {
             this.returnType = returnType;
             this.paramTypes = paramTypes;
         }
     }
 
-    private static class FieldDef {
-        final String name;
-        final String type;
+    public SemanticAnalyzer() {
+        registerInbuiltFunctions();
+    }
 
-        FieldDef(String name, String type) {
-            this.name = name;
-            this.type = type;
-        }
+    /**
+     * The program's types, with its collections declared. The code generator
+     * needs them along with the analyzed tree, whose expressions hold these
+     * types (see ExpressionNode).
+     */
+    public Types getTypes() {
+        return types;
     }
 
-    public SemanticAnalyzer() {
-        registerInbuiltFunctions();
+    // Reports errors to diagnostics instead of a collector of the analyzer's own
+    public void reportErrorsTo(DiagnosticCollector diagnostics) {
+        this.diagnostics = diagnostics;
     }
 
     private void registerInbuiltFunctions() {
-        functionRegistry.put("print",       new FunctionDef(null, List.of("ANY")));
-        functionRegistry.put("println",     new FunctionDef(null, List.of("ANY")));
-        functionRegistry.put("write",       new FunctionDef(null, List.of("ANY")));
-        functionRegistry.put("read_INT",    new FunctionDef("INT", new ArrayList<>()));
-        functionRegistry.put("read_FLOAT",  new FunctionDef("FLOAT", new ArrayList<>()));
-        functionRegistry.put("read_STRING", new FunctionDef("STRING", new ArrayList<>()));
-        functionRegistry.put("floor",       new FunctionDef("INT", List.of("FLOAT")));
-        functionRegistry.put("ceil",        new FunctionDef("INT", List.of("FLOAT")));
-        functionRegistry.put("str",         new FunctionDef("STRING", List.of("INT")));
-        functionRegistry.put("length",      new FunctionDef("INT", List.of("ANY")));
-        functionRegistry.put("print_INT",   new FunctionDef(null, List.of("INT")));
-        functionRegistry.put("print_FLOAT", new FunctionDef(null, List.of("FLOAT")));
-        functionRegistry.put("not",         new FunctionDef("BOOL", List.of("BOOL")));
-        functionRegistry.put("min",         new FunctionDef("ANY", List.of("ANY", "ANY")));
-        functionRegistry.put("max",         new FunctionDef("ANY", List.of("ANY", "ANY")));
-        functionRegistry.put("abs",         new FunctionDef("ANY",  List.of("ANY")));
-        functionRegistry.put("pow",         new FunctionDef("FLOAT", List.of("FLOAT", "FLOAT")));
-        functionRegistry.put("sort",        new FunctionDef("VOID", List.of("ANY[]")));
-    }
-
-    public void analyze(ASTNode root) {
-        try {
-            preRegister(root);
-            if (root instanceof BlockNode) {
-                for (ASTNode stmt : ((BlockNode) root).getStatements()) {
-                    visit(stmt);
-                }
+        functionRegistry.put("print",       new FunctionDef(null, List.of(Type.ANY)));
+        functionRegistry.put("println",     new FunctionDef(null, List.of(Type.ANY)));
+        functionRegistry.put("write",       new FunctionDef(null, List.of(Type.ANY)));
+        functionRegistry.put("read_INT",    new FunctionDef(Type.INT, List.of()));
+        functionRegistry.put("read_FLOAT",  new FunctionDef(Type.FLOAT, List.of()));
+        functionRegistry.put("read_STRING", new FunctionDef(Type.STRING, List.of()));
+        functionRegistry.put("floor",       new FunctionDef(Type.INT, List.of(Type.FLOAT)));
+        functionRegistry.put("ceil",        new FunctionDef(Type.INT, List.of(Type.FLOAT)));
+        functionRegistry.put("str",         new FunctionDef(Type.STRING, List.of(Type.INT)));
+        functionRegistry.put("length",      new FunctionDef(Type.INT, List.of(Type.ANY)));
+        functionRegistry.put("print_INT",   new FunctionDef(null, List.of(Type.INT)));
+        functionRegistry.put("print_FLOAT", new FunctionDef(null, List.of(Type.FLOAT)));
+        functionRegistry.put("not",         new FunctionDef(Type.BOOL, List.of(Type.BOOL)));
+        functionRegistry.put("min",         new FunctionDef(Type.ANY, List.of(Type.ANY, Type.ANY)));
+        functionRegistry.put("max",         new FunctionDef(Type.ANY, List.of(Type.ANY, Type.ANY)));
+        functionRegistry.put("abs",         new FunctionDef(Type.ANY,  List.of(Type.ANY)));
+        functionRegistry.put("pow",         new FunctionDef(Type.FLOAT, List.of(Type.FLOAT, Type.FLOAT)));
+        functionRegistry.put("sort",        new FunctionDef(Type.VOID, List.of(Type.ANY.arrayOf())));
+    }
+
+    public DiagnosticCollector analyze(ASTNode root) {
+        if (root instanceof BlockNode) {
+            analyzeDeclarations(((BlockNode) root).getStatements());
+        }
+        return diagnostics;
+    }
+
+    // Each declaration is materialized from the flat tree when visited and dropped after.
+    public DiagnosticCollector analyze(FlatAST ast) {
+        analyzeDeclarations(ast.declarations());
+        return diagnostics;
+    }
+
+    private void analyzeDeclarations(List<ASTNode> declarations) {
+        preRegister(declarations);
+        for (ASTNode stmt : declarations) {
+            if (diagnostics.isFull()) {
+                break;
             }
-        } catch (RuntimeException e) {
-            System.out.println(e.getMessage());
-            System.exit(2);
-        }
-    }
-
-    private void preRegister(ASTNode root) {
-        if (!(root instanceof BlockNode)) return;
-        for (ASTNode node : ((BlockNode) root).getStatements()) {
-            if (node instanceof FunctionNode) {
-                preRegisterFunction((FunctionNode) node);
-            } else if (node instanceof CollectionNode) {
-                preRegisterCollection((CollectionNode) node);
-            } else if (node instanceof FinalNode) {
-                ASTNode inner = ((FinalNode) node).getAssignment();
-                if (inner instanceof CollectionNode) {
-                    preRegisterCollection((CollectionNode) inner);
-                }
+            visit(stmt);
+        }
+    }
+
+    private void error(String message) {
+        diagnostics.report(Diagnostic.Phase.SEMANTIC, message);
+    }
+
+    private void preRegister(List<ASTNode> declarations) {
+        for (ASTNode node : declarations) {
+            try {
+                preRegister(node);
+            } catch (RuntimeException e) {
+                error(e.getMessage());
+            }
+        }
+    }
+
+    private void preRegister(ASTNode node) {
+        if (node instanceof FunctionNode) {
+            preRegisterFunction((FunctionNode) node);
+        } else if (node instanceof CollectionNode) {
+            preRegisterCollection((CollectionNode) node);
+        } else if (node instanceof FinalNode) {
+            ASTNode inner = ((FinalNode) node).getAssignment();
+            if (inner instanceof CollectionNode) {
+                preRegisterCollection((CollectionNode) inner);
             }
         }
     }
 
     private void preRegisterFunction(FunctionNode fn) {
-        List<String> paramTypes = new ArrayList<>();
+        List<Type> paramTypes = new ArrayList<>();
 
         // Extracting types from FunctionNode's args (ASTNodes)
         for (ASTNode arg : fn.getArgs()) {
             if (arg instanceof AssignmentNode) {
-                paramTypes.add(((AssignmentNode) arg).getType());
+                paramTypes.add(types.named(((AssignmentNode) arg).getType()));
             }
         }
-        functionRegistry.put(fn.getName(), new FunctionDef(fn.getReturnType(), paramTypes));
+        functionRegistry.put(fn.getName(), new FunctionDef(types.named(fn.getReturnType()), paramTypes));
     }
 
     private void preRegisterCollection(CollectionNode cn) {
@@ -115,38 +154,109 @@ public class SemanticAnalyzer {
                     "CollectionError: '" + name + "' shadows a primitive type.");
         }
 
-        if (collectionRegistry.containsKey(name)) {
+        if (types.collection(name) != null) {
             throw new RuntimeException(
                     "CollectionError: Collection '" + name + "' is already defined.");
         }
 
-        List<FieldDef> fields = new ArrayList<>();
-        for (ASTNode member : cn.getBody().getStatements()) {
-            if (member instanceof AssignmentNode) {
-                AssignmentNode field = (AssignmentNode) member;
-                fields.add(new FieldDef(field.getIdentifier(), field.getType()));
-            }
-        }
-        collectionRegistry.put(name, fields);
+        types.declareCollection(cn);
     }
 
+    // A statement that fails is reported and skipped; the ones after it are still checked
     private void visit(ASTNode node) {
-        switch (node) {
-            case BlockNode blockNode -> visitBlock(blockNode);
-            case FinalNode finalNode -> visitFinal(finalNode);
-            case AssignmentNode assignmentNode -> visitAssignment(assignmentNode);
-            case CollectionNode collectionNode -> visitCollection(collectionNode);
-            case FunctionNode functionNode -> visitFunction(functionNode);
-            case IfNode ifNode -> visitIf(ifNode);
-            case WhileNode whileNode -> visitWhile(whileNode);
-            case ForNode forNode -> visitFor(forNode);
-            case ReturnNode returnNode -> visitReturn(returnNode);
-            case FunctionCallNode functionCallNode -> inferType(node);
-            case ArrayStoreNode arrayStoreNode  -> visitArrayStore(arrayStoreNode);
-            case FieldStoreNode fieldStoreNode  -> visitFieldStore(fieldStoreNode);
-            default -> {
-                return;
-            }
+        if (!stack.enter()) {
+            stack.deeper(() -> {
+                visit(node);
+                return null;
+            });
+            return;
+        }
+        try {
+            node.accept(statements, null);
+        } catch (RuntimeException e) {
+            error(e.getMessage());
+        } finally {
+            stack.exit();
+        }
+    }
+
+    // Statements; an expression standing on its own is only checked if it is a call
+    private class StatementVisitor implements ASTVisitor<Void, Void> {
+        @Override
+        public Void visitDefault(ASTNode node, Void arg) {
+            return null;
+        }
+
+        @Override
+        public Void visitBlock(BlockNode node, Void arg) {
+            SemanticAnalyzer.this.visitBlock(node);
+            return null;
+        }
+
+        @Override
+        public Void visitFinal(FinalNode node, Void arg) {
+            SemanticAnalyzer.this.visitFinal(node);
+            return null;
+        }
+
+        @Override
+        public Void visitAssignment(AssignmentNode node, Void arg) {
+            SemanticAnalyzer.this.visitAssignment(node);
+            return null;
+        }
+
+        @Override
+        public Void visitCollection(CollectionNode node, Void arg) {
+            SemanticAnalyzer.this.visitCollection(node);
+            return null;
+        }
+
+        @Override
+        public Void visitFunction(FunctionNode node, Void arg) {
+            SemanticAnalyzer.this.visitFunction(node);
+            return null;
+        }
+
+        @Override
+        public Void visitIf(IfNode node, Void arg) {
+            SemanticAnalyzer.this.visitIf(node);
+            return null;
+        }
+
+        @Override
+        public Void visitWhile(WhileNode node, Void arg) {
+            SemanticAnalyzer.this.visitWhile(node);
+            return null;
+        }
+
+        @Override
+        public Void visitFor(ForNode node, Void arg) {
+            SemanticAnalyzer.this.visitFor(node);
+            return null;
+        }
+
+        @Override
+        public Void visitReturn(ReturnNode node, Void arg) {
+            SemanticAnalyzer.this.visitReturn(node);
+            return null;
+        }
+
+        @Override
+        public Void visitFunctionCall(FunctionCallNode node, Void arg) {
+            inferType(node);
+            return null;
+        }
+
+        @Override
+        public Void visitArrayStore(ArrayStoreNode node, Void arg) {
+            SemanticAnalyzer.this.visitArrayStore(node);
+            return null;
+        }
+
+        @Override
+        public Void visitFieldStore(FieldStoreNode node, Void arg) {
+            SemanticAnalyzer.this.visitFieldStore(node);
+            return null;
         }
     }
 
@@ -169,21 +279,19 @@ public class SemanticAnalyzer {
 
     private void visitAssignment(AssignmentNode node) {
         String id = node.getIdentifier();
-        String declaredType = node.getType();
+        Type declaredType = types.named(node.getType());
 
         if (declaredType != null) {
-            if (!isPrimitive(declaredType) && !declaredType.endsWith("[]")) {
-                String baseType = declaredType.replace("[]", "");
-                if (!collectionRegistry.containsKey(baseType)) {
-                    throw new RuntimeException(
-                            "TypeError: Unknown type '" + declaredType +
-                            "' for variable '" + id + "'.");
-                }
+            if (declaredType instanceof CollectionType collection && !collection.isDeclared()) {
+                error("TypeError: Unknown type '" + declaredType +
+                        "' for variable '" + id + "'.");
+                // Still declared, so its uses do not report it again
+                declaredType = Type.ERROR;
             }
 
             symbolTable.declare(id, declaredType, false);
             if (node.getExpression() != null) {
-                String rhsType = inferType(node.getExpression());
+                Type rhsType = inferType(node.getExpression());
                 if (!typesCompatible(declaredType, rhsType)) {
                     throw new RuntimeException(
                             "TypeError: Cannot assign '" + rhsType +
@@ -192,9 +300,15 @@ public class SemanticAnalyzer {
                 }
             }
         } else {
-            String existingType = symbolTable.lookupType(id);
+            // An undefined target is reported on its own; the right-hand side is still checked
+            Type existingType = Type.ERROR;
+            if (symbolTable.isDeclared(id)) {
+                existingType = symbolTable.lookupType(id);
+            } else {
+                error("ScopeError: Variable '" + id + "' is not defined in any accessible scope.");
+            }
             if (node.getExpression() != null) {
-                String rhsType = inferType(node.getExpression());
+                Type rhsType = inferType(node.getExpression());
                 if (!typesCompatible(existingType, rhsType)) {
                     throw new RuntimeException(
                             "TypeError: Type mismatch in reassignment of '" +
@@ -206,20 +320,25 @@ public class SemanticAnalyzer {
     }
 
     private void visitArrayStore(ArrayStoreNode node) {
-        String arrayType = inferType(node.getArray());
-        if (!arrayType.endsWith("[]")) {
+        Type arrayType = inferType(node.getArray());
+        if (arrayType == Type.ERROR) {
+            inferType(node.getIndex());
+            inferType(node.getValue());
+            return;
+        }
+        if (!(arrayType instanceof ArrayType array)) {
             throw new RuntimeException(
                     "TypeError: Index-write operator [] applied to non-array type '"
                             + arrayType + "'.");
         }
-        String elementType = arrayType.substring(0, arrayType.length() - 2);
+        Type elementType = array.getElementType();
 
-        String indexType = inferType(node.getIndex());
-        if (!"INT".equals(indexType)) {
+        Type indexType = inferType(node.getIndex());
+        if (indexType != Type.INT && indexType != Type.ERROR) {
             throw new RuntimeException("TypeError: Array index must be INT, found '" + indexType + "'.");
         }
 
-        String valueType = inferType(node.getValue());
+        Type valueType = inferType(node.getValue());
         if (!typesCompatible(elementType, valueType)) {
             throw new RuntimeException(
                     "TypeError: Cannot store '" + valueType +
@@ -228,29 +347,28 @@ public class SemanticAnalyzer {
     }
 
     private void visitFieldStore(FieldStoreNode node) {
-        String collType = inferType(node.getTarget());
-        String baseType = collType.replace("[]", "");
+        Type collType = inferType(node.getTarget());
+        Type baseType = collType.getBaseType();
 
-        if (!collectionRegistry.containsKey(baseType)) {
+        if (collType == Type.ERROR) {
+            inferType(node.getValue());
+            return;
+        }
+        if (!(baseType instanceof CollectionType collection) || !collection.isDeclared()) {
             throw new RuntimeException(
                     "TypeError: Field-write '." + node.getField() +
                             "' on non-collection type '" + collType + "'.");
         }
 
-        String fieldType = null;
-        for (FieldDef fd : collectionRegistry.get(baseType)) {
-            if (fd.name.equals(node.getField())) {
-                fieldType = fd.type;
-                break;
-            }
-        }
-        if (fieldType == null) {
+        CollectionType.Field field = collection.getField(node.getField());
+        if (field == null) {
             throw new RuntimeException(
                     "TypeError: Collection '" + baseType +
                             "' has no field '" + node.getField() + "'.");
         }
+        Type fieldType = field.type();
 
-        String valueType = inferType(node.getValue());
+        Type valueType = inferType(node.getValue());
         if (!typesCompatible(fieldType, valueType)) {
             throw new RuntimeException(
                     "TypeError: Cannot assign '" + valueType +
@@ -263,14 +381,12 @@ public class SemanticAnalyzer {
         for (ASTNode member : node.getBody().getStatements()) {
             if (member instanceof AssignmentNode) {
                 AssignmentNode field = (AssignmentNode) member;
-                String fieldType = field.getType();
+                Type fieldType = types.named(field.getType());
                 if (fieldType == null) {
                     continue;
                 }
-                String baseType = fieldType.replace("[]", "");
-                if (!isPrimitive(baseType) && !collectionRegistry.containsKey(baseType)) {
-                    throw new RuntimeException(
-                            "CollectionError: Field '" + field.getIdentifier() +
+                if (fieldType.getBaseType() instanceof CollectionType base && !base.isDeclared()) {
+                    error("CollectionError: Field '" + field.getIdentifier() +
                             "' in collection '" + node.getName() +
                             "' has unknown type '" + fieldType + "'.");
                 }
@@ -279,8 +395,18 @@ public class SemanticAnalyzer {
     }
 
     private void visitFunction(FunctionNode node) {
-        String previousReturnType = currentFunctionReturnType;
-        currentFunctionReturnType = node.getReturnType();
+        // A lazily parsed body is parsed here, before the function's scope is entered
+        BlockNode body;
+        try {
+            body = node.getBody();
+        } catch (Parser.SyntaxError e) {
+            // Reported as the parser would have; the function is skipped
+            diagnostics.report(Diagnostic.Phase.SYNTAX, e.getDetail(), e.getLine(), e.getColumn());
+            return;
+        }
+
+        Type previousReturnType = currentFunctionReturnType;
+        currentFunctionReturnType = types.named(node.getReturnType());
 
         symbolTable.enterScope();
 
@@ -288,11 +414,15 @@ public class SemanticAnalyzer {
         for (ASTNode arg : node.getArgs()) {
             if (arg instanceof AssignmentNode) {
                 AssignmentNode param = (AssignmentNode) arg;
-                symbolTable.declare(param.getIdentifier(), param.getType(), false);
+                try {
+                    symbolTable.declare(param.getIdentifier(), types.named(param.getType()), false);
+                } catch (RuntimeException e) {
+                    error(e.getMessage());
+                }
             }
         }
 
-        for (ASTNode stmt : node.getBody().getStatements()) {
+        for (ASTNode stmt : body.getStatements()) {
             visit(stmt);
         }
 
@@ -301,10 +431,9 @@ public class SemanticAnalyzer {
     }
 
     private void visitIf(IfNode node) {
-        String condType = inferType(node.getCondition());
-        if (!"BOOL".equals(condType)) {
-            throw new RuntimeException(
-                    "MissingConditionError: 'if' condition must be BOOL, found '" +
+        Type condType = inferType(node.getCondition());
+        if (condType != Type.BOOL && condType != Type.ERROR) {
+            error("MissingConditionError: 'if' condition must be BOOL, found '" +
                     condType + "'.");
         }
         visit(node.getThenBlock());
@@ -314,10 +443,9 @@ public class SemanticAnalyzer {
     }
 
     private void visitWhile(WhileNode node) {
-        String condType = inferType(node.getCondition());
-        if (!"BOOL".equals(condType)) {
-            throw new RuntimeException(
-                    "MissingConditionError: 'while' condition must be BOOL, found '" +
+        Type condType = inferType(node.getCondition());
+        if (condType != Type.BOOL && condType != Type.ERROR) {
+            error("MissingConditionError: 'while' condition must be BOOL, found '" +
                     condType + "'.");
         }
         visit(node.getBody());
@@ -326,14 +454,30 @@ public class SemanticAnalyzer {
     private void visitFor(ForNode node) {
         symbolTable.enterScope();
         visit(node.getInit());
+        // An undeclared loop variable was reported by the visit
+        Type variableType = Type.ERROR;
+        if (node.getInit() instanceof AssignmentNode init && symbolTable.isDeclared(init.getIdentifier())) {
+            variableType = symbolTable.lookupType(init.getIdentifier());
+        } else if (node.getInit() instanceof IdentifierNode) {
+            variableType = inferType(node.getInit());
+        }
+        if (!isIntOrError(variableType)) {
+            error("MissingConditionError: For loop variable must be INT, found '" +
+                    variableType + "'.");
+        }
 
-        String startType = inferType(node.getRangeStart());
-        String endType   = inferType(node.getRangeEnd());
-        if (!"INT".equals(startType) || !"INT".equals(endType)) {
-            throw new RuntimeException(
-                    "MissingConditionError: For loop range bounds must be INT, found '" +
+        Type startType = inferType(node.getRangeStart());
+        Type endType   = inferType(node.getRangeEnd());
+        if (!isIntOrError(startType) || !isIntOrError(endType)) {
+            error("MissingConditionError: For loop range bounds must be INT, found '" +
                     startType + "' and '" + endType + "'.");
         }
+        // Checked before the body, whose declarations it cannot see
+        Type updateType = inferType(node.getUpdate());
+        if (!isIntOrError(updateType)) {
+            error("MissingConditionError: For loop update must be INT, found '" +
+                    updateType + "'.");
+        }
         for (ASTNode stmt : node.getBody().getStatements()) {
             visit(stmt);
         }
@@ -349,7 +493,10 @@ public class SemanticAnalyzer {
             }
             return;
         }
-        String actualType = inferType(node.getExpression());
+        Type actualType = inferType(node.getExpression());
+        if (actualType == Type.ERROR) {
+            return;
+        }
         if (currentFunctionReturnType == null) {
             throw new RuntimeException(
                     "ReturnError: Void function cannot return a value of type '" +
@@ -364,194 +511,431 @@ public class SemanticAnalyzer {
         }
     }
 
-    private String handleFunctionCall(FunctionCallNode node) {
+    // Checks a call's name and argument count; returns how many of its arguments are inferred
+    private int callOperands(FunctionCallNode node) {
         String name = node.getFunctionName();
         List<ASTNode> args = node.getArguments();
 
-        if (!functionRegistry.containsKey(name)) {
+        FunctionDef def = functionRegistry.get(name);
+        if (def == null) {
             throw new RuntimeException(
                     "ScopeError: Function '" + name + "' is not defined.");
         }
 
-        if (name.equals("min") || name.equals("max")) {
-            if (args.size() != 2) {
-                throw new RuntimeException("ArgumentError: '" + name + "' expects 2 arguments.");
-            }
-
-            String leftType = inferType(args.get(0));
-            String rightType = inferType(args.get(1));
-
-            boolean leftNumeric = "INT".equals(leftType) || "FLOAT".equals(leftType);
-            boolean rightNumeric = "INT".equals(rightType) || "FLOAT".equals(rightType);
-
-            if (!leftNumeric || !rightNumeric) {
-                throw new RuntimeException("ArgumentError: '" + name + "' requires INT or FLOAT operands.");
+        switch (name) {
+            case "min", "max" -> {
+                if (args.size() != 2) {
+                    throw new RuntimeException("ArgumentError: '" + name + "' expects 2 arguments.");
+                }
+                return 2;
             }
-
-            return ("FLOAT".equals(leftType) || "FLOAT".equals(rightType)) ? "FLOAT" : "INT";
-        }
-
-        if (name.equals("abs")) {
-            String argType = inferType(args.getFirst());
-            if (!argType.equals("INT") && !argType.equals("FLOAT")) {
-                throw new RuntimeException("ArgumentError: abs() requires INT or FLOAT, got " + argType);
+            case "pow" -> {
+                return 2;
             }
-            return argType; // returns same type as input
-        }
-
-        if (name.equals("pow")) {
-            String base = inferType(args.get(0));
-            String exp  = inferType(args.get(1));
-            if ((!base.equals("FLOAT") && !base.equals("INT")) ||
-                    (!exp.equals("FLOAT")  && !exp.equals("INT"))) {
-                throw new RuntimeException("ArgumentError: pow() requires numeric arguments.");
+            case "abs", "sort" -> {
+                return 1;
             }
-            return "FLOAT";
-        }
-
-        if (name.equals("sort")) {
-            String argType = inferType(args.getFirst());
-            if (!argType.equals("INT[]")) {
-                throw new RuntimeException("ArgumentError: sort() requires an INT[], got " + argType);
+            default -> {
             }
-            return "VOID";
         }
 
-        FunctionDef def = functionRegistry.get(name);
-
-        boolean isInbuilt = def.paramTypes.size() == 1
-                && "ANY".equals(def.paramTypes.getFirst());
-
-        if (!isInbuilt && args.size() != def.paramTypes.size()) {
+        if (!isInbuilt(def) && args.size() != def.paramTypes.size()) {
             throw new RuntimeException(
                     "ArgumentError: Function '" + name + "' expects " +
                             def.paramTypes.size() + " argument(s), but got " +
                             args.size() + ".");
         }
+        return args.size();
+    }
 
-        if (!isInbuilt) {
-            for (int i = 0; i < args.size(); i++) {
-                String actual = inferType(args.get(i));
-                String expected = def.paramTypes.get(i);
-                if (!typesCompatible(expected, actual)) {
-                    throw new RuntimeException(
-                            "ArgumentError: Argument " + (i + 1) +
-                            " of function '" + name + "' should be '" +
-                            expected + "', but found '" + actual + "'.");
-                }
-            }
-        }
-        return def.returnType != null ? def.returnType : "VOID";
+    private static ASTNode callOperand(FunctionCallNode node, int i) {
+        List<ASTNode> args = node.getArguments();
+        return switch (node.getFunctionName()) {
+            case "abs", "sort" -> args.getFirst();
+            default -> args.get(i);
+        };
     }
 
-    private String inferType(ASTNode node) {
-        switch (node) {
-            case null -> {
-                return "VOID";
+    private void checkCallArgument(FunctionCallNode node, int i, Type actual) {
+        String name = node.getFunctionName();
+        switch (name) {
+            case "min", "max", "abs", "pow", "sort" -> {
+                return;
             }
-            case LiteralNode literalNode -> {
-                return literalNode.getType().name();
+            default -> {
             }
-            case IdentifierNode identifierNode -> {
-                return symbolTable.lookupType(identifierNode.getName());
+        }
+        FunctionDef def = functionRegistry.get(name);
+        if (isInbuilt(def)) {
+            // Any type is accepted, but the argument itself still has to check
+            return;
+        }
+        Type expected = def.paramTypes.get(i);
+        if (!typesCompatible(expected, actual)) {
+            throw new RuntimeException(
+                    "ArgumentError: Argument " + (i + 1) +
+                    " of function '" + name + "' should be '" +
+                    expected + "', but found '" + actual + "'.");
+        }
+    }
+
+    // first and second are the types of the first two arguments inferred
+    private Type callType(FunctionCallNode node, Type first, Type second) {
+        String name = node.getFunctionName();
+        switch (name) {
+            case "min", "max" -> {
+                if (first == Type.ERROR || second == Type.ERROR) {
+                    return Type.ERROR;
+                }
+                if (!first.isNumeric() || !second.isNumeric()) {
+                    throw new RuntimeException("ArgumentError: '" + name + "' requires INT or FLOAT operands.");
+                }
+                return (first == Type.FLOAT || second == Type.FLOAT) ? Type.FLOAT : Type.INT;
             }
-            case UnaryNode unaryNode -> {
-                String operandType = inferType(unaryNode.getOperand());
-                if (!"INT".equals(operandType) && !"FLOAT".equals(operandType)) {
-                    throw new RuntimeException(
-                            "OperatorError: Unary operator '" +
-                            unaryNode.getOperator() +
-                            "' requires INT or FLOAT, found '" + operandType + "'.");
+            case "abs" -> {
+                if (first == Type.ERROR) {
+                    return Type.ERROR;
+                }
+                if (!first.isNumeric()) {
+                    throw new RuntimeException("ArgumentError: abs() requires INT or FLOAT, got " + first);
                 }
-                return operandType;
+                return first; // returns same type as input
             }
-            case BinaryExpressionNode ben -> {
-                return inferBinaryType(ben);
+            case "pow" -> {
+                if (!isNumericOrError(first) || !isNumericOrError(second)) {
+                    throw new RuntimeException("ArgumentError: pow() requires numeric arguments.");
+                }
+                return Type.FLOAT;
             }
-            case FunctionCallNode functionCallNode -> {
-                return handleFunctionCall(functionCallNode);
+            case "sort" -> {
+                if (first != Type.INT.arrayOf() && first != Type.ERROR) {
+                    throw new RuntimeException("ArgumentError: sort() requires an INT[], got " + first);
+                }
+                return Type.VOID;
             }
-            case ConstructorCallNode constructorCallNode -> {
-                return handleConstructorCall(constructorCallNode);
+            default -> {
+                FunctionDef def = functionRegistry.get(name);
+                return def.returnType != null ? def.returnType : Type.VOID;
             }
-            case ArrayInitNode arrayInitNode -> {
-                String sizeType = inferType(arrayInitNode.getSize());
-                if (!"INT".equals(sizeType)) {
-                    throw new RuntimeException(
-                            "TypeError: Array size must be INT, found '" +
-                            sizeType + "'.");
+        }
+    }
+
+    private static boolean isInbuilt(FunctionDef def) {
+        return def.paramTypes.size() == 1 && def.paramTypes.getFirst() == Type.ANY;
+    }
+
+    // An expression that fails is reported once and typed ERROR
+    private Type inferType(ASTNode node) {
+        if (node == null) {
+            return Type.VOID;
+        }
+        if (!stack.enter()) {
+            return inferIteratively(node);
+        }
+        Type type;
+        try {
+            type = node.accept(inference, null);
+        } catch (RuntimeException e) {
+            error(e.getMessage());
+            type = Type.ERROR;
+        } finally {
+            stack.exit();
+        }
+        return resolve(node, type);
+    }
+
+    // Keeps the type on the node, where the code generator reads it
+    private static Type resolve(ASTNode node, Type type) {
+        if (node instanceof ExpressionNode expression) {
+            expression.setResolvedType(type);
+        }
+        return type;
+    }
+
+    // An expression whose operands inferIteratively is still inferring
+    private static final class Inference {
+        final ASTNode node;
+        final int operands;
+        int next;
+        Type first;
+        Type second;
+
+        Inference(ASTNode node, int operands) {
+            this.node = node;
+            this.operands = operands;
+        }
+    }
+
+    /**
+     * inferType with an explicit stack, for expressions nested past the
+     * guard's threshold. Each node goes through the same steps as in
+     * TypeInference (operandCount, then operand and checkOperand for each
+     * operand in turn, then finish), so errors are reported in the same
+     * order and a failed node still skips the operands after it.
+     */
+    private Type inferIteratively(ASTNode root) {
+        ArrayDeque<Inference> pending = new ArrayDeque<>();
+        ASTNode node = root;
+        while (true) {
+            Type type = null;
+            if (node == null) {
+                type = Type.VOID;
+            } else {
+                try {
+                    int operands = operandCount(node);
+                    if (operands > 0) {
+                        ASTNode first = operand(node, 0);
+                        pending.push(new Inference(node, operands));
+                        node = first;
+                        continue;
+                    }
+                    type = finish(node, null, null);
+                } catch (RuntimeException e) {
+                    error(e.getMessage());
+                    type = Type.ERROR;
                 }
-                return arrayInitNode.getType() + "[]";
+                type = resolve(node, type);
             }
-            case IndexAccessNode indexAccessNode -> {
-                String arrayType = inferType(indexAccessNode.getArray());
-                if ("STRING".equals(arrayType)) {
-                    String indexType = inferType(indexAccessNode.getIndex());
-                    if (!"INT".equals(indexType)) {
-                        throw new RuntimeException(
-                                "TypeError: String index must be INT, found '" + indexType + "'.");
+
+            // Hands type down until an expression has another operand to infer
+            while (!pending.isEmpty()) {
+                Inference top = pending.peek();
+                try {
+                    checkOperand(top.node, top.next, type);
+                    if (top.next == 0) {
+                        top.first = type;
+                    } else if (top.next == 1) {
+                        top.second = type;
                     }
-                    return "INT";
-                }
-                if (!arrayType.endsWith("[]")) {
-                    throw new RuntimeException(
-                            "TypeError: Index operator [] applied to non-array type '" +
-                            arrayType + "'.");
+                    if (++top.next < top.operands) {
+                        node = operand(top.node, top.next);
+                        break;
+                    }
+                    type = finish(top.node, top.first, top.second);
+                } catch (RuntimeException e) {
+                    error(e.getMessage());
+                    type = Type.ERROR;
                 }
-                String indexType = inferType(indexAccessNode.getIndex());
-                if (!"INT".equals(indexType)) {
-                    throw new RuntimeException(
-                            "TypeError: Array index must be INT, found '" +
-                            indexType + "'.");
+                pending.pop();
+                type = resolve(top.node, type);
+            }
+            if (pending.isEmpty()) {
+                return type;
+            }
+        }
+    }
+
+    // How many operands node has, after the checks that come before them
+    private int operandCount(ASTNode node) {
+        return switch (node) {
+            case UnaryNode unary -> 1;
+            case BinaryExpressionNode binary -> 2;
+            case ArrayInitNode init -> 1;
+            case IndexAccessNode access -> 2;
+            case MemberAccessNode access -> 1;
+            case FunctionCallNode call -> callOperands(call);
+            case ConstructorCallNode call -> constructorOperands(call);
+            default -> 0;
+        };
+    }
+
+    private static ASTNode operand(ASTNode node, int i) {
+        return switch (node) {
+            case UnaryNode unary -> unary.getOperand();
+            case BinaryExpressionNode binary -> i == 0 ? binary.getLeft() : binary.getRight();
+            case ArrayInitNode init -> init.getSize();
+            case IndexAccessNode access -> i == 0 ? access.getArray() : access.getIndex();
+            case MemberAccessNode access -> access.getCollection();
+            case FunctionCallNode call -> callOperand(call, i);
+            case ConstructorCallNode call -> call.getArguments().get(i);
+            default -> throw new IllegalStateException(node.getClass().getSimpleName() + " has no operands");
+        };
+    }
+
+    private void checkOperand(ASTNode node, int i, Type type) {
+        if (node instanceof IndexAccessNode && i == 0) {
+            checkIndexed(type);
+        } else if (node instanceof FunctionCallNode call) {
+            checkCallArgument(call, i, type);
+        } else if (node instanceof ConstructorCallNode call) {
+            checkConstructorArgument(call, i, type);
+        }
+    }
+
+    // The type of node, given the types of its first two operands
+    private Type finish(ASTNode node, Type first, Type second) {
+        return switch (node) {
+            case UnaryNode unary -> unaryType(unary, first);
+            case BinaryExpressionNode binary -> inferBinaryType(binary, first, second);
+            case ArrayInitNode init -> arrayInitType(init, first);
+            case IndexAccessNode access -> indexAccessType(first, second);
+            case MemberAccessNode access -> inferMemberAccessType(access, first);
+            case FunctionCallNode call -> callType(call, first, second);
+            case ConstructorCallNode call -> types.collection(call.getCollectionName());
+            default -> node.accept(inference, null);
+        };
+    }
+
+    // Type of an expression, checking its operands on the way
+    private class TypeInference implements ASTVisitor<Type, Void> {
+        @Override
+        public Type visitDefault(ASTNode node, Void arg) {
+            throw new RuntimeException(
+                    "TypeError: Cannot infer type of node: " +
+                    node.getClass().getSimpleName());
+        }
+
+        @Override
+        public Type visitLiteral(LiteralNode node, Void arg) {
+            return switch (node.getType()) {
+                case INT -> Type.INT;
+                case FLOAT -> Type.FLOAT;
+                case STRING -> Type.STRING;
+                case BOOL -> Type.BOOL;
+            };
+        }
+
+        @Override
+        public Type visitIdentifier(IdentifierNode node, Void arg) {
+            return symbolTable.lookupType(node.getName());
+        }
+
+        @Override
+        public Type visitUnary(UnaryNode node, Void arg) {
+            return unaryType(node, inferType(node.getOperand()));
+        }
+
+        @Override
+        public Type visitBinaryExpression(BinaryExpressionNode node, Void arg) {
+            Type leftType = inferType(node.getLeft());
+            return inferBinaryType(node, leftType, inferType(node.getRight()));
+        }
+
+        @Override
+        public Type visitFunctionCall(FunctionCallNode node, Void arg) {
+            int operands = callOperands(node);
+            Type first = null;
+            Type second = null;
+            for (int i = 0; i < operands; i++) {
+                Type type = inferType(callOperand(node, i));
+                checkCallArgument(node, i, type);
+                if (i == 0) {
+                    first = type;
+                } else if (i == 1) {
+                    second = type;
                 }
-                return arrayType.substring(0, arrayType.length() - 2);
             }
-            case MemberAccessNode memberAccessNode -> {
-                return inferMemberAccessType(memberAccessNode);
+            return callType(node, first, second);
+        }
+
+        @Override
+        public Type visitConstructorCall(ConstructorCallNode node, Void arg) {
+            int operands = constructorOperands(node);
+            List<ASTNode> args = node.getArguments();
+            for (int i = 0; i < operands; i++) {
+                checkConstructorArgument(node, i, inferType(args.get(i)));
             }
-            default -> {
+            return types.collection(node.getCollectionName());
+        }
+
+        @Override
+        public Type visitArrayInit(ArrayInitNode node, Void arg) {
+            return arrayInitType(node, inferType(node.getSize()));
+        }
+
+        @Override
+        public Type visitIndexAccess(IndexAccessNode node, Void arg) {
+            Type arrayType = inferType(node.getArray());
+            checkIndexed(arrayType);
+            return indexAccessType(arrayType, inferType(node.getIndex()));
+        }
+
+        @Override
+        public Type visitMemberAccess(MemberAccessNode node, Void arg) {
+            return inferMemberAccessType(node, inferType(node.getCollection()));
+        }
+    }
+
+    private static Type unaryType(UnaryNode node, Type operandType) {
+        if (!isNumericOrError(operandType)) {
+            throw new RuntimeException(
+                    "OperatorError: Unary operator '" +
+                    node.getOperator() +
+                    "' requires INT or FLOAT, found '" + operandType + "'.");
+        }
+        return operandType;
+    }
+
+    private Type arrayInitType(ArrayInitNode node, Type sizeType) {
+        if (!isIntOrError(sizeType)) {
+            throw new RuntimeException(
+                    "TypeError: Array size must be INT, found '" +
+                    sizeType + "'.");
+        }
+        return types.named(node.getType()).arrayOf();
+    }
+
+    // Only an array or a STRING can be indexed; an ERROR has already been reported
+    private static void checkIndexed(Type arrayType) {
+        if (arrayType != Type.ERROR && arrayType != Type.STRING && !(arrayType instanceof ArrayType)) {
+            throw new RuntimeException(
+                    "TypeError: Index operator [] applied to non-array type '" +
+                    arrayType + "'.");
+        }
+    }
+
+    private static Type indexAccessType(Type arrayType, Type indexType) {
+        if (arrayType == Type.ERROR) {
+            return Type.ERROR;
+        }
+        if (arrayType == Type.STRING) {
+            if (!isIntOrError(indexType)) {
                 throw new RuntimeException(
-                        "TypeError: Cannot infer type of node: " +
-                        node.getClass().getSimpleName());
+                        "TypeError: String index must be INT, found '" + indexType + "'.");
             }
+            return Type.INT;
+        }
+        if (!isIntOrError(indexType)) {
+            throw new RuntimeException(
+                    "TypeError: Array index must be INT, found '" +
+                    indexType + "'.");
         }
+        return ((ArrayType) arrayType).getElementType();
     }
 
-    private String inferBinaryType(BinaryExpressionNode node) {
+    private Type inferBinaryType(BinaryExpressionNode node, Type leftType, Type rightType) {
         String op        = node.getOperator();
         String exprClass = node.getType();
-        String leftType  = inferType(node.getLeft());
-        String rightType = inferType(node.getRight());
+        if (leftType == Type.ERROR || rightType == Type.ERROR) {
+            return Type.ERROR;
+        }
 
         switch (exprClass) {
             case "Arithmetic": {
                 if ("%".equals(op)) {
-                    if (!"INT".equals(leftType) || !"INT".equals(rightType)) {
+                    if (leftType != Type.INT || rightType != Type.INT) {
                         throw new RuntimeException(
                                 "OperatorError: Operator '%' requires INT operands, found '" +
                                 leftType + "' and '" + rightType + "'.");
                     }
-                    return "INT";
+                    return Type.INT;
                 }
 
-                if ("+".equals(op) && "STRING".equals(leftType) && "STRING".equals(rightType)) {
-                    return "STRING";
+                if ("+".equals(op) && leftType == Type.STRING && rightType == Type.STRING) {
+                    return Type.STRING;
                 }
 
-                boolean leftNumeric  = "INT".equals(leftType)  || "FLOAT".equals(leftType);
-                boolean rightNumeric = "INT".equals(rightType) || "FLOAT".equals(rightType);
-
-                if (!leftNumeric || !rightNumeric) {
+                if (!leftType.isNumeric() || !rightType.isNumeric()) {
                     throw new RuntimeException(
                             "OperatorError: Arithmetic operator '" + op +
                             "' requires numeric operands, found '" +
                             leftType + "' and '" + rightType + "'.");
                 }
 
-                if ("FLOAT".equals(leftType) || "FLOAT".equals(rightType)) {
-                    return "FLOAT";
+                if (leftType == Type.FLOAT || rightType == Type.FLOAT) {
+                    return Type.FLOAT;
                 }
-                return "INT";
+                return Type.INT;
             }
             case "Relational": {
                 if ("==".equals(op) || "=/=".equals(op)) {
@@ -561,27 +945,25 @@ public class SemanticAnalyzer {
                                 "' cannot compare '" + leftType +
                                 "' with '" + rightType + "'.");
                     }
-                    return "BOOL";
+                    return Type.BOOL;
                 }
 
-                boolean leftNumeric  = "INT".equals(leftType)  || "FLOAT".equals(leftType);
-                boolean rightNumeric = "INT".equals(rightType) || "FLOAT".equals(rightType);
-                if (!leftNumeric || !rightNumeric) {
+                if (!leftType.isNumeric() || !rightType.isNumeric()) {
                     throw new RuntimeException(
                             "OperatorError: Relational operator '" + op +
                             "' requires numeric operands, found '" +
                             leftType + "' and '" + rightType + "'.");
                 }
-                return "BOOL";
+                return Type.BOOL;
             }
             case "Logical": {
-                if (!"BOOL".equals(leftType) || !"BOOL".equals(rightType)) {
+                if (leftType != Type.BOOL || rightType != Type.BOOL) {
                     throw new RuntimeException(
                             "OperatorError: Logical operator '" + op +
                             "' requires BOOL operands, found '" +
                             leftType + "' and '" + rightType + "'.");
                 }
-                return "BOOL";
+                return Type.BOOL;
             }
 
             default:
@@ -591,16 +973,18 @@ public class SemanticAnalyzer {
         }
     }
 
-    private String handleConstructorCall(ConstructorCallNode node) {
+    // Checks the collection and the argument count; returns how many arguments are inferred
+    private int constructorOperands(ConstructorCallNode node) {
         String collName = node.getCollectionName();
+        CollectionType collection = types.collection(collName);
 
-        if (!collectionRegistry.containsKey(collName)) {
+        if (collection == null) {
             throw new RuntimeException(
                     "CollectionError: Collection '" +
                     collName + "' is not defined.");
         }
 
-        List<FieldDef> fields = collectionRegistry.get(collName);
+        List<CollectionType.Field> fields = collection.getFields();
         List<ASTNode> args = node.getArguments();
 
         if (args.size() != fields.size()) {
@@ -609,35 +993,37 @@ public class SemanticAnalyzer {
                     "' expects " + fields.size() + " argument(s), but got " +
                     args.size() + ".");
         }
+        return args.size();
+    }
 
-        for (int i = 0; i < args.size(); i++) {
-            String actual   = inferType(args.get(i));
-            String expected = fields.get(i).type;
-            if (!typesCompatible(expected, actual)) {
-                throw new RuntimeException(
-                        "ArgumentError: Field '" + fields.get(i).name +
-                        "' of collection '" + collName + "' expects '" +
-                        expected + "', but got '" + actual + "'.");
-            }
+    private void checkConstructorArgument(ConstructorCallNode node, int i, Type actual) {
+        String collName = node.getCollectionName();
+        CollectionType.Field field = types.collection(collName).getFields().get(i);
+        Type expected = field.type();
+        if (!typesCompatible(expected, actual)) {
+            throw new RuntimeException(
+                    "ArgumentError: Field '" + field.name() +
+                    "' of collection '" + collName + "' expects '" +
+                    expected + "', but got '" + actual + "'.");
         }
-        return collName;
     }
 
-    private String inferMemberAccessType(MemberAccessNode node) {
-        String collType  = inferType(node.getCollection());
+    private Type inferMemberAccessType(MemberAccessNode node, Type collType) {
         String fieldName = node.getMember();
-        String baseType = collType.replace("[]", "");
+        Type baseType = collType.getBaseType();
+        if (collType == Type.ERROR) {
+            return Type.ERROR;
+        }
 
-        if (!collectionRegistry.containsKey(baseType)) {
+        if (!(baseType instanceof CollectionType collection) || !collection.isDeclared()) {
             throw new RuntimeException(
                     "TypeError: Member access '." + fieldName +
                     "' on non-collection type '" + collType + "'.");
         }
 
-        for (FieldDef field : collectionRegistry.get(baseType)) {
-            if (field.name.equals(fieldName)) {
-                return field.type;
-            }
+        CollectionType.Field field = collection.getField(fieldName);
+        if (field != null) {
+            return field.type();
         }
 
         throw new RuntimeException(
@@ -645,18 +1031,17 @@ public class SemanticAnalyzer {
                 "' has no field named '" + fieldName + "'.");
     }
 
-    private boolean typesCompatible(String expected, String actual) {
-        if (expected.equals(actual)) {
-            return true;
-        }
-        if ("FLOAT".equals(expected) && "INT".equals(actual)) {
-            return true;
-        }
-        return false;
+    // Types are canonical, so equal types are the same object
+    private boolean typesCompatible(Type expected, Type actual) {
+        return expected == actual || (expected == Type.FLOAT && actual == Type.INT)
+                || expected == Type.ERROR || actual == Type.ERROR;
+    }
+
+    private static boolean isIntOrError(Type type) {
+        return type == Type.INT || type == Type.ERROR;
     }
 
-    private boolean isPrimitive(String type) {
-        return "INT".equals(type) || "FLOAT".equals(type) ||
-                "BOOL".equals(type) || "STRING".equals(type);
+    private static boolean isNumericOrError(Type type) {
+        return type.isNumeric() || type == Type.ERROR;
     }
 }
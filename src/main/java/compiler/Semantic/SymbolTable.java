@@ -1,80 +1,160 @@
 package compiler.Semantic;
 
-import org.checkerframework.common.returnsreceiver.qual.This;
-
-import java.util.*;
+import java.util.Arrays;
 
 /**
- * Manages variabnles scopes and types.
+ * Manages variable scopes and types.
+ *
+ * Every name has one slot in an open-addressed table, holding its innermost
+ * visible declaration; that declaration links to the one it shadows. The
+ * declarations themselves form a stack stamped with the scope depth they were
+ * made at, which doubles as the undo log: exitScope pops the top scope's
+ * declarations and puts back what each one shadowed. A lookup is one probe
+ * however deep the nesting, and entering a scope allocates nothing.
  */
 public class SymbolTable {
-    private static class Symbol {
-        String type;
-        boolean isFinal;
+    private static final int NONE = -1;
 
-        Symbol(String type, boolean isFinal) {
-            this.type = type;
-            this.isFinal = isFinal;
-        }
-    }
-    // usign stack to handle scopes local, global...
-    //we are using stack becasue scopes are someitme nested, like a gloabl scope inside a local one.
-    private final Stack<Map<String, Symbol>> scopes = new Stack<>();
+    // Name table: slot -> name and its innermost declaration (NONE when out of scope)
+    private String[] names = new String[64];
+    private int[] innermost = new int[64];
+    private int nameCount = 0;
+
+    // Declarations, innermost scope last
+    private Type[] types = new Type[64];
+    private boolean[] finals = new boolean[64];
+    private int[] depths = new int[64];
+    private int[] slots = new int[64];
+    private int[] shadowed = new int[64];
+    private int count = 0;
+
+    // 0 is the global scope
+    private int depth = 0;
 
-    public SymbolTable() {
-        // Push the initial global scope
-        scopes.push(new HashMap<>());
-    }
     // use when it will enter the scope, like " if { "
     public void enterScope() {
-        scopes.push(new HashMap<>());
+        depth++;
     }
-    // delete, pop the table/notebook when we go out of scooe.
+
+    // drops the declarations of the innermost scope
     public void exitScope() {
-        if (scopes.size() > 1) {
-            scopes.pop();
-        } else {
+        if (depth == 0) {
             throw new RuntimeException("Internal Error: Cannot exit global scope.");
         }
+        while (count > 0 && depths[count - 1] == depth) {
+            count--;
+            innermost[slots[count]] = shadowed[count];
+            types[count] = null;
+        }
+        depth--;
     }
+
     // adds a new variable.
-    public void declare(String name, String type, boolean isFinal) {
-        if (scopes.peek().containsKey(name)) {
+    public void declare(String name, Type type, boolean isFinal) {
+        int slot = slotFor(name);
+        int previous = innermost[slot];
+        if (previous != NONE && depths[previous] == depth) {
             throw new RuntimeException(
                     "ScopeError: Variable '" + name +
                     "' is already defined in this scope.");
         }
-        scopes.peek().put(name, new Symbol(type, isFinal));
+        if (count == types.length) {
+            int capacity = count * 2;
+            types = Arrays.copyOf(types, capacity);
+            finals = Arrays.copyOf(finals, capacity);
+            depths = Arrays.copyOf(depths, capacity);
+            slots = Arrays.copyOf(slots, capacity);
+            shadowed = Arrays.copyOf(shadowed, capacity);
+        }
+        types[count] = type;
+        finals[count] = isFinal;
+        depths[count] = depth;
+        slots[count] = slot;
+        shadowed[count] = previous;
+        innermost[slot] = count++;
     }
-    public String lookupType(String name) {
-        for (int i = scopes.size() -1; i>=0;i--) {
-            if (scopes.get(i).containsKey(name)) {
-                return scopes.get(i).get(name).type;
-            }
+
+    public Type lookupType(String name) {
+        int declaration = resolve(name);
+        if (declaration == NONE) {
+            throw new RuntimeException(
+                    "ScopeError: Variable '" + name +
+                    "' is not defined in any accessible scope.");
         }
-        throw new RuntimeException(
-                "ScopeError: Variable '" + name +
-                "' is not defined in any accessible scope.");
+        return types[declaration];
+    }
+
+    public boolean isDeclared(String name) {
+        return resolve(name) != NONE;
     }
 
     public void markFinal(String name) {
-        for (int i = scopes.size() - 1; i >= 0; i--) {
-            if (scopes.get(i).containsKey(name)) {
-                scopes.get(i).get(name).isFinal = true;
-                return;
-            }
+        int declaration = resolve(name);
+        if (declaration == NONE) {
+            throw new RuntimeException(
+                    "Internal Error: markFinal called on undeclared variable '" +
+                    name + "'.");
         }
-        throw new RuntimeException(
-                "Internal Error: markFinal called on undeclared variable '" +
-                name + "'.");
+        finals[declaration] = true;
     }
 
     public boolean isFinal(String name) {
-        for (int i = scopes.size() - 1; i >= 0; i--) {
-            if (scopes.get(i).containsKey(name)) {
-                return scopes.get(i).get(name).isFinal;
+        int declaration = resolve(name);
+        return declaration != NONE && finals[declaration];
+    }
+
+    // Innermost visible declaration of name, or NONE
+    private int resolve(String name) {
+        int mask = names.length - 1;
+        for (int slot = name.hashCode() & mask; names[slot] != null; slot = (slot + 1) & mask) {
+            if (names[slot] == name || names[slot].equals(name)) {
+                return innermost[slot];
+            }
+        }
+        return NONE;
+    }
+
+    // Slot of name, added if it has none yet
+    private int slotFor(String name) {
+        int mask = names.length - 1;
+        int slot = name.hashCode() & mask;
+        for (; names[slot] != null; slot = (slot + 1) & mask) {
+            if (names[slot] == name || names[slot].equals(name)) {
+                return slot;
             }
         }
-        return false;
+        if (2 * (nameCount + 1) > names.length) {
+            rehash();
+            return slotFor(name);
+        }
+        names[slot] = name;
+        innermost[slot] = NONE;
+        nameCount++;
+        return slot;
+    }
+
+    // Doubles the name table; declarations follow their name to its new slot
+    private void rehash() {
+        String[] oldNames = names;
+        int[] oldInnermost = innermost;
+        names = new String[oldNames.length * 2];
+        innermost = new int[names.length];
+        int mask = names.length - 1;
+        int[] moved = new int[oldNames.length];
+        for (int old = 0; old < oldNames.length; old++) {
+            if (oldNames[old] == null) {
+                continue;
+            }
+            int slot = oldNames[old].hashCode() & mask;
+            while (names[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            names[slot] = oldNames[old];
+            innermost[slot] = oldInnermost[old];
+            moved[old] = slot;
+        }
+        for (int i = 0; i < count; i++) {
+            slots[i] = moved[slots[i]];
+        }
     }
 }
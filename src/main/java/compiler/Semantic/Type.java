@@ -0,0 +1,68 @@
+package compiler.Semantic;
+
+/**
+ * A type of the language, shared by the analyzer and the code generator.
+ * Types are canonical: the primitives are the constants below, each type has
+ * one ArrayType, and a program's collections come from its Types table. Two
+ * types are the same exactly when they are the same object, so checks are
+ * reference comparisons. The JVM descriptor is built once, with the type.
+ *
+ * toString() is the name as written in the source ("INT", "Point[]"), which
+ * is what error messages show.
+ */
+public abstract class Type {
+    public static final PrimitiveType INT = new PrimitiveType("INT", "I");
+    public static final PrimitiveType FLOAT = new PrimitiveType("FLOAT", "F");
+    public static final PrimitiveType BOOL = new PrimitiveType("BOOL", "Z");
+    public static final PrimitiveType STRING = new PrimitiveType("STRING", "Ljava/lang/String;");
+    public static final PrimitiveType VOID = new PrimitiveType("VOID", "V");
+    // Parameter of inbuilt functions that take a value of any type
+    public static final PrimitiveType ANY = new PrimitiveType("ANY", "Ljava/lang/Object;");
+    // Type of an expression that failed to check. Checks let it pass, so one
+    // mistake is reported once rather than again by everything built on it.
+    public static final PrimitiveType ERROR = new PrimitiveType("ERROR", "Ljava/lang/Object;");
+
+    private final String name;
+    private final String descriptor;
+    private ArrayType array;
+
+    Type(String name, String descriptor) {
+        this.name = name;
+        this.descriptor = descriptor;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescriptor() {
+        return descriptor;
+    }
+
+    // Name for NEW and ANEWARRAY: the class name of an object type, the descriptor of an array
+    public String getInternalName() {
+        return descriptor.charAt(0) == 'L' ? descriptor.substring(1, descriptor.length() - 1) : descriptor;
+    }
+
+    // The one array type with this element type
+    public synchronized ArrayType arrayOf() {
+        if (array == null) {
+            array = new ArrayType(this);
+        }
+        return array;
+    }
+
+    // The type with every array level taken off (Point for Point[][])
+    public Type getBaseType() {
+        return this;
+    }
+
+    public boolean isNumeric() {
+        return this == INT || this == FLOAT;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,83 @@
+package compiler.Semantic;
+
+import compiler.Parser.AST.ASTNode;
+import compiler.Parser.AST.AssignmentNode;
+import compiler.Parser.AST.CollectionNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The canonical types of one program, looked up by the names the source
+ * writes them with.
+ */
+public class Types {
+    // Every name resolved so far, so a repeated "INT[]" is one map lookup
+    private final Map<String, Type> named = new HashMap<>();
+    private final Map<String, CollectionType> collections = new HashMap<>();
+    private final List<CollectionType> declared = new ArrayList<>();
+
+    public Types() {
+        for (Type primitive : new Type[] {Type.INT, Type.FLOAT, Type.BOOL, Type.STRING}) {
+            named.put(primitive.getName(), primitive);
+        }
+    }
+
+    /**
+     * The type written as name: a primitive, an array ("INT[]") or otherwise a
+     * collection, declared or not. null for null (no type written).
+     */
+    public Type named(String name) {
+        if (name == null) {
+            return null;
+        }
+        Type type = named.get(name);
+        if (type == null) {
+            if (name.endsWith("[]")) {
+                type = named(name.substring(0, name.length() - 2)).arrayOf();
+            } else {
+                type = collections.computeIfAbsent(name, CollectionType::new);
+            }
+            named.put(name, type);
+        }
+        return type;
+    }
+
+    // A type as getName() spells it; unlike named(), this includes VOID, which source cannot write
+    public Type stored(String name) {
+        return Type.VOID.getName().equals(name) ? Type.VOID : named(name);
+    }
+
+    // The declared collection called name, or null
+    public CollectionType collection(String name) {
+        CollectionType collection = collections.get(name);
+        return collection != null && collection.isDeclared() ? collection : null;
+    }
+
+    public CollectionType declareCollection(String name, List<CollectionType.Field> fields) {
+        CollectionType collection = (CollectionType) named(name);
+        if (!collection.isDeclared()) {
+            declared.add(collection);
+        }
+        collection.declare(fields);
+        return collection;
+    }
+
+    // Declares the collection with the fields node lists, in order
+    public CollectionType declareCollection(CollectionNode node) {
+        List<CollectionType.Field> fields = new ArrayList<>();
+        for (ASTNode member : node.getBody().getStatements()) {
+            if (member instanceof AssignmentNode field) {
+                fields.add(new CollectionType.Field(field.getIdentifier(), named(field.getType())));
+            }
+        }
+        return declareCollection(node.getName(), fields);
+    }
+
+    // Declared collections, in declaration order
+    public List<CollectionType> getCollections() {
+        return declared;
+    }
+}
@@ -0,0 +1,61 @@
+package Benchmark;
+
+import compiler.Cache.ASTCache;
+import compiler.Lexer.Lexer;
+import compiler.Lexer.TokenStream;
+import compiler.Parser.AST.ASTNode;
+import compiler.Parser.AST.FlatAST;
+import compiler.Parser.Parser;
+import compiler.Semantic.SemanticAnalyzer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Cold against warm front end for a large file, as Compiler runs it with
+ * -Dcompiler.cache: hash, lex, parse, analyze and store on a miss; hash and
+ * load on a hit. Code generation is the same either way and left out.
+ * Run with: gradle benchmark -Pbench=ASTCacheBenchmark
+ */
+public class ASTCacheBenchmark {
+    private static final int FUNCTIONS = 20000;
+
+    public static void main(String[] args) throws Exception {
+        Path dir = Files.createTempDirectory("ast-cache");
+        Path source = dir.resolve("large.lang");
+        Files.writeString(source, SourceGenerator.program(FUNCTIONS));
+        System.out.println("Source: " + Files.size(source) / 1024 + " KB");
+
+        int[] misses = new int[1];
+        ParserBenchmark.measure("cold (miss + store)", () -> {
+            // A new directory each time, so every run misses
+            return compile(source, new ASTCache(dir.resolve("cold" + misses[0]++)));
+        });
+
+        ASTCache cache = new ASTCache(dir.resolve("warm"));
+        FlatAST ast = compile(source, cache);
+        ParserBenchmark.measure("warm (hit)", () -> compile(source, cache));
+
+        long entry;
+        try (var files = Files.list(dir.resolve("warm"))) {
+            entry = Files.size(files.findFirst().orElseThrow());
+        }
+        System.out.printf("entry: %d KB for %d nodes%n", entry / 1024, ast.size());
+    }
+
+    private static FlatAST compile(Path source, ASTCache cache) throws Exception {
+        String key = ASTCache.key(Files.readAllBytes(source));
+        FlatAST ast = cache.load(key);
+        if (ast == null) {
+            ASTNode root;
+            try (Lexer lexer = new Lexer(source)) {
+                root = new Parser(TokenStream.lex(lexer)).getAST();
+            }
+            new SemanticAnalyzer().analyze(root);
+            // Stored with its types, as the generator reads them on a hit
+            ast = FlatAST.of(root);
+            cache.store(key, ast);
+        }
+        return ast;
+    }
+}
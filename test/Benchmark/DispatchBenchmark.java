@@ -0,0 +1,192 @@
+package Benchmark;
+
+import compiler.CodeGen.CodeGenerator;
+import compiler.Lexer.TokenStream;
+import compiler.Parser.AST.*;
+import compiler.Parser.Parser;
+import compiler.Semantic.SemanticAnalyzer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Compares node dispatch through a pattern switch over the node classes with
+ * ASTNode.accept on a large AST: two walkers that do the same trivial work per
+ * node, then the semantic analyzer and code generator, which dispatch with accept.
+ * Run with: gradle benchmark -Pbench=DispatchBenchmark
+ */
+public class DispatchBenchmark {
+    private static final int FUNCTIONS = 20000;
+    private static final int WARMUP = 5;
+    private static final int RUNS = 10;
+
+    public static void main(String[] args) throws Exception {
+        ASTNode root = new Parser(TokenStream.lex(SourceGenerator.program(FUNCTIONS))).getAST();
+        Path output = Files.createTempDirectory("dispatch").resolve("Bench.class");
+
+        measure("pattern switch", () -> walk(root));
+        measure("accept(visitor)", () -> root.accept(new Counter(), null));
+        measure("analyze", () -> {
+            new SemanticAnalyzer().analyze(root);
+            return 0;
+        });
+        measure("analyze + generate", () -> {
+            SemanticAnalyzer analyzer = new SemanticAnalyzer();
+            analyzer.analyze(root);
+            new CodeGenerator(analyzer.getTypes()).generate(root, output.toString());
+            return 0;
+        });
+    }
+
+    private static int walkAll(List<ASTNode> nodes) {
+        int count = 0;
+        for (ASTNode node : nodes) {
+            count += walk(node);
+        }
+        return count;
+    }
+
+    private static int walk(ASTNode node) {
+        return switch (node) {
+            case null -> 0;
+            case BlockNode block -> 1 + walkAll(block.getStatements());
+            case FinalNode fin -> 1 + walk(fin.getAssignment());
+            case AssignmentNode assignment -> 1 + walk(assignment.getExpression());
+            case CollectionNode collection -> 1 + walk(collection.getBody());
+            case FunctionNode function -> 1 + walkAll(function.getArgs()) + walk(function.getBody());
+            case IfNode ifNode -> 1 + walk(ifNode.getCondition()) + walk(ifNode.getThenBlock()) + walk(ifNode.getElseBlock());
+            case WhileNode whileNode -> 1 + walk(whileNode.getCondition()) + walk(whileNode.getBody());
+            case ForNode forNode -> 1 + walk(forNode.getInit()) + walk(forNode.getRangeStart())
+                    + walk(forNode.getRangeEnd()) + walk(forNode.getUpdate()) + walk(forNode.getBody());
+            case ReturnNode returnNode -> 1 + walk(returnNode.getExpression());
+            case ArrayStoreNode store -> 1 + walk(store.getArray()) + walk(store.getIndex()) + walk(store.getValue());
+            case FieldStoreNode store -> 1 + walk(store.getTarget()) + walk(store.getValue());
+            case FunctionCallNode call -> 1 + walkAll(call.getArguments());
+            case ConstructorCallNode call -> 1 + walkAll(call.getArguments());
+            case BinaryExpressionNode binary -> 1 + walk(binary.getLeft()) + walk(binary.getRight());
+            case UnaryNode unary -> 1 + walk(unary.getOperand());
+            case LiteralNode literal -> 1;
+            case IdentifierNode identifier -> 1;
+            case ArrayInitNode init -> 1 + walk(init.getSize());
+            case IndexAccessNode access -> 1 + walk(access.getArray()) + walk(access.getIndex());
+            case MemberAccessNode access -> 1 + walk(access.getCollection());
+            default -> throw new IllegalStateException();
+        };
+    }
+
+    // The same walk through accept
+    private static class Counter implements ASTVisitor<Integer, Void> {
+        private int count(ASTNode node) {
+            return node == null ? 0 : node.accept(this, null);
+        }
+
+        private int countAll(List<ASTNode> nodes) {
+            int count = 0;
+            for (ASTNode node : nodes) {
+                count += node.accept(this, null);
+            }
+            return count;
+        }
+
+        public Integer visitBlock(BlockNode node, Void arg) {
+            return 1 + countAll(node.getStatements());
+        }
+
+        public Integer visitFinal(FinalNode node, Void arg) {
+            return 1 + count(node.getAssignment());
+        }
+
+        public Integer visitAssignment(AssignmentNode node, Void arg) {
+            return 1 + count(node.getExpression());
+        }
+
+        public Integer visitCollection(CollectionNode node, Void arg) {
+            return 1 + count(node.getBody());
+        }
+
+        public Integer visitFunction(FunctionNode node, Void arg) {
+            return 1 + countAll(node.getArgs()) + count(node.getBody());
+        }
+
+        public Integer visitIf(IfNode node, Void arg) {
+            return 1 + count(node.getCondition()) + count(node.getThenBlock()) + count(node.getElseBlock());
+        }
+
+        public Integer visitWhile(WhileNode node, Void arg) {
+            return 1 + count(node.getCondition()) + count(node.getBody());
+        }
+
+        public Integer visitFor(ForNode node, Void arg) {
+            return 1 + count(node.getInit()) + count(node.getRangeStart())
+                    + count(node.getRangeEnd()) + count(node.getUpdate()) + count(node.getBody());
+        }
+
+        public Integer visitReturn(ReturnNode node, Void arg) {
+            return 1 + count(node.getExpression());
+        }
+
+        public Integer visitArrayStore(ArrayStoreNode node, Void arg) {
+            return 1 + count(node.getArray()) + count(node.getIndex()) + count(node.getValue());
+        }
+
+        public Integer visitFieldStore(FieldStoreNode node, Void arg) {
+            return 1 + count(node.getTarget()) + count(node.getValue());
+        }
+
+        public Integer visitFunctionCall(FunctionCallNode node, Void arg) {
+            return 1 + countAll(node.getArguments());
+        }
+
+        public Integer visitConstructorCall(ConstructorCallNode node, Void arg) {
+            return 1 + countAll(node.getArguments());
+        }
+
+        public Integer visitBinaryExpression(BinaryExpressionNode node, Void arg) {
+            return 1 + count(node.getLeft()) + count(node.getRight());
+        }
+
+        public Integer visitUnary(UnaryNode node, Void arg) {
+            return 1 + count(node.getOperand());
+        }
+
+        public Integer visitLiteral(LiteralNode node, Void arg) {
+            return 1;
+        }
+
+        public Integer visitIdentifier(IdentifierNode node, Void arg) {
+            return 1;
+        }
+
+        public Integer visitArrayInit(ArrayInitNode node, Void arg) {
+            return 1 + count(node.getSize());
+        }
+
+        public Integer visitIndexAccess(IndexAccessNode node, Void arg) {
+            return 1 + count(node.getArray()) + count(node.getIndex());
+        }
+
+        public Integer visitMemberAccess(MemberAccessNode node, Void arg) {
+            return 1 + count(node.getCollection());
+        }
+    }
+
+    private static void measure(String name, Task task) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            task.run();
+        }
+
+        int result = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            result = task.run();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        System.out.printf("%-20s %,10d  %8.2f ms%n", name, result, elapsed / 1e6 / RUNS);
+    }
+
+    interface Task {
+        int run() throws Exception;
+    }
+}
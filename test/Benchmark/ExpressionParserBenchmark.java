@@ -0,0 +1,121 @@
+package Benchmark;
+
+import compiler.Lexer.TokenStream;
+import compiler.Parser.Parser;
+
+import java.util.Random;
+
+/**
+ * Parses an expression-heavy program from an already lexed TokenStream, so only
+ * expression parsing is timed, and finds the deepest parenthesized expression
+ * the parser handles on a thread with a small fixed stack (a proxy for the
+ * number of nested calls per operand).
+ * Run with: gradle benchmark -Pbench=ExpressionParserBenchmark
+ */
+public class ExpressionParserBenchmark {
+    private static final int STATEMENTS = 10000;
+    private static final int WARMUP = 5;
+    private static final int RUNS = 20;
+    private static final long STACK_SIZE = 256 * 1024;
+    // The search stops here; past StackGuard's threshold depth only costs memory
+    private static final int MAX_DEPTH = 1 << 17;
+
+    private static final String[] OPERATORS = {
+            "+", "-", "*", "/", "%", "==", "=/=", "<", ">", "<=", ">=", "&&", "||"
+    };
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < STATEMENTS; i++) {
+            sb.append("INT v").append(i).append(" = ");
+            expression(sb, random, 4);
+            sb.append(";\n");
+        }
+        TokenStream tokens = TokenStream.lex(sb.toString());
+
+        System.out.println("Statements: " + STATEMENTS + ", tokens: " + tokens.size());
+
+        for (int i = 0; i < WARMUP; i++) {
+            new Parser(tokens).getAST();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            new Parser(tokens).getAST();
+        }
+        double millis = (System.nanoTime() - start) / 1e6 / RUNS;
+        System.out.printf("Parse               %8.2f ms  %,12.0f tokens/s%n", millis, tokens.size() / millis * 1000);
+
+        int depth = maxDepth();
+        System.out.printf("Max nesting depth   %,8d%s  (%d KB stack)%n",
+                depth, depth >= MAX_DEPTH ? "+" : "", STACK_SIZE / 1024);
+    }
+
+    private static void expression(StringBuilder sb, Random random, int depth) {
+        operand(sb, random, depth);
+        int operators = 1 + random.nextInt(4);
+        for (int i = 0; i < operators; i++) {
+            sb.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ');
+            operand(sb, random, depth);
+        }
+    }
+
+    private static void operand(StringBuilder sb, Random random, int depth) {
+        switch (depth == 0 ? random.nextInt(3) : random.nextInt(6)) {
+            case 0 -> sb.append(random.nextInt(1000));
+            case 1 -> sb.append('x').append(random.nextInt(50));
+            case 2 -> sb.append("p.x");
+            case 3 -> {
+                sb.append('(');
+                expression(sb, random, depth - 1);
+                sb.append(')');
+            }
+            case 4 -> {
+                sb.append("a[");
+                expression(sb, random, depth - 1);
+                sb.append(']');
+            }
+            default -> {
+                sb.append("f(");
+                expression(sb, random, depth - 1);
+                sb.append(", 1)");
+            }
+        }
+    }
+
+    // Doubles, then bisects, the nesting of "((...(1)...))" until the parser overflows the stack (or MAX_DEPTH)
+    private static int maxDepth() throws InterruptedException {
+        int low = 1;
+        int high = 2;
+        while (high <= MAX_DEPTH && parses(high)) {
+            low = high;
+            high *= 2;
+        }
+        while (low < MAX_DEPTH && high - low > 1) {
+            int middle = (low + high) >>> 1;
+            if (parses(middle)) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static boolean parses(int depth) throws InterruptedException {
+        String source = "INT x = " + "(".repeat(depth) + "1" + ")".repeat(depth) + ";";
+        TokenStream tokens = TokenStream.lex(source);
+        boolean[] ok = new boolean[1];
+        Thread thread = new Thread(null, () -> {
+            try {
+                new Parser(tokens).getAST();
+                ok[0] = true;
+            } catch (StackOverflowError e) {
+                ok[0] = false;
+            }
+        }, "parser", STACK_SIZE);
+        thread.start();
+        thread.join();
+        return ok[0];
+    }
+}
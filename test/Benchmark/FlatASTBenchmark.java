@@ -0,0 +1,59 @@
+package Benchmark;
+
+import compiler.Lexer.TokenStream;
+import compiler.Parser.AST.ASTNode;
+import compiler.Parser.AST.FlatAST;
+import compiler.Parser.Parser;
+import compiler.Semantic.SemanticAnalyzer;
+
+/**
+ * Retained heap of the object AST against the FlatAST for a large generated
+ * program, plus semantic analysis time over each form.
+ * Run with: gradle benchmark -Pbench=FlatASTBenchmark
+ */
+public class FlatASTBenchmark {
+    private static final int FUNCTIONS = 100000;
+    private static final int RUNS = 5;
+
+    // Static, so each tree stays reachable while the other is measured
+    private static ASTNode root;
+    private static FlatAST ast;
+
+    public static void main(String[] args) throws Exception {
+        TokenStream tokens = TokenStream.lex(SourceGenerator.program(FUNCTIONS));
+        System.out.println("Tokens: " + tokens.size());
+
+        long before = usedHeap();
+        root = new Parser(tokens).getAST();
+        long objectTree = usedHeap() - before;
+
+        before = usedHeap();
+        ast = new Parser(tokens).getFlatAST();
+        long flatTree = usedHeap() - before;
+
+        System.out.printf("object AST  %8.1f MB%n", objectTree / 1e6);
+        System.out.printf("FlatAST     %8.1f MB  (%d nodes, %.1f bytes/node)%n",
+                flatTree / 1e6, ast.size(), (double) flatTree / ast.size());
+
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            new SemanticAnalyzer().analyze(root);
+            long objectTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            new SemanticAnalyzer().analyze(ast);
+            long flatTime = System.nanoTime() - start;
+
+            System.out.printf("analyze: object AST %8.2f ms   FlatAST %8.2f ms%n", objectTime / 1e6, flatTime / 1e6);
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,56 @@
+package Benchmark;
+
+import compiler.Lexer.TokenStream;
+import compiler.Parser.AST.ASTNode;
+import compiler.Parser.AST.NodeFactory;
+import compiler.Parser.Parser;
+
+/**
+ * Retained heap and parse time of the object AST for a large generated
+ * program, with plain nodes against a hash-consing NodeFactory (whose
+ * table is counted, since it lives as long as the tree does).
+ * Run with: gradle benchmark -Pbench=HashConsingBenchmark
+ */
+public class HashConsingBenchmark {
+    private static final int FUNCTIONS = 20000;
+
+    // Static, so each tree stays reachable while the other is measured
+    private static ASTNode plain;
+    private static ASTNode shared;
+
+    public static void main(String[] args) throws Exception {
+        TokenStream tokens = TokenStream.lex(SourceGenerator.program(FUNCTIONS));
+        System.out.println("Tokens: " + tokens.size());
+
+        long before = usedHeap();
+        plain = new Parser(tokens).getAST();
+        long plainTree = usedHeap() - before;
+
+        before = usedHeap();
+        NodeFactory factory = NodeFactory.hashConsing();
+        Parser parser = new Parser(tokens);
+        parser.setNodeFactory(factory);
+        shared = parser.getAST();
+        long sharedTree = usedHeap() - before;
+
+        System.out.printf("plain nodes   %8.1f MB%n", plainTree / 1e6);
+        System.out.printf("hash-consed   %8.1f MB  (%d distinct expression nodes)%n",
+                sharedTree / 1e6, factory.size());
+
+        ParserBenchmark.measure("parse plain", () -> new Parser(tokens).getAST());
+        ParserBenchmark.measure("parse hash-consed", () -> {
+            Parser p = new Parser(tokens);
+            p.setNodeFactory(NodeFactory.hashConsing());
+            return p.getAST();
+        });
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
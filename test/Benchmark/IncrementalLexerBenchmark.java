@@ -0,0 +1,55 @@
+package Benchmark;
+
+import compiler.Lexer.TokenStream;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Simulates typing into a ~50k line file: compares TokenStream.edit with
+ * lexing the whole edited source again.
+ * Run with: gradle benchmark -Pbench=IncrementalLexerBenchmark
+ */
+public class IncrementalLexerBenchmark {
+    private static final int FUNCTIONS = 2500;
+    private static final int EDITS = 500;
+
+    public static void main(String[] args) {
+        String source = SourceGenerator.program(FUNCTIONS);
+        System.out.println("Source: " + source.lines().count() + " lines, " + source.length() / 1024 + " KB");
+
+        for (int round = 0; round < 3; round++) {
+            Random random = new Random(round);
+            TokenStream stream = TokenStream.lex(source);
+            String text = source;
+
+            long[] times = new long[EDITS];
+            long full = 0;
+            for (int i = 0; i < EDITS; i++) {
+                // Alternate typing a character and deleting it again
+                int offset = random.nextInt(text.length());
+                boolean insert = i % 2 == 0;
+                String inserted = insert ? "x" : "";
+                int removed = insert ? 0 : 1;
+
+                long start = System.nanoTime();
+                stream.edit(offset, removed, inserted);
+                times[i] = System.nanoTime() - start;
+
+                text = text.substring(0, offset) + inserted + text.substring(offset + removed);
+                start = System.nanoTime();
+                TokenStream.lex(text);
+                full += System.nanoTime() - start;
+            }
+
+            long incremental = 0;
+            for (long time : times) {
+                incremental += time;
+            }
+            Arrays.sort(times);
+            System.out.printf("round %d: edit %6.3f ms mean, %6.3f ms median, %6.3f ms p99   full relex %8.3f ms%n",
+                    round, incremental / 1e6 / EDITS, times[EDITS / 2] / 1e6, times[EDITS * 99 / 100] / 1e6,
+                    full / 1e6 / EDITS);
+        }
+    }
+}
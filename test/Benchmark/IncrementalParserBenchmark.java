@@ -0,0 +1,58 @@
+package Benchmark;
+
+import compiler.Lexer.TokenStream;
+import compiler.Parser.IncrementalParser;
+import compiler.Parser.Parser;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Simulates editing function bodies in a large file: compares
+ * IncrementalParser.edit with editing the TokenStream and parsing all of it again.
+ * Run with: gradle benchmark -Pbench=IncrementalParserBenchmark
+ */
+public class IncrementalParserBenchmark {
+    private static final int FUNCTIONS = 2500;
+    private static final int EDITS = 500;
+
+    public static void main(String[] args) {
+        String source = SourceGenerator.program(FUNCTIONS);
+        System.out.println("Source: " + source.lines().count() + " lines, " + source.length() / 1024 + " KB");
+
+        for (int round = 0; round < 3; round++) {
+            Random random = new Random(round);
+            IncrementalParser incremental = new IncrementalParser(TokenStream.lex(source));
+            TokenStream stream = TokenStream.lex(source);
+            String text = source;
+
+            long[] times = new long[EDITS];
+            long full = 0;
+            for (int i = 0; i < EDITS; i++) {
+                // Change the constant in "INT value = a * 2 + b - N ;" of a random function
+                int offset = text.indexOf("b - ", random.nextInt(text.length() - 1000)) + 4;
+                int removed = text.indexOf(' ', offset) - offset;
+                String inserted = String.valueOf(random.nextInt(100));
+
+                long start = System.nanoTime();
+                incremental.edit(offset, removed, inserted);
+                times[i] = System.nanoTime() - start;
+
+                text = text.substring(0, offset) + inserted + text.substring(offset + removed);
+                start = System.nanoTime();
+                stream.edit(offset, removed, inserted);
+                new Parser(stream).getAST();
+                full += System.nanoTime() - start;
+            }
+
+            long total = 0;
+            for (long time : times) {
+                total += time;
+            }
+            Arrays.sort(times);
+            System.out.printf("round %d: edit %6.3f ms mean, %6.3f ms median, %6.3f ms p99   full reparse %8.3f ms%n",
+                    round, total / 1e6 / EDITS, times[EDITS / 2] / 1e6, times[EDITS * 99 / 100] / 1e6,
+                    full / 1e6 / EDITS);
+        }
+    }
+}
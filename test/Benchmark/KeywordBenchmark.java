@@ -0,0 +1,104 @@
+package Benchmark;
+
+import compiler.Lexer.Keywords;
+import compiler.Lexer.Lexer;
+import compiler.Lexer.TokenStream;
+import compiler.Lexer.TokenType;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares keyword classification through a String-keyed HashMap (build the
+ * lexeme, then look it up) with Keywords.lookup over the raw characters,
+ * and lexes a keyword-heavy program end to end.
+ * Run with: gradle benchmark -Pbench=KeywordBenchmark
+ */
+public class KeywordBenchmark {
+    private static final int WORDS = 1_000_000;
+    private static final int WARMUP = 5;
+    private static final int RUNS = 10;
+
+    // Every keyword, plus identifiers that share a prefix, length or first character with one
+    private static final String[] VOCABULARY = {
+            "final", "coll", "def", "for", "while", "if", "else", "return", "not", "ARRAY",
+            "INT", "FLOAT", "BOOL", "STRING", "true", "false", "str", "length", "floor", "ceil",
+            "read_INT", "read_FLOAT", "read_STRING", "print_INT", "print_FLOAT",
+            "print", "println", "write", "main", "min", "max", "abs", "pow", "sort",
+            "finally", "collect", "define", "form", "whilst", "iff", "elsewhere", "returned",
+            "note", "Point", "Integer", "flag", "strength", "len", "floors", "ceiling",
+            "reader", "printer", "writer", "mainly", "mini", "maximum", "absolute", "power",
+            "sorted", "x", "i", "total", "value", "counter"
+    };
+
+    public static void main(String[] args) throws Exception {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < WORDS; i++) {
+            sb.append(VOCABULARY[random.nextInt(VOCABULARY.length)]).append(' ');
+        }
+        char[] chars = sb.toString().toCharArray();
+        int[] starts = new int[WORDS];
+        int[] lengths = new int[WORDS];
+        for (int i = 0, p = 0; i < WORDS; i++) {
+            starts[i] = p;
+            while (chars[p] != ' ') {
+                p++;
+            }
+            lengths[i] = p - starts[i];
+            p++;
+        }
+
+        Map<String, TokenType> map = new HashMap<>();
+        for (String word : VOCABULARY) {
+            TokenType type = Keywords.lookup(word.toCharArray(), 0, word.length());
+            if (type != null) {
+                map.put(word, type);
+            }
+        }
+
+        System.out.println("Words: " + WORDS + ", source size: " + chars.length / 1024 + " KB");
+
+        measure("HashMap<String>", () -> {
+            int keywords = 0;
+            for (int i = 0; i < WORDS; i++) {
+                if (map.get(new String(chars, starts[i], lengths[i])) != null) {
+                    keywords++;
+                }
+            }
+            return keywords;
+        });
+        measure("Keywords.lookup", () -> {
+            int keywords = 0;
+            for (int i = 0; i < WORDS; i++) {
+                if (Keywords.lookup(chars, starts[i], lengths[i]) != null) {
+                    keywords++;
+                }
+            }
+            return keywords;
+        });
+        measure("TokenStream.lex", () -> TokenStream.lex(new Lexer(chars, chars.length)).size());
+    }
+
+    private static void measure(String name, Task task) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            task.run();
+        }
+
+        int result = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            result = task.run();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        double seconds = elapsed / 1e9 / RUNS;
+        System.out.printf("%-16s %,10d  %8.2f ms  %,14.0f words/s%n",
+                name, result, seconds * 1000, WORDS / seconds);
+    }
+
+    interface Task {
+        int run() throws Exception;
+    }
+}
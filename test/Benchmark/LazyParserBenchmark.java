@@ -0,0 +1,65 @@
+package Benchmark;
+
+import compiler.Lexer.TokenStream;
+import compiler.Parser.AST.ASTNode;
+import compiler.Parser.AST.BlockNode;
+import compiler.Parser.AST.FunctionNode;
+import compiler.Parser.Parser;
+
+/**
+ * Extracts every function signature from a large pre-lexed program, once with
+ * all bodies parsed and once with lazy function bodies, and compares time,
+ * allocation and the heap the trees retain.
+ * Run with: gradle benchmark -Pbench=LazyParserBenchmark
+ */
+public class LazyParserBenchmark {
+    private static final int FUNCTIONS = 50000;
+
+    public static void main(String[] args) throws Exception {
+        String source = SourceGenerator.program(FUNCTIONS);
+        TokenStream tokens = TokenStream.lex(source);
+        System.out.println("Source size: " + source.length() / 1024 + " KB, " + tokens.size() + " tokens");
+
+        ParserBenchmark.measure("eager signatures", () -> signatures(parse(tokens, false)));
+        ParserBenchmark.measure("lazy signatures", () -> signatures(parse(tokens, true)));
+
+        System.out.printf("eager tree retains %8.1f MB%n", retained(tokens, false) / 1e6);
+        System.out.printf("lazy tree retains  %8.1f MB%n", retained(tokens, true) / 1e6);
+    }
+
+    private static BlockNode parse(TokenStream tokens, boolean lazy) {
+        Parser parser = new Parser(tokens);
+        parser.setLazyFunctionBodies(lazy);
+        return (BlockNode) parser.getAST();
+    }
+
+    // What a signature indexer needs: name, return type and parameter count
+    private static int signatures(BlockNode program) {
+        int hash = 0;
+        for (ASTNode node : program.getStatements()) {
+            if (node instanceof FunctionNode function) {
+                hash = hash * 31 + function.getName().hashCode() + function.getArgs().size();
+                hash += function.getReturnType() == null ? 0 : function.getReturnType().hashCode();
+            }
+        }
+        return hash;
+    }
+
+    private static long retained(TokenStream tokens, boolean lazy) {
+        long before = usedHeap();
+        BlockNode program = parse(tokens, lazy);
+        long after = usedHeap();
+        if (program.getStatements().isEmpty()) {
+            throw new IllegalStateException();
+        }
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,73 @@
+package Benchmark;
+
+import compiler.Lexer.Lexer;
+import compiler.Lexer.TokenType;
+
+import java.io.FileReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Measures lexer throughput in tokens per second.
+ * Run with: gradle benchmark -Pbench=LexerBenchmark
+ */
+public class LexerBenchmark {
+    private static final int FUNCTIONS = 20000;
+    private static final int WARMUP = 5;
+    private static final int RUNS = 10;
+
+    public static void main(String[] args) throws Exception {
+        String source = SourceGenerator.program(FUNCTIONS);
+        Path file = Files.createTempFile("lexer-bench", ".lang");
+        Files.writeString(file, source);
+
+        System.out.println("Source size: " + source.length() / 1024 + " KB");
+
+        measure("FileReader", () -> {
+            try (Reader reader = new FileReader(file.toFile())) {
+                return countTokens(new Lexer(reader));
+            }
+        });
+        measure("mapped Path", () -> {
+            try (Lexer lexer = new Lexer(file)) {
+                return countTokens(lexer);
+            }
+        });
+        measure("StringReader", () -> countTokens(new Lexer(new StringReader(source))));
+        char[] chars = source.toCharArray();
+        measure("char[]", () -> countTokens(new Lexer(chars, chars.length)));
+
+        Files.deleteIfExists(file);
+    }
+
+    private static int countTokens(Lexer lexer) {
+        int count = 0;
+        while (lexer.getNextSymbol().getType() != TokenType.EOF) {
+            count++;
+        }
+        return count;
+    }
+
+    private static void measure(String name, Task task) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            task.run();
+        }
+
+        int tokens = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            tokens = task.run();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        double seconds = elapsed / 1e9 / RUNS;
+        System.out.printf("%-14s %,10d tokens  %8.2f ms  %,14.0f tokens/s%n",
+                name, tokens, seconds * 1000, tokens / seconds);
+    }
+
+    interface Task {
+        int run() throws Exception;
+    }
+}
@@ -0,0 +1,57 @@
+package Benchmark;
+
+import compiler.Lexer.Lexer;
+import compiler.Lexer.ParallelLexer;
+import compiler.Lexer.TokenStream;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Lexes a large generated program into a TokenStream on one thread and with
+ * ParallelLexer on 1, 2, 4 and 8 worker threads.
+ * Run with: gradle benchmark -Pbench=ParallelLexerBenchmark
+ */
+public class ParallelLexerBenchmark {
+    private static final int FUNCTIONS = 100000;
+    private static final int WARMUP = 5;
+    private static final int RUNS = 10;
+
+    public static void main(String[] args) throws Exception {
+        String source = SourceGenerator.program(FUNCTIONS);
+        char[] chars = source.toCharArray();
+
+        System.out.println("Source size: " + source.length() / 1024 + " KB, "
+                + Runtime.getRuntime().availableProcessors() + " processors");
+
+        double sequential = measure("sequential", () -> TokenStream.lex(new Lexer(chars, chars.length)).size());
+        for (int threads : new int[] {1, 2, 4, 8}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            ParallelLexer lexer = new ParallelLexer(pool);
+            double elapsed = measure(threads + " thread(s)", () -> lexer.lex(chars, chars.length).size());
+            System.out.printf("%-14s speedup %.2fx%n", "", sequential / elapsed);
+            pool.shutdown();
+        }
+    }
+
+    private static double measure(String name, Task task) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            task.run();
+        }
+
+        int tokens = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            tokens = task.run();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        double seconds = elapsed / 1e9 / RUNS;
+        System.out.printf("%-14s %,10d tokens  %8.2f ms  %,14.0f tokens/s%n",
+                name, tokens, seconds * 1000, tokens / seconds);
+        return seconds;
+    }
+
+    interface Task {
+        int run() throws Exception;
+    }
+}
@@ -0,0 +1,55 @@
+package Benchmark;
+
+import compiler.Lexer.TokenStream;
+import compiler.Parser.ParallelParser;
+import compiler.Parser.Parser;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Parses a large pre-lexed program with Parser on one thread and with
+ * ParallelParser on 1, 2, 4 and 8 worker threads.
+ * Run with: gradle benchmark -Pbench=ParallelParserBenchmark
+ */
+public class ParallelParserBenchmark {
+    private static final int FUNCTIONS = 50000;
+    private static final int WARMUP = 5;
+    private static final int RUNS = 10;
+
+    public static void main(String[] args) throws Exception {
+        String source = SourceGenerator.program(FUNCTIONS);
+        TokenStream tokens = TokenStream.lex(source);
+
+        System.out.println("Source size: " + source.length() / 1024 + " KB, " + tokens.size() + " tokens, "
+                + Runtime.getRuntime().availableProcessors() + " processors");
+
+        double sequential = measure("sequential", () -> new Parser(tokens).getAST());
+        for (int threads : new int[] {1, 2, 4, 8}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            ParallelParser parser = new ParallelParser(pool);
+            double elapsed = measure(threads + " thread(s)", () -> parser.parse(tokens));
+            System.out.printf("%-14s speedup %.2fx%n", "", sequential / elapsed);
+            pool.shutdown();
+        }
+    }
+
+    private static double measure(String name, Task task) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            task.run();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            task.run();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        double seconds = elapsed / 1e9 / RUNS;
+        System.out.printf("%-14s %8.2f ms%n", name, seconds * 1000);
+        return seconds;
+    }
+
+    interface Task {
+        Object run() throws Exception;
+    }
+}
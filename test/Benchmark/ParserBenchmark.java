@@ -0,0 +1,52 @@
+package Benchmark;
+
+import compiler.Lexer.Lexer;
+import compiler.Lexer.TokenStream;
+import compiler.Parser.Parser;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures lex + parse time and the bytes allocated doing it.
+ * Run with: gradle benchmark -Pbench=ParserBenchmark
+ */
+public class ParserBenchmark {
+    private static final int FUNCTIONS = 20000;
+    private static final int WARMUP = 5;
+    private static final int RUNS = 10;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        String source = SourceGenerator.program(FUNCTIONS);
+        char[] chars = source.toCharArray();
+
+        System.out.println("Source size: " + source.length() / 1024 + " KB");
+
+        measure("Symbol stream", () -> new Parser(new Lexer(chars, chars.length)).getAST());
+        measure("TokenStream", () -> new Parser(TokenStream.lex(new Lexer(chars, chars.length))).getAST());
+    }
+
+    static void measure(String name, Task task) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            task.run();
+        }
+
+        long thread = Thread.currentThread().threadId();
+        long allocatedBefore = THREADS.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            task.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = THREADS.getThreadAllocatedBytes(thread) - allocatedBefore;
+
+        System.out.printf("%-20s %8.2f ms  %8.1f MB allocated%n",
+                name, elapsed / 1e6 / RUNS, allocated / 1e6 / RUNS);
+    }
+
+    interface Task {
+        Object run() throws Exception;
+    }
+}
@@ -0,0 +1,47 @@
+package Benchmark;
+
+import compiler.Lexer.TokenStream;
+import compiler.Parser.AST.ASTNode;
+import compiler.Parser.AST.ASTPrinter;
+import compiler.Parser.Parser;
+
+import java.io.BufferedWriter;
+import java.io.Writer;
+
+/**
+ * Prints a tree of deeply nested expressions the way -parser does: once
+ * through ASTNode.print into one String, once streamed by ASTPrinter.
+ * Run with: gradle benchmark -Pbench=PrinterBenchmark
+ */
+public class PrinterBenchmark {
+    private static final int STATEMENTS = 200;
+    private static final int DEPTH = 300;
+    private static final int WARMUP = 3;
+    private static final int RUNS = 5;
+
+    public static void main(String[] args) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < STATEMENTS; i++) {
+            // Calls, indexing and unary minus each indent their operand further
+            sb.append("INT v").append(i).append(" = ");
+            for (int d = 0; d < DEPTH; d++) {
+                sb.append(d % 3 == 0 ? "f(" : d % 3 == 1 ? "a[" : "-(");
+            }
+            sb.append("x");
+            for (int d = DEPTH - 1; d >= 0; d--) {
+                sb.append(d % 3 == 0 ? ", 1)" : d % 3 == 1 ? "]" : ")");
+            }
+            sb.append(";\n");
+        }
+        ASTNode root = new Parser(TokenStream.lex(sb.toString())).getAST();
+        System.out.println("Output size: " + root.print("").length() / 1024 + " KB");
+
+        ParserBenchmark.measure("ASTNode.print", () -> root.print("").length());
+        ParserBenchmark.measure("ASTPrinter", () -> {
+            Writer out = new BufferedWriter(Writer.nullWriter(), 1 << 16);
+            new ASTPrinter(out).print(root);
+            out.flush();
+            return out;
+        });
+    }
+}
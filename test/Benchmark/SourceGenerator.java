@@ -0,0 +1,56 @@
+package Benchmark;
+
+/**
+ * Builds large, valid .lang programs for the benchmarks.
+ * Every generated function mixes declarations, arithmetic, strings,
+ * comments, loops and collection accesses so all token kinds show up.
+ */
+public class SourceGenerator {
+
+    public static String program(int functions) {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append("# generated benchmark program\n");
+        sb.append("final INT limit = 100 ;\n");
+        sb.append("final FLOAT scale = 2.5 ;\n");
+        sb.append("coll Point {\n    INT x ;\n    INT y ;\n}\n");
+        sb.append("INT counter = 0 ;\n\n");
+
+        for (int i = 0; i < functions; i++) {
+            appendFunction(sb, i);
+        }
+
+        sb.append("def main ( ) {\n");
+        sb.append("    INT total = 0 ;\n");
+        for (int i = 0; i < Math.min(functions, 10); i++) {
+            sb.append("    total = total + f").append(i).append(" ( ").append(i).append(" , 3 ) ;\n");
+        }
+        sb.append("    println ( total ) ;\n");
+        sb.append("}\n");
+
+        return sb.toString();
+    }
+
+    private static void appendFunction(StringBuilder sb, int i) {
+        sb.append("def INT f").append(i).append(" ( INT a , INT b ) {\n");
+        sb.append("    # body of function ").append(i).append('\n');
+        sb.append("    INT value = a * 2 + b - ").append(i % 97).append(" ;\n");
+        sb.append("    FLOAT ratio = scale * .5 + 3.25 ;\n");
+        sb.append("    STRING label = \"function \\n").append(i).append("\" ;\n");
+        sb.append("    Point p = Point ( value , b ) ;\n");
+        sb.append("    INT [ ] history = INT ARRAY [ 4 ] ;\n");
+        sb.append("    history [ 0 ] = p . x ;\n");
+        sb.append("    while ( value < limit && b =/= 0 ) {\n");
+        sb.append("        value = value + 1 ;\n");
+        sb.append("    }\n");
+        sb.append("    for ( INT k ; 0 -> 10 ; k + 1 ) {\n");
+        sb.append("        p . x = p . x + k ;\n");
+        sb.append("    }\n");
+        sb.append("    if ( value >= 3 || ratio <= 1.0 ) {\n");
+        sb.append("        return value + history [ 0 ] ;\n");
+        sb.append("    } else {\n");
+        sb.append("        return p . y % 7 ;\n");
+        sb.append("    }\n");
+        sb.append("}\n\n");
+    }
+}
@@ -0,0 +1,67 @@
+package Benchmark;
+
+import compiler.Lexer.TokenStream;
+import compiler.Parser.AST.ASTNode;
+import compiler.Parser.Parser;
+import compiler.Semantic.SemanticAnalyzer;
+import compiler.Semantic.SymbolTable;
+import compiler.Semantic.Type;
+
+/**
+ * Semantic analysis of functions made of deeply nested blocks, where every
+ * level declares a variable and reads ones from the outermost scopes; plus
+ * the same pattern driven straight through a SymbolTable.
+ * Run with: gradle benchmark -Pbench=SymbolTableBenchmark
+ */
+public class SymbolTableBenchmark {
+    private static final int FUNCTIONS = 200;
+    private static final int DEPTH = 100;
+
+    public static void main(String[] args) throws Exception {
+        ASTNode root = new Parser(TokenStream.lex(program())).getAST();
+        System.out.println("Functions: " + FUNCTIONS + ", nesting depth: " + DEPTH);
+
+        ParserBenchmark.measure("analyze", () -> {
+            new SemanticAnalyzer().analyze(root);
+            return root;
+        });
+
+        String[] names = new String[DEPTH];
+        for (int i = 0; i < DEPTH; i++) {
+            names[i] = "v" + i;
+        }
+        ParserBenchmark.measure("table ops", () -> {
+            SymbolTable table = new SymbolTable();
+            table.declare("g", Type.INT, true);
+            int found = 0;
+            for (int f = 0; f < FUNCTIONS; f++) {
+                for (int i = 0; i < DEPTH; i++) {
+                    table.enterScope();
+                    table.declare(names[i], Type.INT, false);
+                    found += table.lookupType("g").getName().length() + table.lookupType(names[i / 2]).getName().length();
+                    found += table.isFinal("g") ? 1 : 0;
+                }
+                for (int i = 0; i < DEPTH; i++) {
+                    table.exitScope();
+                }
+            }
+            return found;
+        });
+    }
+
+    private static String program() {
+        StringBuilder sb = new StringBuilder("final INT limit = 100 ;\n");
+        for (int f = 0; f < FUNCTIONS; f++) {
+            sb.append("def INT f").append(f).append(" ( INT a ) {\n");
+            sb.append("INT v0 = a ;\n");
+            for (int i = 1; i < DEPTH; i++) {
+                sb.append("if ( v").append(i - 1).append(" < limit ) {\n");
+                sb.append("INT v").append(i).append(" = v").append(i - 1).append(" + a * limit ;\n");
+            }
+            sb.append("}\n".repeat(DEPTH - 1));
+            sb.append("return a ;\n}\n");
+        }
+        sb.append("def main ( ) {\nprintln ( f0 ( 1 ) ) ;\n}\n");
+        return sb.toString();
+    }
+}
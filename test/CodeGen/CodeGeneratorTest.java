@@ -3,7 +3,13 @@ package CodeGen;
 import compiler.CodeGen.CodeGenerator;
 import compiler.Lexer.Lexer;
 import compiler.Parser.Parser;
+import compiler.Lexer.TokenStream;
 import compiler.Parser.AST.ASTNode;
+import compiler.Parser.AST.BlockNode;
+import compiler.Parser.AST.FlatAST;
+import compiler.Parser.AST.FunctionNode;
+import compiler.Parser.AST.NodeFactory;
+import compiler.Parser.AST.ReturnNode;
 import compiler.Semantic.SemanticAnalyzer;
 
 import org.junit.Test;
@@ -13,6 +19,9 @@ import java.io.Reader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -34,10 +43,14 @@ public class CodeGeneratorTest {
             SemanticAnalyzer analyzer = new SemanticAnalyzer();
             analyzer.analyze(root);
 
-            CodeGenerator generator = new CodeGenerator();
+            CodeGenerator generator = new CodeGenerator(analyzer.getTypes());
             generator.generate(root, outputFile.toString());
         }
 
+        return run(className);
+    }
+
+    private String run(String className) throws Exception {
         Process process = new ProcessBuilder(
                 "java",
                 "-cp",
@@ -192,6 +205,93 @@ public class CodeGeneratorTest {
 
         assertEquals("0\n1\n2\n3\n4\n", output);
     }
+
+    @Test
+    public void compilesCallsInForUpdate() throws Exception {
+        String output = compileAndRunText("for_update_call", """
+                def INT inc ( INT v ) {
+                    return v + 2 ;
+                }
+                def main ( ) {
+                    INT i ;
+                    for ( i ; 0 -> 5 ; inc ( i ) ) {
+                        println ( i ) ;
+                    }
+                }
+                """);
+
+        assertEquals("0\n2\n4\n", output);
+    }
+
+    @Test
+    public void compilesMemberAccessInForUpdate() throws Exception {
+        String output = compileAndRunText("for_update_member", """
+                coll Step {
+                    INT x ;
+                }
+                def main ( ) {
+                    Step p = Step ( 3 ) ;
+                    INT i ;
+                    for ( i ; 0 -> 6 ; i + p . x ) {
+                        println ( i ) ;
+                    }
+                }
+                """);
+
+        assertEquals("0\n3\n", output);
+    }
+
+    private String compileAndRunText(String className, String text) throws Exception {
+        Path source = Path.of("build/test-codegen/" + className + ".lang");
+        Files.createDirectories(source.getParent());
+        Files.writeString(source, text);
+        return compileAndRun(source.toString(), className);
+    }
+
+    @Test
+    public void compilesHashConsedTrees() throws Exception {
+        String text = """
+                FLOAT x = 0.5 ;
+                def INT f ( INT x ) {
+                    return x + x ;
+                }
+                def FLOAT g ( FLOAT x ) {
+                    return x + x ;
+                }
+                def main ( ) {
+                    println ( x + x ) ;
+                    INT y = 2 ;
+                    if ( y > 1 ) {
+                        FLOAT y = 1.25 ;
+                        println ( y * y ) ;
+                    }
+                    println ( y * y ) ;
+                    println ( f ( 3 ) ) ;
+                    println ( g ( 1.5 ) ) ;
+                }
+                """;
+        for (boolean lazy : new boolean[] {false, true}) {
+            String className = lazy ? "hash_consed_lazy" : "hash_consed";
+            Parser parser = new Parser(TokenStream.lex(text));
+            parser.setNodeFactory(NodeFactory.hashConsing());
+            parser.setLazyFunctionBodies(lazy);
+            BlockNode root = (BlockNode) parser.getAST();
+
+            SemanticAnalyzer analyzer = new SemanticAnalyzer();
+            assertFalse(analyzer.analyze(root).hasErrors());
+            new CodeGenerator(analyzer.getTypes()).generate(root, "build/test-codegen/" + className + ".class");
+
+            // The x of f and the x of g are different variables, so x + x is not shared
+            ASTNode fSum = ((ReturnNode) ((FunctionNode) root.getStatements().get(1))
+                    .getBody().getStatements().getFirst()).getExpression();
+            ASTNode gSum = ((ReturnNode) ((FunctionNode) root.getStatements().get(2))
+                    .getBody().getStatements().getFirst()).getExpression();
+            assertNotSame(fSum, gSum);
+
+            assertEquals(className, "1.0\n1.5625\n4\n6\n3.0\n", run(className));
+        }
+    }
+
     @Test
     public void failsWhenMainIsMissing() throws Exception {
         Path sourceFile = Path.of("test/CodeGen/missing_main.lang");
@@ -205,7 +305,7 @@ public class CodeGeneratorTest {
             SemanticAnalyzer analyzer = new SemanticAnalyzer();
             analyzer.analyze(root);
 
-            CodeGenerator generator = new CodeGenerator();
+            CodeGenerator generator = new CodeGenerator(analyzer.getTypes());
             generator.generate(root, outputFile.toString());
 
             fail("Expected code generation to fail because main is missing.");
@@ -213,4 +313,90 @@ public class CodeGeneratorTest {
             assertTrue(e.getMessage().contains("main function not found"));
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void flatASTGeneratesSameBytecode() throws Exception {
+        String[] programs = {"literals", "variables", "int_arithmetic", "if_else", "while_loop",
+                "function_parameters", "float_arithmetic", "void_return", "full_program", "for_loop"};
+        for (String name : programs) {
+            String text = Files.readString(Path.of("test/CodeGen/" + name + ".lang"));
+            Path objectTree = Path.of("build/test-codegen/object/" + name + ".class");
+            Path flatTree = Path.of("build/test-codegen/flat/" + name + ".class");
+            Files.createDirectories(objectTree.getParent());
+            Files.createDirectories(flatTree.getParent());
+
+            ASTNode root = new Parser(TokenStream.lex(text)).getAST();
+            new SemanticAnalyzer().analyze(root);
+            new CodeGenerator().generate(root, objectTree.toString());
+
+            FlatAST ast = new Parser(TokenStream.lex(text)).getFlatAST();
+            new SemanticAnalyzer().analyze(ast);
+            new CodeGenerator().generate(ast, flatTree.toString());
+
+            assertArrayEquals(name, Files.readAllBytes(objectTree), Files.readAllBytes(flatTree));
+        }
+    }
+
+    @Test
+    public void storedTypesGenerateWithoutAnalysis() throws Exception {
+        String[] programs = {"variables", "float_arithmetic", "function_parameters", "full_program", "for_loop"};
+        for (String name : programs) {
+            String text = Files.readString(Path.of("test/CodeGen/" + name + ".lang"));
+            Path analyzedTree = Path.of("build/test-codegen/analyzed/" + name + ".class");
+            Path storedTree = Path.of("build/test-codegen/stored/" + name + ".class");
+            Files.createDirectories(analyzedTree.getParent());
+            Files.createDirectories(storedTree.getParent());
+
+            ASTNode root = new Parser(TokenStream.lex(text)).getAST();
+            SemanticAnalyzer analyzer = new SemanticAnalyzer();
+            analyzer.analyze(root);
+            new CodeGenerator(analyzer.getTypes()).generate(root, analyzedTree.toString());
+
+            byte[] bytes = FlatAST.of(root).toBytes();
+            FlatAST stored = FlatAST.fromBytes(bytes, 0, bytes.length);
+            assertTrue(stored.hasTypes());
+            new CodeGenerator().generate(stored, storedTree.toString());
+
+            assertArrayEquals(name, Files.readAllBytes(analyzedTree), Files.readAllBytes(storedTree));
+        }
+    }
+
+    @Test
+    public void typesOnlyApplyToTheNodesThatWereAnalyzed() throws Exception {
+        String text = Files.readString(Path.of("test/CodeGen/full_program.lang"));
+        Path outputFile = Path.of("build/test-codegen/other_tree.class");
+
+        SemanticAnalyzer analyzer = new SemanticAnalyzer();
+        analyzer.analyze(new Parser(TokenStream.lex(text)).getAST());
+
+        ASTNode otherTree = new Parser(TokenStream.lex(text)).getAST();
+        try {
+            new CodeGenerator(analyzer.getTypes()).generate(otherTree, outputFile.toString());
+            fail("Expected the expressions of an unanalyzed tree to have no types.");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("was not analyzed"));
+        }
+
+        FlatAST flat = new Parser(TokenStream.lex(text)).getFlatAST();
+        try {
+            new CodeGenerator(analyzer.getTypes()).generate(flat, outputFile.toString());
+            fail("Expected a FlatAST to be rejected by a generator given analyzed types.");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("FlatAST"));
+        }
+    }
+
+    @Test
+    public void compilesDeeplyNestedCode() throws Exception {
+        int depth = 3000;
+        Path source = Path.of("build/test-codegen/deep_nesting.lang");
+        Files.createDirectories(source.getParent());
+        Files.writeString(source, "def main ( ) {\n    INT x = 0 ;\n"
+                + "if ( x < 1 ) { ".repeat(depth / 3)
+                + "x = " + "( ".repeat(depth) + "1" + " + 1 )".repeat(depth) + " ; "
+                + "} ".repeat(depth / 3)
+                + "\n    println ( x ) ;\n}\n");
+
+        assertEquals((depth + 1) + "\n", compileAndRun(source.toString(), "deep_nesting"));
+    }
+}
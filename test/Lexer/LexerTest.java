@@ -0,0 +1,246 @@
+package Lexer;
+
+import compiler.Diagnostics.Diagnostic;
+import compiler.Diagnostics.DiagnosticCollector;
+import compiler.Lexer.Keywords;
+import compiler.Lexer.Lexer;
+import compiler.Lexer.ParallelLexer;
+import compiler.Lexer.Symbol;
+import compiler.Lexer.TokenStream;
+import compiler.Lexer.TokenType;
+
+import org.junit.Test;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertSame;
+
+public class LexerTest {
+
+    private static List<String> tokens(Lexer lexer) {
+        List<String> out = new ArrayList<>();
+        Symbol symbol;
+        do {
+            symbol = lexer.getNextSymbol();
+            out.add(symbol + "@" + symbol.getLine() + ":" + symbol.getColumn());
+        } while (symbol.getType() != TokenType.EOF);
+        return out;
+    }
+
+    private static List<String> tokens(TokenStream stream) {
+        List<String> out = new ArrayList<>();
+        for (int i = 0; i < stream.size(); i++) {
+            Symbol symbol = stream.symbol(i);
+            out.add(symbol + "@" + symbol.getLine() + ":" + symbol.getColumn());
+        }
+        return out;
+    }
+
+    private static String source() throws Exception {
+        return Files.readString(Path.of("test/CodeGen/full.lang")) + "\nFLOAT f = .5 + 00.25 ;\n";
+    }
+
+    // Hands out one character per read() so every token crosses a window refill.
+    private static Reader trickle(String text) {
+        return new StringReader(text) {
+            @Override
+            public int read(char[] cbuf, int off, int len) throws java.io.IOException {
+                return super.read(cbuf, off, Math.min(len, 1));
+            }
+        };
+    }
+
+    @Test
+    public void bufferedReaderMatchesInMemorySource() throws Exception {
+        String text = source();
+        List<String> expected = tokens(new Lexer(text));
+
+        assertEquals(expected, tokens(new Lexer(new StringReader(text))));
+        assertEquals(expected, tokens(new Lexer(trickle(text))));
+    }
+
+    @Test
+    public void mappedFileMatchesInMemorySource() throws Exception {
+        String text = source() + "STRING s = \"caf\u00e9 \u20ac \ud83d\ude00\" ; # \u00fcber\n";
+        Path file = Files.createTempFile("lexer-test", ".lang");
+        try {
+            Files.writeString(file, text);
+            try (Lexer mapped = new Lexer(file)) {
+                assertEquals(tokens(new Lexer(text)), tokens(mapped));
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void dotFloatIsOneToken() {
+        Lexer lexer = new Lexer(trickle(".25"));
+        Symbol symbol = lexer.getNextSymbol();
+
+        assertEquals(TokenType.FLOAT_LITERAL, symbol.getType());
+        assertEquals("0.25", symbol.getValue());
+        assertEquals(TokenType.EOF, lexer.getNextSymbol().getType());
+    }
+
+    @Test
+    public void lookaheadOperatorsAndNumbersAcrossRefills() {
+        Lexer lexer = new Lexer(trickle("a =/= b -> c <= d && e =/ 007 00.5 0 .5"));
+        StringBuilder out = new StringBuilder();
+        Symbol symbol;
+        while ((symbol = lexer.getNextSymbol()).getType() != TokenType.EOF) {
+            out.append(symbol);
+        }
+
+        assertEquals("<IDENTIFIER,a><NOT_EQUAL,=/=><IDENTIFIER,b><ARROW,->><IDENTIFIER,c>"
+                + "<LESS_EQUAL,<=><IDENTIFIER,d><AND,&&><IDENTIFIER,e><ERROR,=/>"
+                + "<INTEGER_LITERAL,7><FLOAT_LITERAL,0.5><INTEGER_LITERAL,0><FLOAT_LITERAL,0.5>",
+                out.toString());
+    }
+
+    @Test
+    public void tokenStreamMatchesSymbols() throws Exception {
+        String text = source() + "STRING s = \"a\\\"b\\nc\" ; 007 =/ & \"bad\\q\" ;";
+        List<String> expected = tokens(new Lexer(text));
+
+        assertEquals(expected, tokens(TokenStream.lex(new Lexer(trickle(text)))));
+    }
+
+    @Test
+    public void repeatedSpellingsShareOneString() {
+        Lexer lexer = new Lexer(trickle("count = count + 007 ; s = \"hi\" + \"hi\" + 7 ;"));
+        List<String> values = new ArrayList<>();
+        Symbol symbol;
+        while ((symbol = lexer.getNextSymbol()).getType() != TokenType.EOF) {
+            values.add(symbol.getValue());
+        }
+
+        assertSame(values.get(0), values.get(2));
+        assertSame(values.get(4), values.get(values.size() - 2));
+        assertSame(values.get(8), values.get(10));
+
+        TokenStream stream = TokenStream.lex("count = count ;");
+        assertSame(stream.value(0), stream.value(2));
+        assertSame(stream.value(0), stream.getInternTable().intern("count"));
+
+        // Enough distinct names to make the table grow several times
+        StringBuilder many = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            many.append("v").append(i).append(' ');
+        }
+        stream = TokenStream.lex(many.toString() + many);
+        for (int i = 0; i < 5000; i++) {
+            assertEquals("v" + i, stream.value(i));
+            assertSame(stream.value(i), stream.value(i + 5000));
+        }
+    }
+
+    @Test
+    public void keywordsAreClassifiedFromRawCharacters() {
+        int keywords = 0;
+        for (TokenType type : TokenType.values()) {
+            String spelling = Keywords.spelling(type);
+            if (spelling != null) {
+                keywords++;
+                // Embedded in a larger buffer, so offsets are exercised too
+                char[] chars = ("  " + spelling + "  ").toCharArray();
+                assertEquals(type, Keywords.lookup(chars, 2, spelling.length()));
+                assertEquals(type, new Lexer(spelling).getNextSymbol().getType());
+            }
+        }
+        assertEquals(34, keywords);
+
+        for (String word : new String[] {"x", "ceil_", "cell", "col", "mains", "Print", "read_INTS", "print_FLOAr", "iff"}) {
+            assertNull(word, Keywords.lookup(word.toCharArray(), 0, word.length()));
+        }
+    }
+
+    @Test
+    public void parallelLexerMatchesSequential() throws Exception {
+        // Strings spanning many lines make some chunk boundaries fall inside a literal
+        StringBuilder sb = new StringBuilder();
+        String longString = "STRING s = \"" + "# not a comment\n".repeat(2000) + "\" ;\n";
+        while (sb.length() < 20 * ParallelLexer.MIN_CHUNK_SIZE) {
+            sb.append(source()).append(longString);
+        }
+        String text = sb.toString();
+        List<String> expected = tokens(new Lexer(text));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertEquals(expected, tokens(new ParallelLexer(pool).lex(text)));
+            // An unterminated string at the end must not swallow the chunks before it
+            assertEquals(tokens(new Lexer(text + "\"open")), tokens(new ParallelLexer(pool).lex(text + "\"open")));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void iteratorAndStreamsFollowGetNextSymbol() throws Exception {
+        String text = source();
+        List<String> expected = tokens(new Lexer(text));
+        expected.remove(expected.size() - 1);  // streams stop before EOF
+
+        List<String> iterated = new ArrayList<>();
+        for (Symbol symbol : new Lexer(trickle(text))) {
+            iterated.add(symbol + "@" + symbol.getLine() + ":" + symbol.getColumn());
+        }
+        assertEquals(expected, iterated);
+
+        assertEquals(expected.size(), new Lexer(text).symbols().count());
+        long identifiers = expected.stream().filter(token -> token.startsWith("<IDENTIFIER,")).count();
+        assertEquals(identifiers, new Lexer(trickle(text)).tokenTypes()
+                .filter(type -> type == TokenType.IDENTIFIER.ordinal()).count());
+    }
+
+    @Test
+    public void editedStreamMatchesFullRelex() throws Exception {
+        String[] snippets = {"", "x", " ", "\n", "\"", "#", "=/", "= ", "00", ".5", "\\", "ab cd\n", "\"\n#\"", "{ }"};
+        Random random = new Random(7);
+        String text = source() + "STRING s = \"two\nlines\" ; INT z = 1 ;\n";
+        char[] original = text.toCharArray();
+        TokenStream stream = TokenStream.lex(new Lexer(original, original.length));
+
+        for (int i = 0; i < 2000; i++) {
+            int offset = random.nextInt(text.length() + 1);
+            int removed = random.nextInt(Math.min(6, text.length() - offset) + 1);
+            String inserted = snippets[random.nextInt(snippets.length)];
+
+            stream.edit(offset, removed, inserted);
+            text = text.substring(0, offset) + inserted + text.substring(offset + removed);
+            assertEquals("edit " + i, tokens(new Lexer(text)), tokens(stream));
+        }
+        // The caller's array is never written to
+        assertEquals(source() + "STRING s = \"two\nlines\" ; INT z = 1 ;\n", new String(original));
+    }
+
+    @Test
+    public void lexicalErrorsAreCollectedUpToTheLimit() {
+        DiagnosticCollector diagnostics = new DiagnosticCollector(3);
+        Lexer lexer = new Lexer("INT a = 1 @ ;\nINT b = a $ 2 ;\n=/ & | ok");
+        lexer.reportErrorsTo(diagnostics);
+        long tokens = lexer.symbols().count();
+
+        assertEquals(17, tokens);
+        assertEquals(5, diagnostics.getCount());
+        assertTrue(diagnostics.isFull());
+        List<Diagnostic> kept = diagnostics.getDiagnostics();
+        assertEquals(3, kept.size());
+        assertEquals("Lexical error at line 1, column 11: @", kept.get(0).toString());
+        assertEquals("Lexical error at line 2, column 11: $", kept.get(1).toString());
+        assertEquals(Diagnostic.Phase.LEXICAL, kept.get(2).getPhase());
+        assertEquals(3, kept.get(2).getLine());
+        assertEquals("=/", kept.get(2).getMessage());
+    }
+}
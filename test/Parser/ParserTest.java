@@ -0,0 +1,426 @@
+package Parser;
+
+import compiler.Cache.ASTCache;
+import compiler.Diagnostics.Diagnostic;
+import compiler.Diagnostics.DiagnosticCollector;
+import compiler.Lexer.Lexer;
+import compiler.Lexer.TokenStream;
+import compiler.Lexer.TokenType;
+import compiler.Parser.IncrementalParser;
+import compiler.Parser.ParallelParser;
+import compiler.Parser.Parser;
+import compiler.Parser.AST.ASTNode;
+import compiler.Parser.AST.ASTPrinter;
+import compiler.Parser.AST.BinaryExpressionNode;
+import compiler.Parser.AST.BlockNode;
+import compiler.Parser.AST.FlatAST;
+import compiler.Parser.AST.FunctionNode;
+import compiler.Parser.AST.IfNode;
+import compiler.Parser.AST.NodeFactory;
+import compiler.Parser.AST.ReturnNode;
+import compiler.Parser.AST.NodeKind;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParserTest {
+
+    static List<Path> programs() throws IOException {
+        try (Stream<Path> files = Files.list(Path.of("test/CodeGen"))) {
+            return files.filter(f -> f.toString().endsWith(".lang")).sorted().toList();
+        }
+    }
+
+    @Test
+    public void tokenStreamParsesLikeLexer() throws Exception {
+        for (Path program : programs()) {
+            String text = Files.readString(program);
+            String expected = new Parser(new Lexer(text)).getAST().print("");
+
+            assertEquals(program.toString(), expected, new Parser(TokenStream.lex(text)).getAST().print(""));
+        }
+    }
+
+    @Test
+    public void flatASTMaterializesToTheSameTree() throws Exception {
+        for (Path program : programs()) {
+            String text = Files.readString(program);
+            String expected = new Parser(TokenStream.lex(text)).getAST().print("");
+            FlatAST ast = new Parser(TokenStream.lex(text)).getFlatAST();
+
+            assertEquals(program.toString(), expected, ast.toNode(ast.root()).print(""));
+            assertEquals(program.toString(), expected, FlatAST.of(ast.toNode(ast.root())).toNode(0).print(""));
+        }
+    }
+
+    @Test
+    public void flatASTViewExposesChildrenInSourceOrder() {
+        FlatAST ast = new Parser(TokenStream.lex("def INT f ( INT a ) { return a * 2 + 1 ; }")).getFlatAST();
+
+        assertEquals(1, ast.declarationCount());
+        int function = ast.declaration(0);
+        assertEquals(NodeKind.FUNCTION, ast.kind(function));
+        assertEquals("f", ast.value(function));
+        assertEquals(3, ast.childCount(function));
+        assertEquals("INT", ast.value(ast.child(function, 0)));
+        assertEquals(NodeKind.ASSIGNMENT, ast.kind(ast.child(function, 1)));
+
+        int returned = ast.firstChild(ast.firstChild(ast.child(function, 2)));
+        assertEquals(NodeKind.ARITHMETIC, ast.kind(returned));
+        assertEquals("+", ast.value(returned));
+        assertEquals("*", ast.value(ast.firstChild(returned)));
+        assertEquals("1", ast.value(ast.nextSibling(ast.firstChild(returned))));
+        assertEquals(FlatAST.NONE, ast.nextSibling(ast.nextSibling(ast.firstChild(returned))));
+    }
+
+    private static String expression(String source) {
+        return new Parser(TokenStream.lex("INT x = " + source + ";")).getAST().print("");
+    }
+
+    @Test
+    public void operatorsFollowPrecedenceAndAssociateLeft() {
+        assertEquals(expression("(a - b) - c"), expression("a - b - c"));
+        assertEquals(expression("(a / b) % c"), expression("a / b % c"));
+        assertEquals(expression("a + (b * c)"), expression("a + b * c"));
+        assertEquals(expression("(a + b) < (c * d)"), expression("a + b < c * d"));
+        assertEquals(expression("(a == b) && (c < d)"), expression("a == b && c < d"));
+        assertEquals(expression("a || (b && c)"), expression("a || b && c"));
+        assertEquals(expression("(p.x[1]) * (f(a + b, c))"), expression("p.x[1] * f(a + b, c)"));
+    }
+
+    @Test
+    public void unaryMinusBindsOnTheAdditiveLevel() {
+        assertEquals(expression("-(a * b)"), expression("-a * b"));
+        assertEquals(expression("(-a) + b"), expression("-a + b"));
+        assertEquals(expression("a < (-b)"), expression("a < -b"));
+    }
+
+    @Test
+    public void syntaxErrorsAreAllReportedInOneParse() {
+        String source = String.join("\n",
+                "final INT a = ;",
+                "coll Point { INT x; INT y; }",
+                "def INT f(INT n) {",
+                "    INT b = n + ;",
+                "    if (n > ) { b = 1; } else { b = 2; }",
+                "    return b;",
+                "}",
+                "}",
+                "def g() {",
+                "    INT c = 1",
+                "def INT h() { return 3; }");
+        DiagnosticCollector diagnostics = new DiagnosticCollector();
+        Parser parser = new Parser(TokenStream.lex(source));
+        parser.reportErrorsTo(diagnostics);
+        BlockNode program = (BlockNode) parser.getAST();
+
+        List<String> errors = diagnostics.getDiagnostics().stream().map(Diagnostic::toString).toList();
+        assertEquals(List.of(
+                "Syntax error at line 1, column 15: Unexpected symbol SEMICOLON",
+                "Syntax error at line 4, column 17: Unexpected symbol SEMICOLON",
+                "Syntax error at line 5, column 13: Unexpected symbol RPAREN",
+                "Syntax error at line 8, column 1: Unexpected token RBRACE",
+                "Syntax error at line 11, column 1: Expected SEMICOLON but found DEF",
+                "Syntax error at line 11, column 1: Expected RBRACE but found DEF"), errors);
+
+        // Only the broken constant is dropped; f keeps its return, g its (empty) body
+        List<ASTNode> declarations = program.getStatements();
+        assertEquals(4, declarations.size());
+        assertTrue(declarations.get(1).print("").contains("ReturnStatement"));
+    }
+
+    @Test
+    public void withoutACollectorTheFirstSyntaxErrorThrows() {
+        try {
+            new Parser(TokenStream.lex("INT a = ;\nINT b = ;")).getAST();
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals("Syntax Error at line 1: Unexpected symbol SEMICOLON", e.getMessage());
+        }
+    }
+
+    // Start offset of a random token of the given type, -1 if there is none
+    private static int randomToken(TokenStream tokens, TokenType type, Random random) {
+        int[] found = new int[tokens.size()];
+        int count = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            if (tokens.type(i) == type) {
+                found[count++] = tokens.start(i);
+            }
+        }
+        return count == 0 ? -1 : found[random.nextInt(count)];
+    }
+
+    @Test
+    public void incrementalParseMatchesFullParse() throws Exception {
+        Random random = new Random(11);
+        for (Path program : programs()) {
+            String text = Files.readString(program);
+            IncrementalParser parser = new IncrementalParser(TokenStream.lex(text));
+            TokenStream tokens = parser.getTokens();
+
+            for (int i = 0; i < 60; i++) {
+                int offset;
+                int removed = 0;
+                String inserted;
+                switch (random.nextInt(5)) {
+                    case 0 -> {
+                        offset = randomToken(tokens, TokenType.INTEGER_LITERAL, random);
+                        removed = 1;
+                        inserted = String.valueOf(random.nextInt(1000));
+                    }
+                    case 1 -> {
+                        offset = randomToken(tokens, TokenType.LBRACE, random) + 1;
+                        inserted = "\nINT q = 1 + 2 ;";
+                    }
+                    case 2 -> {
+                        offset = randomToken(tokens, TokenType.DEF, random);
+                        inserted = "def INT g" + i + " ( ) { return " + i + " ; }\n";
+                    }
+                    case 3 -> {
+                        offset = text.indexOf("def INT g");
+                        removed = offset < 0 ? 0 : text.indexOf("}\n", offset) + 2 - offset;
+                        inserted = "";
+                    }
+                    default -> {
+                        // Drop a '}' and put it back: the first edit may not parse
+                        offset = randomToken(tokens, TokenType.RBRACE, random);
+                        if (offset >= 0) {
+                            try {
+                                parser.edit(offset, 1, "");
+                            } catch (RuntimeException e) {
+                                // the next edit reparses everything
+                            }
+                            text = text.substring(0, offset) + text.substring(offset + 1);
+                        }
+                        inserted = "}";
+                    }
+                }
+                if (offset < 0) {
+                    continue;
+                }
+
+                parser.edit(offset, removed, inserted);
+                text = text.substring(0, offset) + inserted + text.substring(offset + removed);
+
+                String expected = new Parser(TokenStream.lex(text)).getAST().print("");
+                assertEquals(program + " edit " + i, expected, parser.getAST().print(""));
+            }
+        }
+    }
+
+    @Test
+    public void incrementalParseReusesUntouchedDeclarations() {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            source.append("def INT f").append(i).append(" ( INT a ) {\n    return a + ").append(i).append(" ;\n}\n");
+        }
+        String text = source.toString();
+        IncrementalParser parser = new IncrementalParser(TokenStream.lex(text));
+        List<ASTNode> before = List.copyOf(parser.getAST().getStatements());
+
+        parser.edit(text.indexOf("a + 25") + 4, 2, "7 * a");
+
+        List<ASTNode> after = parser.getAST().getStatements();
+        assertEquals(1, parser.getReparsedCount());
+        assertEquals(50, after.size());
+        for (int i = 0; i < 50; i++) {
+            if (i != 25) {
+                assertSame(before.get(i), after.get(i));
+            }
+        }
+        assertTrue(after.get(25).print("").contains("*"));
+    }
+
+    @Test
+    public void parallelParserMatchesSequential() throws Exception {
+        StringBuilder all = new StringBuilder();
+        for (Path program : programs()) {
+            all.append(Files.readString(program)).append('\n');
+        }
+        all.append("if ( a > 1 ) { a = 2 ; } else { a = 3 ; }\n");
+        StringBuilder sb = new StringBuilder();
+        while (TokenStream.lex(sb.toString()).size() < 10 * ParallelParser.MIN_CHUNK_TOKENS) {
+            sb.append(all);
+        }
+        String text = sb.toString();
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ParallelParser parser = new ParallelParser(pool);
+            String expected = new Parser(TokenStream.lex(text)).getAST().print("");
+            assertEquals(expected, parser.parse(TokenStream.lex(text)).print(""));
+
+            // A stray brace throws off the skim; the result must still be the sequential one
+            int middle = text.indexOf("def", text.length() / 2);
+            String broken = text.substring(0, middle) + "} " + text.substring(middle);
+            try {
+                new Parser(TokenStream.lex(broken)).getAST();
+                fail();
+            } catch (RuntimeException sequential) {
+                try {
+                    parser.parse(TokenStream.lex(broken));
+                    fail();
+                } catch (RuntimeException parallel) {
+                    assertEquals(sequential.getMessage(), parallel.getMessage());
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void lazyFunctionBodiesParseOnFirstAccess() throws Exception {
+        for (Path program : programs()) {
+            String text = Files.readString(program);
+            Parser parser = new Parser(TokenStream.lex(text));
+            parser.setLazyFunctionBodies(true);
+            ASTNode lazy = parser.getAST();
+
+            assertEquals(program.toString(), new Parser(TokenStream.lex(text)).getAST().print(""), lazy.print(""));
+        }
+
+        Parser parser = new Parser(TokenStream.lex(
+                "def INT f ( INT a ) { if ( a > 0 ) { return a ; } return 0 ; }\n"
+                + "def g ( ) { INT b = ; }\n"));
+        parser.setLazyFunctionBodies(true);
+        List<ASTNode> functions = ((BlockNode) parser.getAST()).getStatements();
+
+        FunctionNode f = (FunctionNode) functions.get(0);
+        FunctionNode g = (FunctionNode) functions.get(1);
+        assertEquals("f", f.getName());
+        assertEquals(1, f.getArgs().size());
+        assertFalse(f.isBodyParsed());
+        assertEquals(2, f.getBody().getStatements().size());
+        assertTrue(f.isBodyParsed());
+
+        // The syntax error in g's body only shows up once the body is needed
+        try {
+            g.getBody();
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals("Syntax Error at line 2: Unexpected symbol SEMICOLON", e.getMessage());
+        }
+    }
+
+    @Test
+    public void printerStreamsTheTreeFormat() throws Exception {
+        ASTNode root = new Parser(TokenStream.lex(
+                "def INT f ( INT a ) { if ( a > 0 ) { return -a * 2 ; } else { p.x = g ( ) ; } }")).getAST();
+        String expected = String.join("\n",
+                "FunctionDefinition f",
+                "  ReturnType INT",
+                "  Arguments",
+                "    Expr",
+                "      Type, INT",
+                "      Identifier, a",
+                "  Body",
+                "    IfStatement",
+                "      Condition",
+                "        Identifier, a",
+                "        RelationalOperator, >",
+                "        Integer, 0",
+                "      Then",
+                "        ReturnStatement",
+                "          UnaryOperator, -",
+                "            Identifier, a",
+                "            ArithmeticOperator, *",
+                "            Integer, 2",
+                "      Else",
+                "        FieldStore",
+                "          Identifier, p",
+                "          Field, x",
+                "          Value",
+                "            FunctionCall g",
+                "              Arguments  None");
+
+        StringWriter out = new StringWriter();
+        new ASTPrinter(out).print(root);
+        assertEquals(expected, out.toString());
+        assertEquals(expected, root.print(""));
+        assertEquals(expected.replace("\n", "\n> ").replaceFirst("^", "> "), root.print("> "));
+    }
+
+    @Test
+    public void cachedTreesReadBackUnchanged() throws Exception {
+        Path dir = Files.createTempDirectory("ast-cache");
+        ASTCache cache = new ASTCache(dir);
+        for (Path program : programs()) {
+            byte[] source = Files.readAllBytes(program);
+            FlatAST ast = new Parser(TokenStream.lex(Files.readString(program))).getFlatAST();
+            String key = ASTCache.key(source);
+
+            assertNull(cache.load(key));
+            cache.store(key, ast);
+            FlatAST loaded = cache.load(key);
+            assertEquals(program.toString(), ast.toNode(ast.root()).print(""), loaded.toNode(loaded.root()).print(""));
+            assertEquals(ast.declarationCount(), loaded.declarationCount());
+        }
+
+        // A damaged entry is a miss, not an error
+        String key = ASTCache.key("x".getBytes());
+        cache.store(key, new Parser(TokenStream.lex("INT x = 1 ;")).getFlatAST());
+        Path entry = dir.resolve(key + ".ast");
+        byte[] data = Files.readAllBytes(entry);
+        data[data.length - 1] ^= 1;
+        Files.write(entry, data);
+        assertNull(cache.load(key));
+    }
+
+    @Test
+    public void hashConsingSharesIdenticalExpressions() throws Exception {
+        for (Path program : programs()) {
+            String text = Files.readString(program);
+            Parser parser = new Parser(TokenStream.lex(text));
+            parser.setNodeFactory(NodeFactory.hashConsing());
+            assertEquals(program.toString(), new Parser(TokenStream.lex(text)).getAST().print(""),
+                    parser.getAST().print(""));
+        }
+
+        NodeFactory factory = NodeFactory.hashConsing();
+        Parser parser = new Parser(TokenStream.lex(
+                "def INT f ( ) { if ( p [ 0 ] . x * 2 > g ( ) ) { return p [ 0 ] . x * 2 + g ( ) ; } }"));
+        parser.setNodeFactory(factory);
+        FunctionNode f = (FunctionNode) ((BlockNode) parser.getAST()).getStatements().get(0);
+        IfNode ifNode = (IfNode) f.getBody().getStatements().get(0);
+        BinaryExpressionNode condition = (BinaryExpressionNode) ifNode.getCondition();
+        BinaryExpressionNode returned = (BinaryExpressionNode)
+                ((ReturnNode) ifNode.getThenBlock().getStatements().get(0)).getExpression();
+
+        assertSame(condition.getLeft(), returned.getLeft());
+        // Calls are never shared
+        assertNotSame(condition.getRight(), returned.getRight());
+        // p, 0, p [ 0 ], p [ 0 ] . x, 2, the product, the comparison and the sum
+        assertEquals(8, factory.size());
+    }
+
+    @Test
+    public void nestingDepthIsNotLimitedByTheStack() {
+        int depth = 50_000;
+        String source = "def main ( ) { " + "if ( x ) { ".repeat(100) + "x = "
+                + "( ".repeat(depth) + "1" + " + 1 )".repeat(depth) + " ;" + " }".repeat(100) + " }";
+        ASTNode root = new Parser(TokenStream.lex(source)).getAST();
+
+        String printed = root.print("");
+        assertEquals(depth, printed.split("ArithmeticOperator, \\+", -1).length - 1);
+        FlatAST ast = FlatAST.of(root);
+        assertEquals(printed, ast.toNode(ast.root()).print(""));
+    }
+}
@@ -0,0 +1,135 @@
+package Semantic;
+
+import compiler.Diagnostics.Diagnostic;
+import compiler.Diagnostics.DiagnosticCollector;
+import compiler.Lexer.TokenStream;
+import compiler.Parser.Parser;
+import compiler.Semantic.SemanticAnalyzer;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SemanticAnalyzerTest {
+
+    private static List<Diagnostic> analyze(String text) throws Exception {
+        DiagnosticCollector diagnostics = new SemanticAnalyzer().analyze(new Parser(TokenStream.lex(text)).getAST());
+        return diagnostics.getDiagnostics();
+    }
+
+    @Test
+    public void reportsEveryErrorInOnePass() throws Exception {
+        List<Diagnostic> errors = analyze("""
+                INT g = "text" ;
+                def INT f ( INT a ) {
+                    return "no" ;
+                }
+                def main ( ) {
+                    if ( 1 ) {
+                        f ( 1 , 2 ) ;
+                    }
+                    undefined = 3 ;
+                }
+                """);
+
+        assertEquals(5, errors.size());
+        assertTrue(errors.get(0).getMessage().startsWith("TypeError: Cannot assign 'STRING'"));
+        assertTrue(errors.get(1).getMessage().startsWith("ReturnError"));
+        assertTrue(errors.get(2).getMessage().startsWith("MissingConditionError"));
+        assertTrue(errors.get(3).getMessage().startsWith("ArgumentError"));
+        assertTrue(errors.get(4).getMessage().startsWith("ScopeError"));
+        assertEquals(Diagnostic.Phase.SEMANTIC, errors.get(0).getPhase());
+        assertFalse(errors.get(0).hasPosition());
+    }
+
+    @Test
+    public void failedExpressionsAreReportedOnce() throws Exception {
+        List<Diagnostic> errors = analyze("""
+                def main ( ) {
+                    INT y = ( missing + 1 ) * 2 - 3 ;
+                    while ( missing > 2 && y < 4 ) {
+                        println ( missing . field [ 0 ] ) ;
+                    }
+                    Unknown u ;
+                    u . x = y + 1 ;
+                    INT z = u . x ;
+                }
+                """);
+
+        assertEquals(4, errors.size());
+        assertEquals("ScopeError: Variable 'missing' is not defined in any accessible scope.",
+                errors.get(0).getMessage());
+        assertEquals(errors.get(0).getMessage(), errors.get(1).getMessage());
+        assertEquals(errors.get(0).getMessage(), errors.get(2).getMessage());
+        assertTrue(errors.get(3).getMessage().startsWith("TypeError: Unknown type 'Unknown'"));
+    }
+
+    @Test
+    public void checksForLoopUpdate() throws Exception {
+        List<Diagnostic> errors = analyze("""
+                def main ( ) {
+                    INT i ;
+                    for ( i ; 0 -> 5 ; undefinedFn ( i ) ) {
+                    }
+                    for ( i ; 0 -> 5 ; "step" ) {
+                    }
+                }
+                """);
+
+        assertEquals(2, errors.size());
+        assertEquals("ScopeError: Function 'undefinedFn' is not defined.", errors.get(0).getMessage());
+        assertEquals("MissingConditionError: For loop update must be INT, found 'STRING'.",
+                errors.get(1).getMessage());
+    }
+
+    @Test
+    public void checksRightHandSideOfUndefinedTarget() throws Exception {
+        List<Diagnostic> errors = analyze("""
+                def main ( ) {
+                    x = undefinedFn ( true ) ;
+                    y = 1 ;
+                }
+                """);
+
+        assertEquals(3, errors.size());
+        assertEquals("ScopeError: Variable 'x' is not defined in any accessible scope.", errors.get(0).getMessage());
+        assertEquals("ScopeError: Function 'undefinedFn' is not defined.", errors.get(1).getMessage());
+        assertEquals("ScopeError: Variable 'y' is not defined in any accessible scope.", errors.get(2).getMessage());
+    }
+
+    @Test
+    public void lazyBodyWithSyntaxErrorIsSkipped() throws Exception {
+        Parser parser = new Parser(TokenStream.lex("""
+                def INT f ( INT p ) {
+                    INT x = ;
+                }
+                def main ( ) {
+                    p = 3 ;
+                }
+                """));
+        parser.setLazyFunctionBodies(true);
+        List<Diagnostic> errors = new SemanticAnalyzer().analyze(parser.getAST()).getDiagnostics();
+
+        assertEquals(2, errors.size());
+        assertEquals(Diagnostic.Phase.SYNTAX, errors.get(0).getPhase());
+        assertEquals(2, errors.get(0).getLine());
+        assertEquals("Unexpected symbol SEMICOLON", errors.get(0).getMessage());
+        assertEquals("ScopeError: Variable 'p' is not defined in any accessible scope.", errors.get(1).getMessage());
+    }
+
+    @Test
+    public void correctProgramHasNoErrors() throws Exception {
+        List<Diagnostic> errors = analyze("""
+                def main ( ) {
+                    INT x = 1 ;
+                    println ( x + 1 ) ;
+                }
+                """);
+
+        assertTrue(errors.isEmpty());
+    }
+}
@@ -0,0 +1,79 @@
+package Semantic;
+
+import compiler.Semantic.SymbolTable;
+import compiler.Semantic.Type;
+import compiler.Semantic.Types;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SymbolTableTest {
+
+    @Test
+    public void innerDeclarationsShadowAndAreDroppedOnExit() {
+        SymbolTable table = new SymbolTable();
+        table.declare("x", Type.INT, false);
+        table.enterScope();
+        table.declare("x", Type.FLOAT, false);
+        table.declare("y", Type.BOOL, false);
+        table.markFinal("x");
+        assertSame(Type.FLOAT, table.lookupType("x"));
+        assertTrue(table.isFinal("x"));
+
+        table.exitScope();
+        assertSame(Type.INT, table.lookupType("x"));
+        assertFalse(table.isFinal("x"));
+        assertFalse(table.isFinal("y"));
+        try {
+            table.lookupType("y");
+            fail("y is out of scope");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().startsWith("ScopeError"));
+        }
+    }
+
+    @Test
+    public void redeclaringInTheSameScopeFails() {
+        SymbolTable table = new SymbolTable();
+        table.enterScope();
+        table.declare("a", Type.INT, false);
+        try {
+            table.declare("a", Type.INT, false);
+            fail("a is already defined");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().startsWith("ScopeError"));
+        }
+        table.exitScope();
+        table.enterScope();
+        table.declare("a", Type.STRING, false);
+        assertSame(Type.STRING, table.lookupType("a"));
+    }
+
+    @Test
+    public void manyNamesAndDeepNesting() {
+        SymbolTable table = new SymbolTable();
+        Types types = new Types();
+        int depth = 1000;
+        for (int i = 0; i < depth; i++) {
+            table.enterScope();
+            table.declare("v" + i, Type.INT, false);
+            table.declare("shared", types.named("T" + i), false);
+        }
+        assertSame(types.named("T999"), table.lookupType("shared"));
+        assertSame(Type.INT, table.lookupType("v0"));
+        for (int i = depth - 1; i >= 0; i--) {
+            assertSame(types.named("T" + i), table.lookupType("shared"));
+            table.exitScope();
+        }
+        try {
+            table.exitScope();
+            fail("the global scope cannot be exited");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().startsWith("Internal Error"));
+        }
+    }
+}